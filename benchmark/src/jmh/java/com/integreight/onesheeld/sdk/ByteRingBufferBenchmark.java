@@ -0,0 +1,65 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Measures moving chunks of bytes through the receive ring buffer against
+ * the boxed byte queue it replaced.
+ */
+@State(Scope.Thread)
+public class ByteRingBufferBenchmark {
+    @Param({"20", "1024"})
+    public int chunkSize;
+
+    private byte[] chunk;
+    private byte[] destination;
+    private ByteRingBuffer ringBuffer;
+    private LinkedBlockingQueue<Byte> boxedQueue;
+
+    @Setup
+    public void setUp() {
+        chunk = new byte[chunkSize];
+        for (int i = 0; i < chunk.length; i++)
+            chunk[i] = (byte) i;
+        destination = new byte[chunkSize];
+        ringBuffer = new ByteRingBuffer(OneSheeldDevice.DEFAULT_RECEIVE_BUFFER_CAPACITY);
+        boxedQueue = new LinkedBlockingQueue<>();
+    }
+
+    @Benchmark
+    public int ringBufferPutAndPoll() throws InterruptedException {
+        ringBuffer.put(chunk, 0, chunk.length);
+        return ringBuffer.poll(destination, 0, destination.length);
+    }
+
+    @Benchmark
+    public int boxedQueuePutAndPoll() {
+        for (byte value : chunk)
+            boxedQueue.add(value);
+        for (int i = 0; i < destination.length; i++)
+            destination[i] = boxedQueue.poll();
+        return destination.length;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Measures the CRC of the firmware update packets.
+ */
+@State(Scope.Thread)
+public class CrcBenchmark {
+    @Param({"128", "1024", "32768"})
+    public int dataSize;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        data = new byte[dataSize];
+        new Random(0).nextBytes(data);
+    }
+
+    @Benchmark
+    public int calculateCrc() {
+        return OneSheeldDevice.calculateCrc(data);
+    }
+}
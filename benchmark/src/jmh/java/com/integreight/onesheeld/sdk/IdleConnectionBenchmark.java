@@ -0,0 +1,118 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the CPU time spent by devices connected to simulated boards that send nothing.
+ * Every operation parks the benchmark thread for a fixed interval, the connected threads
+ * block on reads that time out and find the connection still open, so the CPU time spent
+ * meanwhile should stay close to nothing instead of growing with a spinning read loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IdleConnectionBenchmark {
+    private static final long IDLE_INTERVAL_NANO_SECONDS = 100000000L;
+
+    @Param({"1", "16"})
+    public int devicesCount;
+
+    @Param({"DEDICATED_THREADS", "SHARED_POOL"})
+    public ThreadingMode threadingMode;
+
+    private OneSheeldDevice[] devices;
+
+    @Setup
+    public void setUp() {
+        devices = new OneSheeldDevice[devicesCount];
+        for (int i = 0; i < devicesCount; i++)
+            devices[i] = SimulatedDevices.connect(new SimulatedBoard(), threadingMode);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (OneSheeldDevice device : devices)
+            device.disconnect();
+    }
+
+    @Benchmark
+    public void idle(Resources resources) {
+        resources.startIdling();
+        long deadline = System.nanoTime() + IDLE_INTERVAL_NANO_SECONDS;
+        long remainingTime;
+        while ((remainingTime = deadline - System.nanoTime()) > 0)
+            LockSupport.parkNanos(remainingTime);
+        resources.endIdling(devicesCount);
+    }
+
+    /**
+     * The CPU time the process spent while idling, the benchmark thread itself left out.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Resources {
+        private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        private final com.sun.management.OperatingSystemMXBean operatingSystemBean =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        private long processCpuTime;
+        private long benchmarkThreadCpuTime;
+        private long startTime;
+        private long totalCpuTime;
+        private long totalIdleTime;
+        public double cpuNanoSecondsPerIdleSecond;
+        public double cpuNanoSecondsPerIdleSecondPerDevice;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            totalCpuTime = 0;
+            totalIdleTime = 0;
+            cpuNanoSecondsPerIdleSecond = 0;
+            cpuNanoSecondsPerIdleSecondPerDevice = 0;
+        }
+
+        private void startIdling() {
+            processCpuTime = operatingSystemBean.getProcessCpuTime();
+            benchmarkThreadCpuTime = threadBean.getCurrentThreadCpuTime();
+            startTime = System.nanoTime();
+        }
+
+        private void endIdling(int devicesCount) {
+            totalIdleTime += System.nanoTime() - startTime;
+            long benchmarkThreadCpuTime = threadBean.getCurrentThreadCpuTime() - this.benchmarkThreadCpuTime;
+            totalCpuTime += operatingSystemBean.getProcessCpuTime() - processCpuTime - benchmarkThreadCpuTime;
+            cpuNanoSecondsPerIdleSecond = totalCpuTime * 1000000000.0 / totalIdleTime;
+            cpuNanoSecondsPerIdleSecondPerDevice = cpuNanoSecondsPerIdleSecond / devicesCount;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures resolving the known shields and functions of received frames.
+ */
+@State(Scope.Thread)
+public class KnownShieldsBenchmark {
+    private KnownShields knownShields;
+    private byte[] shieldsIds;
+    private byte[] functionsIds;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        knownShields = KnownShields.getInstance();
+        shieldsIds = new byte[knownShields.size()];
+        functionsIds = new byte[knownShields.size()];
+        for (int i = 0; i < knownShields.size(); i++) {
+            KnownShield knownShield = knownShields.get(i);
+            shieldsIds[i] = knownShield.getId();
+            functionsIds[i] = knownShield.getKnownFunctions().isEmpty() ? 0 : knownShield.getKnownFunctions().get(0).getId();
+        }
+    }
+
+    @Benchmark
+    public KnownShield getKnownShield() {
+        index = (index + 1) % shieldsIds.length;
+        return knownShields.getKnownShield(shieldsIds[index]);
+    }
+
+    @Benchmark
+    public KnownFunction getKnownFunction() {
+        index = (index + 1) % shieldsIds.length;
+        return knownShields.getKnownShield(shieldsIds[index]).getKnownFunction(functionsIds[index]);
+    }
+
+    @Benchmark
+    public boolean containsUnknownShield() {
+        return knownShields.contains((byte) 0x7F);
+    }
+}
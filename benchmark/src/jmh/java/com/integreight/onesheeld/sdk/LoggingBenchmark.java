@@ -0,0 +1,82 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures what logging adds to sending serial data of different sizes, with debugging
+ * off and with debugging on and every message formatted for a sink that drops it.
+ */
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    @Param({"false", "true"})
+    public boolean debuggingEnabled;
+
+    @Param({"16", "256", "4096"})
+    public int payloadSize;
+
+    private OneSheeldLogSink previousLogSink;
+    private boolean wasDebuggingEnabled;
+    private volatile int loggedCharactersCount;
+    private SimulatedBoard board;
+    private OneSheeldDevice device;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        previousLogSink = OneSheeldSdk.getLogSink();
+        wasDebuggingEnabled = OneSheeldSdk.isDebuggingEnabled();
+        OneSheeldSdk.setLogSink(new OneSheeldLogSink() {
+            @Override
+            public void log(LogLevel level, String tag, String message, Throwable throwable) {
+                loggedCharactersCount += message.length();
+            }
+        });
+        board = new SimulatedBoard();
+        device = SimulatedDevices.connect(board);
+        OneSheeldSdk.setDebugging(debuggingEnabled);
+        payload = new byte[payloadSize];
+        for (int i = 0; i < payload.length; i++)
+            payload[i] = (byte) ('a' + i % 26);
+    }
+
+    @TearDown
+    public void tearDown() {
+        OneSheeldSdk.setDebugging(false);
+        device.disconnect();
+        OneSheeldSdk.setLogSink(previousLogSink);
+        OneSheeldSdk.setDebugging(wasDebuggingEnabled);
+    }
+
+    @Benchmark
+    public void sendSerialData() {
+        long target = board.getReceivedSerialBytesCount() + payload.length;
+        device.sendSerialData(payload);
+        SimulatedDevices.awaitReceivedSerialBytes(board, target);
+    }
+
+    @Benchmark
+    public void logPayload() {
+        Log.i("Device {}: Serial data sent, values: {}.", device.getName(), payload);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures receiving frames on several devices at once, each connected to its own
+ * simulated board, using each of the threading modes. Every operation is a batch of frames
+ * sent by each of the boards, so the frames rate is the ops/s times the batch size times
+ * the devices count.
+ */
+@State(Scope.Benchmark)
+public class MultipleDevicesBenchmark {
+    private static final int FRAMES_BATCH = 256;
+
+    @Param({"1", "4", "7"})
+    public int devicesCount;
+
+    @Param({"DEDICATED_THREADS", "SHARED_POOL"})
+    public ThreadingMode threadingMode;
+
+    private final AtomicLong receivedFramesCount = new AtomicLong();
+    private SimulatedBoard[] boards;
+    private OneSheeldDevice[] devices;
+    private ShieldFrame frame;
+
+    @Setup
+    public void setUp() {
+        OneSheeldDataCallback dataCallback = new OneSheeldDataCallback() {
+            @Override
+            public void onShieldFrameReceive(OneSheeldDevice device, ShieldFrame frame) {
+                receivedFramesCount.incrementAndGet();
+            }
+        };
+        boards = new SimulatedBoard[devicesCount];
+        devices = new OneSheeldDevice[devicesCount];
+        for (int i = 0; i < devicesCount; i++) {
+            boards[i] = new SimulatedBoard();
+            devices[i] = SimulatedDevices.connect(boards[i], threadingMode);
+            devices[i].addDataCallback(dataCallback);
+        }
+        frame = SimulatedDevices.newSensorFrame();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (OneSheeldDevice device : devices)
+            device.disconnect();
+    }
+
+    @Benchmark
+    public void receiveFrames() {
+        long target = receivedFramesCount.get() + FRAMES_BATCH * devicesCount;
+        for (SimulatedBoard board : boards)
+            board.sendFrames(frame, FRAMES_BATCH);
+        SimulatedDevices.await(receivedFramesCount, target);
+    }
+}
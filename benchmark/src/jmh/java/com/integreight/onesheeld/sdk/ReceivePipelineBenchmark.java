@@ -0,0 +1,84 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the whole receiving pipeline of a device, reading, buffering, Firmata
+ * parsing, frames rebuilding and dispatching, fed by a simulated board.
+ */
+@State(Scope.Benchmark)
+public class ReceivePipelineBenchmark {
+    private static final int FRAMES_BATCH = 256;
+    private static final int SERIAL_DATA_LENGTH = 1024;
+
+    private final AtomicLong receivedFramesCount = new AtomicLong();
+    private final AtomicLong receivedSerialBytesCount = new AtomicLong();
+    private SimulatedBoard board;
+    private OneSheeldDevice device;
+    private ShieldFrame frame;
+    private byte[] serialData;
+
+    @Setup
+    public void setUp() {
+        board = new SimulatedBoard();
+        device = SimulatedDevices.connect(board);
+        device.addDataCallback(new OneSheeldDataCallback() {
+            @Override
+            public void onSerialDataReceive(OneSheeldDevice device, byte[] data, int offset, int length) {
+                receivedSerialBytesCount.addAndGet(length);
+            }
+
+            @Override
+            public void onShieldFrameReceive(OneSheeldDevice device, ShieldFrame frame) {
+                receivedFramesCount.incrementAndGet();
+            }
+        });
+        frame = SimulatedDevices.newSensorFrame();
+        serialData = new byte[SERIAL_DATA_LENGTH];
+        for (int i = 0; i < serialData.length; i++)
+            serialData[i] = (byte) ('a' + i % 26);
+    }
+
+    @TearDown
+    public void tearDown() {
+        device.disconnect();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES_BATCH)
+    public void receiveFrames() {
+        long target = receivedFramesCount.get() + FRAMES_BATCH;
+        board.sendFrames(frame, FRAMES_BATCH);
+        SimulatedDevices.await(receivedFramesCount, target);
+    }
+
+    @Benchmark
+    public void receiveSerialData() {
+        long target = receivedSerialBytesCount.get() + serialData.length;
+        board.sendSerialData(serialData);
+        SimulatedDevices.await(receivedSerialBytesCount, target);
+    }
+}
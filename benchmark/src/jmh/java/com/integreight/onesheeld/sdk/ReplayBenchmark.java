@@ -0,0 +1,85 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures replaying a recorded stream of frames into a device at full speed, from
+ * connecting to it until every frame is dispatched.
+ */
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+    private static final int FRAMES_COUNT = 20000;
+
+    private final AtomicLong receivedFramesCount = new AtomicLong();
+    private File captureFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        captureFile = File.createTempFile("replay", ".capture");
+        SimulatedBoard board = new SimulatedBoard();
+        OneSheeldDevice device = new OneSheeldDevice("00:00:00:00:FF:FF");
+        device.setCaptureFile(captureFile);
+        final AtomicLong recordedFramesCount = new AtomicLong();
+        device.addDataCallback(new OneSheeldDataCallback() {
+            @Override
+            public void onShieldFrameReceive(OneSheeldDevice device, ShieldFrame frame) {
+                recordedFramesCount.incrementAndGet();
+            }
+        });
+        board.connect(device);
+        SimulatedDevices.awaitInitialization(device);
+        board.sendFrames(SimulatedDevices.newSensorFrame(), FRAMES_COUNT);
+        SimulatedDevices.await(recordedFramesCount, FRAMES_COUNT);
+        ConnectionCapture capture = device.getCapture();
+        device.disconnect();
+        // Makes sure the capture thread wrote what's left in its buffer before replaying the file.
+        capture.stop();
+        capture.awaitStopped();
+    }
+
+    @TearDown
+    public void tearDown() {
+        captureFile.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES_COUNT)
+    public void replayFrames() {
+        OneSheeldDevice device = new OneSheeldDevice("00:00:00:00:FF:FE");
+        device.addDataCallback(new OneSheeldDataCallback() {
+            @Override
+            public void onShieldFrameReceive(OneSheeldDevice device, ShieldFrame frame) {
+                receivedFramesCount.incrementAndGet();
+            }
+        });
+        long target = receivedFramesCount.get() + FRAMES_COUNT;
+        device.connect(new ReplayConnection(device, captureFile, false));
+        SimulatedDevices.await(receivedFramesCount, target);
+        device.disconnect();
+    }
+}
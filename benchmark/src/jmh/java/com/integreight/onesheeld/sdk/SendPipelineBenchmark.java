@@ -0,0 +1,75 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the whole sending pipeline of a device, encoding, queueing and writing,
+ * until a simulated board receives what was sent, with and without the writing thread.
+ */
+@State(Scope.Benchmark)
+public class SendPipelineBenchmark {
+    private static final int FRAMES_BATCH = 256;
+    private static final int SERIAL_DATA_LENGTH = 1024;
+
+    @Param({"false", "true"})
+    public boolean asynchronousWriting;
+
+    private SimulatedBoard board;
+    private OneSheeldDevice device;
+    private ShieldFrame frame;
+    private byte[] serialData;
+
+    @Setup
+    public void setUp() {
+        board = new SimulatedBoard();
+        device = SimulatedDevices.connect(board);
+        device.setAsynchronousWriting(asynchronousWriting);
+        frame = SimulatedDevices.newSensorFrame();
+        serialData = new byte[SERIAL_DATA_LENGTH];
+        for (int i = 0; i < serialData.length; i++)
+            serialData[i] = (byte) ('a' + i % 26);
+    }
+
+    @TearDown
+    public void tearDown() {
+        device.disconnect();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES_BATCH)
+    public void sendFrames() {
+        long target = board.getReceivedFramesCount(frame.getShieldId()) + FRAMES_BATCH;
+        for (int i = 0; i < FRAMES_BATCH; i++)
+            device.sendShieldFrame(frame);
+        SimulatedDevices.awaitReceivedFrames(board, frame.getShieldId(), target);
+    }
+
+    @Benchmark
+    public void sendSerialData() {
+        long target = board.getReceivedSerialBytesCount() + serialData.length;
+        device.sendSerialData(serialData);
+        SimulatedDevices.awaitReceivedSerialBytes(board, target);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures building, serializing and parsing the arguments of shield frames.
+ */
+@State(Scope.Thread)
+public class ShieldFrameBenchmark {
+    private ShieldFrame frame;
+    private ShieldFrame phoneCallFrame;
+    private FunctionCodec phoneCallCodec;
+    private FunctionArguments arguments;
+    private byte[] buffer;
+    private byte[] bytesArgument;
+
+    @Setup
+    public void setUp() {
+        bytesArgument = new byte[32];
+        for (int i = 0; i < bytesArgument.length; i++)
+            bytesArgument[i] = (byte) i;
+        frame = newFrame();
+        buffer = new byte[frame.getFrameSize()];
+        KnownShield phoneShield = KnownShields.getInstance().PHONE_SHIELD;
+        phoneCallFrame = new ShieldFrame(phoneShield.getId(), (byte) 0x01);
+        phoneCallFrame.addArgument("+201234567890");
+        phoneCallCodec = phoneShield.getKnownFunction((byte) 0x01).getCodec();
+        arguments = new FunctionArguments();
+    }
+
+    private ShieldFrame newFrame() {
+        ShieldFrame frame = ShieldFrame.obtain((byte) 0x0B, (byte) 0x01);
+        frame.addArgument(2, 1024);
+        frame.addArgument(3.14f);
+        frame.addArgument("Hello, 1Sheeld!");
+        frame.addArgument(bytesArgument);
+        return frame;
+    }
+
+    @Benchmark
+    public byte[] getAllFrameAsBytes() {
+        return frame.getAllFrameAsBytes();
+    }
+
+    @Benchmark
+    public int writeToReusableBuffer() {
+        return frame.writeTo(buffer, 0);
+    }
+
+    @Benchmark
+    public int obtainBuildAndRecycle() {
+        ShieldFrame frame = newFrame();
+        int size = frame.getFrameSize();
+        frame.recycle();
+        return size;
+    }
+
+    @Benchmark
+    public void parseArguments(Blackhole blackhole) {
+        blackhole.consume(frame.getArgumentAsInteger(0));
+        blackhole.consume(frame.getArgumentAsFloat(1));
+        blackhole.consume(frame.getArgumentAsString(2));
+        blackhole.consume(frame.getArgument(3));
+    }
+
+    @Benchmark
+    public String decodeKnownFunction() {
+        phoneCallCodec.decode(phoneCallFrame, arguments);
+        return arguments.getString(0);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures rebuilding frames from the serial byte stream when the bytes arrive
+ * one at a time, in sysex sized pieces or in full read chunks.
+ */
+@State(Scope.Thread)
+public class ShieldFrameDecoderBenchmark {
+    private static final int FRAMES_COUNT = 64;
+
+    @Param({"1", "14", "1024"})
+    public int chunkSize;
+
+    private byte[] stream;
+    private ShieldFrameDecoder decoder;
+    private int decodedFramesCount;
+
+    @Setup
+    public void setUp() {
+        ShieldFrame frame = SimulatedDevices.newSensorFrame();
+        int frameSize = frame.getFrameSize() + 1;
+        stream = new byte[frameSize * FRAMES_COUNT];
+        for (int i = 0; i < FRAMES_COUNT; i++) {
+            int offset = i * frameSize;
+            frame.writeTo(stream, offset + 1);
+            stream[offset] = ShieldFrame.START_OF_FRAME;
+            stream[offset + 1] = (byte) OneSheeldSdk.getCompatibleLibraryVersion();
+        }
+        decoder = new ShieldFrameDecoder(3000, new ShieldFrameDecoder.Listener() {
+            @Override
+            public void onFrameDecode(ShieldFrame frame, int libraryVersion, long frameStartTime) {
+                decodedFramesCount++;
+            }
+
+            @Override
+            public void onFrameReject(FrameRejection rejection) {
+                throw new IllegalStateException("The frame got rejected, " + rejection + ".");
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES_COUNT)
+    public int decodeFrames() {
+        for (int i = 0; i < stream.length; i += chunkSize) {
+            decoder.decode(stream, i, Math.min(chunkSize, stream.length - i));
+        }
+        return decodedFramesCount;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connects devices to simulated boards and waits for the results of the
+ * asynchronous parts of the pipeline on behalf of the benchmarks.
+ */
+class SimulatedDevices {
+    private static final long TIME_OUT_NANO_SECONDS = 10000000000L;
+    private static int devicesCount = 0;
+
+    private SimulatedDevices() {
+    }
+
+    /**
+     * Connects a new device to the passed board and waits until it is initialized.
+     */
+    static OneSheeldDevice connect(SimulatedBoard board) {
+        return connect(board, ThreadingMode.DEDICATED_THREADS);
+    }
+
+    /**
+     * Connects a new device to the passed board using the passed threading mode and waits
+     * until it is initialized.
+     */
+    static synchronized OneSheeldDevice connect(SimulatedBoard board, ThreadingMode threadingMode) {
+        devicesCount++;
+        OneSheeldDevice device = new OneSheeldDevice(String.format("00:00:00:00:%02X:%02X", devicesCount >> 8, devicesCount & 0xFF));
+        device.setThreadingMode(threadingMode);
+        board.connect(device);
+        awaitInitialization(device);
+        return device;
+    }
+
+    /**
+     * Waits until the passed device is connected and got the responses to its version queries.
+     * <p>Flooding the board before that could fill its output while the device still waits to
+     * write its queries, and the board only answers them between the sent frames.</p>
+     */
+    static void awaitInitialization(OneSheeldDevice device) {
+        long start = System.nanoTime();
+        while (!device.isConnected() || !device.hasRespondedToFirmwareVersionQuery() || !device.hasRespondedToLibraryVersionQuery()) {
+            if (System.nanoTime() - start > TIME_OUT_NANO_SECONDS)
+                throw new IllegalStateException("The device didn't connect to the simulated board.");
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Waits until the passed counter reaches the target.
+     */
+    static void await(AtomicLong counter, long target) {
+        long start = System.nanoTime();
+        while (counter.get() < target) {
+            if (System.nanoTime() - start > TIME_OUT_NANO_SECONDS)
+                throw new IllegalStateException("Timed out with " + counter.get() + " out of " + target + ".");
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Waits until the board receives the target number of frames of the passed shield.
+     */
+    static void awaitReceivedFrames(SimulatedBoard board, byte shieldId, long target) {
+        long start = System.nanoTime();
+        while (board.getReceivedFramesCount(shieldId) < target) {
+            if (System.nanoTime() - start > TIME_OUT_NANO_SECONDS)
+                throw new IllegalStateException("Timed out with " + board.getReceivedFramesCount(shieldId) + " out of " + target + ".");
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Waits until the board receives the target number of serial data bytes.
+     */
+    static void awaitReceivedSerialBytes(SimulatedBoard board, long target) {
+        long start = System.nanoTime();
+        while (board.getReceivedSerialBytesCount() < target) {
+            if (System.nanoTime() - start > TIME_OUT_NANO_SECONDS)
+                throw new IllegalStateException("Timed out with " + board.getReceivedSerialBytesCount() + " out of " + target + ".");
+            Thread.yield();
+        }
+    }
+
+    static ShieldFrame newSensorFrame() {
+        ShieldFrame frame = new ShieldFrame(KnownShields.getInstance().ACCELEROMETER_SENSOR_SHIELD.getId(), (byte) 0x01);
+        frame.addArgument(0.12f);
+        frame.addArgument(-9.81f);
+        frame.addArgument(0.5f);
+        return frame;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures encoding serial data into Firmata sysex messages the way the device does
+ * before writing them, flushing the encoder every time it reaches the write size.
+ */
+@State(Scope.Thread)
+public class SysexEncoderBenchmark {
+    @Param({"1024", "16384", "131072"})
+    public int payloadSize;
+
+    private byte[] payload;
+    private SysexEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadSize];
+        for (int i = 0; i < payload.length; i++)
+            payload[i] = (byte) i;
+        encoder = new SysexEncoder(OneSheeldDevice.DEFAULT_MAXIMUM_WRITE_SIZE);
+    }
+
+    @Benchmark
+    public int encodeSerialData() {
+        int encodedBytes = 0;
+        encoder.reset();
+        for (int i = 0; i < payload.length; i += SysexEncoder.MAX_SYSEX_DATA_BYTES) {
+            int pieceLength = Math.min(SysexEncoder.MAX_SYSEX_DATA_BYTES, payload.length - i);
+            if (encoder.size() + SysexEncoder.getEncodedLength(pieceLength) > OneSheeldDevice.DEFAULT_MAXIMUM_WRITE_SIZE) {
+                encodedBytes += encoder.size();
+                encoder.reset();
+            }
+            encoder.appendSysex((byte) 0x66, payload, i, pieceLength);
+        }
+        return encodedBytes + encoder.size();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stresses the threading modes with many devices connected at once, each to its own
+ * simulated board. Every operation sends a single frame from each of the boards and
+ * waits until all the devices receive it, so the average time is the latency of a frame
+ * when all the devices are busy. The live threads count and the time the other threads
+ * spent on the CPU per frame are reported next to it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ThreadingModesStressBenchmark {
+    @Param({"16", "64"})
+    public int devicesCount;
+
+    @Param({"DEDICATED_THREADS", "SHARED_POOL"})
+    public ThreadingMode threadingMode;
+
+    private final AtomicLong receivedFramesCount = new AtomicLong();
+    private SimulatedBoard[] boards;
+    private OneSheeldDevice[] devices;
+    private ShieldFrame frame;
+
+    @Setup
+    public void setUp() {
+        OneSheeldDataCallback dataCallback = new OneSheeldDataCallback() {
+            @Override
+            public void onShieldFrameReceive(OneSheeldDevice device, ShieldFrame frame) {
+                receivedFramesCount.incrementAndGet();
+            }
+        };
+        boards = new SimulatedBoard[devicesCount];
+        devices = new OneSheeldDevice[devicesCount];
+        for (int i = 0; i < devicesCount; i++) {
+            boards[i] = new SimulatedBoard();
+            devices[i] = SimulatedDevices.connect(boards[i], threadingMode);
+            devices[i].addDataCallback(dataCallback);
+        }
+        frame = SimulatedDevices.newSensorFrame();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (OneSheeldDevice device : devices)
+            device.disconnect();
+    }
+
+    @Benchmark
+    public void receiveFrameOnAllDevices(Resources resources) {
+        resources.startFrames();
+        long target = receivedFramesCount.get() + devicesCount;
+        for (SimulatedBoard board : boards)
+            board.sendFrame(frame);
+        SimulatedDevices.await(receivedFramesCount, target);
+        resources.endFrames(devicesCount);
+    }
+
+    /**
+     * The extra results of the benchmark, the CPU time of the benchmark thread itself is
+     * left out as it only spins waiting for the frames.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Resources {
+        private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        private final com.sun.management.OperatingSystemMXBean operatingSystemBean =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        private long processCpuTime;
+        private long benchmarkThreadCpuTime;
+        private long totalCpuTime;
+        private long totalFrames;
+        public long liveThreads;
+        public double cpuNanoSecondsPerFrame;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            totalCpuTime = 0;
+            totalFrames = 0;
+            liveThreads = 0;
+            cpuNanoSecondsPerFrame = 0;
+        }
+
+        private void startFrames() {
+            processCpuTime = operatingSystemBean.getProcessCpuTime();
+            benchmarkThreadCpuTime = threadBean.getCurrentThreadCpuTime();
+        }
+
+        private void endFrames(int framesCount) {
+            long benchmarkThreadCpuTime = threadBean.getCurrentThreadCpuTime() - this.benchmarkThreadCpuTime;
+            totalCpuTime += operatingSystemBean.getProcessCpuTime() - processCpuTime - benchmarkThreadCpuTime;
+            totalFrames += framesCount;
+            cpuNanoSecondsPerFrame = (double) totalCpuTime / totalFrames;
+            liveThreads = threadBean.getThreadCount();
+        }
+    }
+}
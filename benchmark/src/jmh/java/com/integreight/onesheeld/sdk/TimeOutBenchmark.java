@@ -0,0 +1,31 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures starting and stopping a time out on the shared scheduler.
+ */
+public class TimeOutBenchmark {
+    @Benchmark
+    public boolean startAndStop() {
+        TimeOut timeOut = new TimeOut(1000);
+        timeOut.stopTimer();
+        return timeOut.isRunning();
+    }
+}
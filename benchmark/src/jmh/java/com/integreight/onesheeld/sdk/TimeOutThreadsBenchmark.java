@@ -0,0 +1,127 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the threads started while pushing 10k frames through a device connected to a
+ * simulated board. Every received frame re-arms a time out the way the Bluetooth LE
+ * connection re-arms the one sending its pending bytes, and that time out writes a frame
+ * back to the board once the frames pause. The frames themselves time out by their start
+ * time in the decoder, without a timer of their own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TimeOutThreadsBenchmark {
+    private static final int FRAMES_COUNT = 10000;
+    private static final long PENDING_BYTES_TIME_OUT = 1;
+
+    private final AtomicLong receivedFramesCount = new AtomicLong();
+    private SimulatedBoard board;
+    private OneSheeldDevice device;
+    private TimeOut sendingPendingBytesTimeOut;
+    private ShieldFrame frame;
+
+    @Setup
+    public void setUp() {
+        board = new SimulatedBoard();
+        device = SimulatedDevices.connect(board);
+        frame = SimulatedDevices.newSensorFrame();
+        final ShieldFrame pendingBytesFrame = new ShieldFrame((byte) 0x30, (byte) 0x01);
+        sendingPendingBytesTimeOut = new TimeOut(PENDING_BYTES_TIME_OUT, PENDING_BYTES_TIME_OUT, new TimeOut.TimeOutCallback() {
+            @Override
+            public void onTimeOut() {
+                device.sendShieldFrame(pendingBytesFrame);
+            }
+
+            @Override
+            public void onTick(long milliSecondsLeft) {
+            }
+        });
+        device.addDataCallback(new OneSheeldDataCallback() {
+            @Override
+            public void onShieldFrameReceive(OneSheeldDevice device, ShieldFrame frame) {
+                sendingPendingBytesTimeOut.restart();
+                receivedFramesCount.incrementAndGet();
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        sendingPendingBytesTimeOut.stopTimer();
+        device.disconnect();
+    }
+
+    @Benchmark
+    public void receiveFrames(Threads threads) {
+        threads.startFrames();
+        long target = receivedFramesCount.get() + FRAMES_COUNT;
+        board.sendFrames(frame, FRAMES_COUNT);
+        SimulatedDevices.await(receivedFramesCount, target);
+        threads.endFrames();
+    }
+
+    /**
+     * The threads started by the whole process per 10k frames, along with the live ones.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Threads {
+        private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        private long startedThreadsCount;
+        private long totalStartedThreads;
+        private long totalBatches;
+        public double startedThreadsPer10kFrames;
+        public long liveThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            totalStartedThreads = 0;
+            totalBatches = 0;
+            startedThreadsPer10kFrames = 0;
+            liveThreads = 0;
+        }
+
+        private void startFrames() {
+            startedThreadsCount = threadBean.getTotalStartedThreadCount();
+        }
+
+        private void endFrames() {
+            totalStartedThreads += threadBean.getTotalStartedThreadCount() - startedThreadsCount;
+            totalBatches++;
+            startedThreadsPer10kFrames = (double) totalStartedThreads / totalBatches;
+            liveThreads = threadBean.getThreadCount();
+        }
+    }
+}
@@ -194,20 +194,28 @@ public class MainActivity extends AppCompatActivity {
     };
     private OneSheeldDataCallback dataCallback = new OneSheeldDataCallback() {
         @Override
-        public void onSerialDataReceive(OneSheeldDevice device, int data) {
-            receivedStringBuilder.append((char) data);
-            if (receivedStringBuilder.length() >= bluetoothTestingReceivingEditText.getText().toString().length()) {
-                String compareString = receivedStringBuilder.substring(0, bluetoothTestingReceivingEditText.getText().toString().length());
-                if (compareString.equals(bluetoothTestingReceivingEditText.getText().toString())) {
-                    receivedStringBuilder.delete(0, bluetoothTestingReceivingEditText.getText().toString().length());
-                    uiThreadHandler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            bluetoothTestingReceivingFramesCounterTextView.setText(String.valueOf((Integer.valueOf(bluetoothTestingReceivingFramesCounterTextView.getText().toString()) + 1)));
-                        }
-                    });
+        public void onSerialDataReceive(OneSheeldDevice device, byte[] data, int offset, int length) {
+            String expectedString = bluetoothTestingReceivingEditText.getText().toString();
+            int receivedFrames = 0;
+            for (int i = offset; i < offset + length; i++) {
+                receivedStringBuilder.append((char) (data[i] & 0xFF));
+                if (receivedStringBuilder.length() >= expectedString.length()) {
+                    String compareString = receivedStringBuilder.substring(0, expectedString.length());
+                    if (compareString.equals(expectedString)) {
+                        receivedStringBuilder.delete(0, expectedString.length());
+                        receivedFrames++;
+                    }
+                    if (receivedStringBuilder.length() > 0) receivedStringBuilder.deleteCharAt(0);
                 }
-                if (receivedStringBuilder.length() > 0) receivedStringBuilder.deleteCharAt(0);
+            }
+            if (receivedFrames > 0) {
+                final int newlyReceivedFrames = receivedFrames;
+                uiThreadHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        bluetoothTestingReceivingFramesCounterTextView.setText(String.valueOf((Integer.valueOf(bluetoothTestingReceivingFramesCounterTextView.getText().toString()) + newlyReceivedFrames)));
+                    }
+                });
             }
         }
     };
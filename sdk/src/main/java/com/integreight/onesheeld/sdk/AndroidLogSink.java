@@ -0,0 +1,39 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * The default log sink, prints the messages to the log cat console.
+ */
+class AndroidLogSink extends OneSheeldLogSink {
+    @Override
+    public void log(LogLevel level, String tag, String message, Throwable throwable) {
+        switch (level) {
+            case DEBUG:
+                android.util.Log.d(tag, message);
+                break;
+            case ERROR:
+                if (throwable != null) throwable.printStackTrace();
+                android.util.Log.e(tag, message);
+                break;
+            default:
+                android.util.Log.i(tag, message);
+                break;
+        }
+    }
+}
@@ -17,6 +17,8 @@
 package com.integreight.onesheeld.sdk;
 
 abstract class ArrayUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     private ArrayUtils() {
 
     }
@@ -44,18 +46,14 @@ abstract class ArrayUtils {
 
     static String toHexString(byte[] array) {
         if (array == null) return null;
-        String s = "";
+        StringBuilder builder = new StringBuilder(array.length * 3);
+        appendHexString(builder, array);
+        return builder.toString();
+    }
+
+    static void appendHexString(StringBuilder builder, byte[] array) {
         for (byte b : array) {
-            if ((Integer.toHexString(b).length() < 2))
-                s += "0" + Integer.toHexString(b) + " ";
-            else if ((Integer.toHexString(b).length() == 2))
-                s += Integer.toHexString(b) + " ";
-            else {
-                String temp = Integer.toHexString(b);
-                temp = temp.substring(temp.length() - 2);
-                s += temp + " ";
-            }
+            builder.append(HEX_DIGITS[(b >> 4) & 0x0F]).append(HEX_DIGITS[b & 0x0F]).append(' ');
         }
-        return s;
     }
 }
@@ -0,0 +1,50 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * Represents what {@link OneSheeldDevice} does when the data it receives
+ * doesn't fit in its receive buffers.
+ *
+ * @see OneSheeldDevice#setReceiveBufferOverflowPolicy(BufferOverflowPolicy)
+ */
+public enum BufferOverflowPolicy {
+    /**
+     * Implies that the reading from the connection waits until there is
+     * space in the buffer.
+     * <p>The buffers used to grow without limit, with this policy a callback that
+     * can't keep up slows down the reading from the connection instead, so the board
+     * may end up waiting for the device to read its data.</p>
+     * <p>1Sheeld+ notifications arrive on a system thread that can't be held,
+     * the notifications that don't fit in the first buffer are dropped.</p>
+     */
+    BLOCK,
+    /**
+     * Implies that the oldest bytes in the buffer are dropped to make room
+     * for the received ones.
+     */
+    DROP_OLDEST,
+    /**
+     * Implies that the received bytes that don't fit in the buffer are dropped.
+     */
+    DROP_NEWEST,
+    /**
+     * Implies that the device gets disconnected and
+     * {@link OneSheeldError#RECEIVE_BUFFER_OVERFLOW} is reported.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,185 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * A fixed capacity ring buffer of primitive bytes.
+ * <p>It is meant to be filled by a single producer thread and drained by a single
+ * consumer thread. Bytes are copied in bulk so the monitor is taken once per chunk
+ * instead of once per byte and nothing is allocated after construction.</p>
+ */
+class ByteRingBuffer {
+    private final byte[] buffer;
+    private int readIndex;
+    private int size;
+
+    ByteRingBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The buffer capacity should be positive.");
+        this.buffer = new byte[capacity];
+        this.readIndex = 0;
+        this.size = 0;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    synchronized void clear() {
+        readIndex = 0;
+        size = 0;
+        notifyAll();
+    }
+
+    /**
+     * Writes all of the given bytes, waiting for free space whenever the buffer is full.
+     */
+    synchronized void put(byte[] source, int offset, int length) throws InterruptedException {
+        while (length > 0) {
+            while (size == buffer.length)
+                wait();
+            int written = copyIn(source, offset, length);
+            offset += written;
+            length -= written;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the buffer has free space, so the bytes can be offered with no lock held while waiting.
+     */
+    synchronized void awaitFreeSpace() throws InterruptedException {
+        while (size == buffer.length)
+            wait();
+    }
+
+    /**
+     * Writes as many of the given bytes as there is free space for without waiting.
+     *
+     * @return the number of bytes written
+     */
+    synchronized int offer(byte[] source, int offset, int length) {
+        int written = copyIn(source, offset, length);
+        if (written > 0) notifyAll();
+        return written;
+    }
+
+    /**
+     * Writes as many of the given bytes as there is free space for, waiting up to the
+     * time out for some space if the buffer is full.
+     *
+     * @return the number of bytes written
+     */
+    synchronized int offer(byte[] source, int offset, int length, long timeOutMilliSeconds) throws InterruptedException {
+        if (length > 0 && size == buffer.length)
+            wait(timeOutMilliSeconds);
+        return offer(source, offset, length);
+    }
+
+    /**
+     * Writes all of the given bytes without waiting, dropping the oldest bytes to make room for them.
+     *
+     * @return the number of dropped bytes
+     */
+    synchronized int overwrite(byte[] source, int offset, int length) {
+        int dropped = 0;
+        if (length > buffer.length) {
+            dropped = length - buffer.length;
+            offset += dropped;
+            length = buffer.length;
+        }
+        int overflow = size + length - buffer.length;
+        if (overflow > 0) {
+            readIndex = (readIndex + overflow) % buffer.length;
+            size -= overflow;
+            dropped += overflow;
+        }
+        if (copyIn(source, offset, length) > 0) notifyAll();
+        return dropped;
+    }
+
+    /**
+     * Waits until at least one byte is available then moves as many bytes as possible to the destination.
+     *
+     * @return the number of bytes read
+     */
+    synchronized int drain(byte[] destination, int offset, int length) throws InterruptedException {
+        if (length <= 0) return 0;
+        while (size == 0)
+            wait();
+        int read = copyOut(destination, offset, length);
+        notifyAll();
+        return read;
+    }
+
+    synchronized int drain(byte[] destination) throws InterruptedException {
+        return drain(destination, 0, destination.length);
+    }
+
+    /**
+     * Moves as many available bytes as possible to the destination without waiting.
+     *
+     * @return the number of bytes read
+     */
+    synchronized int poll(byte[] destination, int offset, int length) {
+        int read = copyOut(destination, offset, length);
+        if (read > 0) notifyAll();
+        return read;
+    }
+
+    synchronized byte take() throws InterruptedException {
+        while (size == 0)
+            wait();
+        byte value = buffer[readIndex];
+        readIndex = (readIndex + 1) % buffer.length;
+        size--;
+        notifyAll();
+        return value;
+    }
+
+    private int copyIn(byte[] source, int offset, int length) {
+        int count = Math.min(length, buffer.length - size);
+        if (count <= 0) return 0;
+        int writeIndex = (readIndex + size) % buffer.length;
+        int firstPart = Math.min(count, buffer.length - writeIndex);
+        System.arraycopy(source, offset, buffer, writeIndex, firstPart);
+        if (count > firstPart)
+            System.arraycopy(source, offset + firstPart, buffer, 0, count - firstPart);
+        size += count;
+        return count;
+    }
+
+    private int copyOut(byte[] destination, int offset, int length) {
+        int count = Math.min(length, size);
+        if (count <= 0) return 0;
+        int firstPart = Math.min(count, buffer.length - readIndex);
+        System.arraycopy(buffer, readIndex, destination, offset, firstPart);
+        if (count > firstPart)
+            System.arraycopy(buffer, 0, destination, offset + firstPart, count - firstPart);
+        readIndex = (readIndex + count) % buffer.length;
+        size -= count;
+        return count;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * Wraps an established connection and records every chunk read from or written to it.
+ */
+class CapturingConnection extends OneSheeldConnection {
+    private final OneSheeldConnection connection;
+    private final ConnectionCapture capture;
+
+    CapturingConnection(OneSheeldConnection connection, ConnectionCapture capture) {
+        super(connection.getDevice());
+        this.connection = connection;
+        this.capture = capture;
+        connection.setConnectionCloseCallback(new BluetoothConnectionCloseCallback() {
+            @Override
+            public void onConnectionClose() {
+                close();
+            }
+        });
+        markAsConnected();
+    }
+
+    ConnectionCapture getCapture() {
+        return capture;
+    }
+
+    @Override
+    protected boolean onConnectionInitiationRequest() {
+        return false;
+    }
+
+    @Override
+    boolean write(byte[] buffer, int offset, int length) {
+        boolean isWritten = connection.write(buffer, offset, length);
+        if (isWritten) capture.record(ConnectionCapture.OUTBOUND, buffer, offset, length);
+        return isWritten;
+    }
+
+    @Override
+    int read(byte[] buffer, int offset, int length, long timeOutMilliSeconds) {
+        int readBytesLength = connection.read(buffer, offset, length, timeOutMilliSeconds);
+        if (readBytesLength > 0) capture.record(ConnectionCapture.INBOUND, buffer, offset, readBytesLength);
+        return readBytesLength;
+    }
+
+    @Override
+    boolean flush() {
+        return connection.flush();
+    }
+
+    @Override
+    protected void onClose() {
+        connection.close();
+        capture.stop();
+        capture.awaitStopped();
+    }
+}
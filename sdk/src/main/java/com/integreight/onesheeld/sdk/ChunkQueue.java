@@ -0,0 +1,130 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue of whole byte chunks that never blocks its producer.
+ * <p>Chunks are handed over without copying or locking, the number of queued
+ * bytes is tracked separately to bound the memory and the consumer parks
+ * while the queue is empty and gets unparked by the next chunk.</p>
+ * <p>Closing the queue drops the queued chunks and the ones added later, and wakes
+ * the consumer for good until the queue gets opened again.</p>
+ */
+class ChunkQueue {
+    private final ConcurrentLinkedQueue<byte[]> chunks;
+    private final AtomicInteger size;
+    private final int capacity;
+    private volatile Thread consumer;
+    private volatile boolean isClosed;
+
+    ChunkQueue(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The queue capacity should be positive.");
+        this.chunks = new ConcurrentLinkedQueue<>();
+        this.size = new AtomicInteger(0);
+        this.capacity = capacity;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * Adds the chunk if it fits.
+     *
+     * @return false if the chunk doesn't fit and was not added
+     */
+    boolean offer(byte[] chunk) {
+        if (isClosed) return true;
+        if (size.get() + chunk.length > capacity)
+            return false;
+        add(chunk);
+        return true;
+    }
+
+    /**
+     * Adds the chunk, dropping the oldest chunks to make room for it.
+     *
+     * @return the number of dropped bytes
+     */
+    int overwrite(byte[] chunk) {
+        if (isClosed) return 0;
+        int dropped = 0;
+        byte[] oldestChunk;
+        while (size.get() + chunk.length > capacity && (oldestChunk = chunks.poll()) != null) {
+            size.addAndGet(-oldestChunk.length);
+            dropped += oldestChunk.length;
+        }
+        add(chunk);
+        return dropped;
+    }
+
+    /**
+     * Takes the oldest chunk, waiting for one up to the given time.
+     *
+     * @return the chunk or null if the time elapsed, the queue got closed or the thread got interrupted
+     */
+    byte[] take(long timeOutNanoSeconds) {
+        consumer = Thread.currentThread();
+        long deadline = System.nanoTime() + timeOutNanoSeconds;
+        byte[] chunk;
+        while ((chunk = chunks.poll()) == null) {
+            long timeLeft = deadline - System.nanoTime();
+            if (timeLeft <= 0 || isClosed || Thread.currentThread().isInterrupted())
+                return null;
+            LockSupport.parkNanos(this, timeLeft);
+        }
+        size.addAndGet(-chunk.length);
+        return chunk;
+    }
+
+    void clear() {
+        byte[] chunk;
+        while ((chunk = chunks.poll()) != null) {
+            size.addAndGet(-chunk.length);
+        }
+        wakeUpConsumer();
+    }
+
+    void open() {
+        isClosed = false;
+    }
+
+    void close() {
+        isClosed = true;
+        clear();
+    }
+
+    private void add(byte[] chunk) {
+        chunks.offer(chunk);
+        size.addAndGet(chunk.length);
+        wakeUpConsumer();
+    }
+
+    private void wakeUpConsumer() {
+        Thread thread = consumer;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+}
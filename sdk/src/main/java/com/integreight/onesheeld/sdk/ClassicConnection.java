@@ -23,7 +23,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 class ClassicConnection extends OneSheeldConnection {
-    private final int MAX_BUFFER_SIZE = 1024;
     private BluetoothSocket socket;
     private boolean isDefaultConnectingRetriesEnabled;
     private InputStream inputStream;
@@ -69,10 +68,10 @@ class ClassicConnection extends OneSheeldConnection {
         return isConnectionSuccessful;
     }
 
-    boolean write(final byte[] buffer) {
+    boolean write(final byte[] buffer, int offset, int length) {
         if (socket == null || outputStream == null) return false;
         try {
-            outputStream.write(buffer);
+            outputStream.write(buffer, offset, length);
         } catch (IOException e) {
             close();
             return false;
@@ -80,18 +79,25 @@ class ClassicConnection extends OneSheeldConnection {
         return true;
     }
 
-    byte[] read() {
-        if (socket == null || inputStream == null) return new byte[]{};
-        byte[] buffer = new byte[MAX_BUFFER_SIZE];
-        int bufferLength;
+    /**
+     * RFCOMM streams have no read time out, the read waits for data until the
+     * socket gets closed which always ends the wait.
+     */
+    int read(byte[] buffer, int offset, int length, long timeOutMilliSeconds) {
+        InputStream inputStream = this.inputStream;
+        if (socket == null || inputStream == null) return 0;
+        int readBytesLength;
         try {
-            bufferLength = inputStream.read(buffer, 0, buffer.length);
+            readBytesLength = inputStream.read(buffer, offset, length);
         } catch (IOException e) {
             close();
-            return new byte[]{};
+            return 0;
         }
-        bufferLength = bufferLength >= buffer.length ? buffer.length : bufferLength;
-        return ArrayUtils.copyOfRange(buffer, 0, bufferLength);
+        if (readBytesLength < 0) {
+            close();
+            return 0;
+        }
+        return readBytesLength;
     }
 
     protected void onClose() {
@@ -0,0 +1,185 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the raw bytes read from and written to a connection into a compact binary file.
+ * <p>The file starts with the {@link #MAGIC} number, the format version and the wall clock
+ * time of the start of the capture in milliseconds. Every chunk follows as a record of its
+ * direction byte, its time since the start in microseconds and its length, both as unsigned
+ * variable length integers of 7 bits per byte, then its bytes.</p>
+ * <p>Recording copies the chunk into a ring buffer that a background thread drains to the
+ * file, so the connection never waits for the disk. A chunk that doesn't fit in the buffer
+ * is dropped and counted instead.</p>
+ */
+class ConnectionCapture {
+    static final int MAGIC = 0x31534843;
+    static final byte VERSION = 1;
+    static final byte INBOUND = 0;
+    static final byte OUTBOUND = 1;
+    static final int DEFAULT_BUFFER_CAPACITY = 256 * 1024;
+    private static final int MAX_RECORD_HEADER_LENGTH = 1 + 10 + 5;
+
+    private final File file;
+    private final ByteRingBuffer buffer;
+    private final byte[] recordHeader = new byte[MAX_RECORD_HEADER_LENGTH];
+    private final DataOutputStream output;
+    private final long startTime;
+    private final AtomicLong recordsCount = new AtomicLong();
+    private final AtomicLong droppedRecordsCount = new AtomicLong();
+    private final Thread writingThread;
+    private volatile boolean isStopped;
+
+    ConnectionCapture(File file) throws IOException {
+        this(file, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    ConnectionCapture(File file, int bufferCapacity) throws IOException {
+        this.file = file;
+        this.buffer = new ByteRingBuffer(bufferCapacity);
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        try {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeLong(System.currentTimeMillis());
+        } catch (IOException e) {
+            closeOutput();
+            throw e;
+        }
+        this.startTime = System.nanoTime();
+        this.isStopped = false;
+        this.writingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeRecords();
+            }
+        }, "OneSheeldCaptureThread: " + file.getName());
+        writingThread.setDaemon(true);
+        writingThread.start();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean isStopped() {
+        return isStopped;
+    }
+
+    long getRecordsCount() {
+        return recordsCount.get();
+    }
+
+    long getDroppedRecordsCount() {
+        return droppedRecordsCount.get();
+    }
+
+    void record(byte direction, byte[] data, int offset, int length) {
+        if (isStopped || length <= 0) return;
+        long time = (System.nanoTime() - startTime) / 1000;
+        synchronized (recordHeader) {
+            int headerLength = 0;
+            recordHeader[headerLength++] = direction;
+            headerLength = putVarLong(recordHeader, headerLength, time);
+            headerLength = putVarLong(recordHeader, headerLength, length);
+            // Only this method adds to the buffer, so the free space can only grow until the record is in.
+            if (buffer.capacity() - buffer.size() < headerLength + length) {
+                droppedRecordsCount.incrementAndGet();
+                return;
+            }
+            buffer.offer(recordHeader, 0, headerLength);
+            buffer.offer(data, offset, length);
+        }
+        recordsCount.incrementAndGet();
+    }
+
+    /**
+     * Stops recording, the records still in the buffer are written before the file gets closed.
+     *
+     * @see #awaitStopped()
+     */
+    void stop() {
+        if (isStopped) return;
+        isStopped = true;
+        writingThread.interrupt();
+    }
+
+    /**
+     * Waits until the records left in the buffer after stopping are written and the file
+     * is closed, so the file can be read right after.
+     * <p>An interrupt doesn't cut the wait short, it is kept for the caller instead.</p>
+     */
+    void awaitStopped() {
+        if (Thread.currentThread() == writingThread) return;
+        boolean isInterrupted = false;
+        while (writingThread.isAlive()) {
+            try {
+                writingThread.join();
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) Thread.currentThread().interrupt();
+    }
+
+    private void writeRecords() {
+        byte[] chunk = new byte[8 * 1024];
+        int chunkLength;
+        try {
+            while (!isStopped) {
+                try {
+                    chunkLength = buffer.drain(chunk);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                output.write(chunk, 0, chunkLength);
+            }
+            while ((chunkLength = buffer.poll(chunk, 0, chunk.length)) > 0) {
+                output.write(chunk, 0, chunkLength);
+            }
+            output.flush();
+        } catch (IOException e) {
+            isStopped = true;
+            Log.e(OneSheeldSdk.TAG, "Capture: Writing to " + file.getName() + " failed, capturing stopped.", e);
+        } finally {
+            closeOutput();
+        }
+    }
+
+    private void closeOutput() {
+        try {
+            output.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static int putVarLong(byte[] destination, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            destination[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        destination[offset++] = (byte) value;
+        return offset;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Delivers the data events of a device to one {@link OneSheeldDataCallback} according to its dispatch policy.
+ * <p>Events reach the dispatcher on the parser thread, the inline dispatcher calls the callback right away
+ * while the others hand owned copies of the data to an executor, one event at a time or batched per dispatch
+ * tick, so a slow callback never stalls the parser.</p>
+ */
+abstract class DataCallbackDispatcher {
+    final OneSheeldDataCallback callback;
+
+    private DataCallbackDispatcher(OneSheeldDataCallback callback) {
+        this.callback = callback;
+    }
+
+    static DataCallbackDispatcher inline(OneSheeldDataCallback callback) {
+        return new InlineDispatcher(callback);
+    }
+
+    static DataCallbackDispatcher onExecutor(OneSheeldDataCallback callback, Executor executor) {
+        return new ExecutorDispatcher(callback, executor);
+    }
+
+    static DataCallbackDispatcher batched(OneSheeldDataCallback callback, Executor executor) {
+        return new BatchingDispatcher(callback, executor);
+    }
+
+    abstract void dispatchDigitalPinStatusChange(OneSheeldDevice device, int pinNumber, boolean newValue);
+
+    abstract void dispatchSerialData(OneSheeldDevice device, byte[] data, int offset, int length);
+
+    /**
+     * @param knownShield the known shield of the frame or null if it isn't known
+     */
+    abstract void dispatchShieldFrame(OneSheeldDevice device, ShieldFrame frame, KnownShield knownShield);
+
+    private static class InlineDispatcher extends DataCallbackDispatcher {
+        InlineDispatcher(OneSheeldDataCallback callback) {
+            super(callback);
+        }
+
+        @Override
+        void dispatchDigitalPinStatusChange(OneSheeldDevice device, int pinNumber, boolean newValue) {
+            callback.onDigitalPinStatusChange(device, pinNumber, newValue);
+        }
+
+        @Override
+        void dispatchSerialData(OneSheeldDevice device, byte[] data, int offset, int length) {
+            callback.onSerialDataReceive(device, data, offset, length);
+        }
+
+        @Override
+        void dispatchShieldFrame(OneSheeldDevice device, ShieldFrame frame, KnownShield knownShield) {
+            callback.onShieldFrameReceive(device, frame);
+            if (knownShield != null)
+                callback.onKnownShieldFrameReceive(device, knownShield, frame);
+        }
+    }
+
+    private static class ExecutorDispatcher extends DataCallbackDispatcher {
+        private final SerialExecutor executor;
+
+        ExecutorDispatcher(OneSheeldDataCallback callback, Executor executor) {
+            super(callback);
+            this.executor = new SerialExecutor(executor);
+        }
+
+        @Override
+        void dispatchDigitalPinStatusChange(final OneSheeldDevice device, final int pinNumber, final boolean newValue) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onDigitalPinStatusChange(device, pinNumber, newValue);
+                }
+            });
+        }
+
+        @Override
+        void dispatchSerialData(final OneSheeldDevice device, byte[] data, int offset, int length) {
+            final byte[] copy = ArrayUtils.copyOfRange(data, offset, offset + length);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onSerialDataReceive(device, copy, 0, copy.length);
+                }
+            });
+        }
+
+        @Override
+        void dispatchShieldFrame(final OneSheeldDevice device, ShieldFrame frame, final KnownShield knownShield) {
+            final ShieldFrame retainedFrame = frame.retain();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onShieldFrameReceive(device, retainedFrame);
+                    if (knownShield != null)
+                        callback.onKnownShieldFrameReceive(device, knownShield, retainedFrame);
+                }
+            });
+        }
+    }
+
+    private static class BatchingDispatcher extends DataCallbackDispatcher {
+        private final SerialExecutor executor;
+        private Batch pendingBatch;
+
+        BatchingDispatcher(OneSheeldDataCallback callback, Executor executor) {
+            super(callback);
+            this.executor = new SerialExecutor(executor);
+        }
+
+        @Override
+        void dispatchDigitalPinStatusChange(final OneSheeldDevice device, final int pinNumber, final boolean newValue) {
+            synchronized (this) {
+                // Pin changes and serial data are parsed on the same thread, later data goes
+                // to a new batch so it isn't delivered before this change.
+                pendingBatch = null;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onDigitalPinStatusChange(device, pinNumber, newValue);
+                    }
+                });
+            }
+        }
+
+        @Override
+        synchronized void dispatchSerialData(OneSheeldDevice device, byte[] data, int offset, int length) {
+            getPendingBatch(device).appendSerialData(data, offset, length);
+        }
+
+        @Override
+        synchronized void dispatchShieldFrame(OneSheeldDevice device, ShieldFrame frame, KnownShield knownShield) {
+            getPendingBatch(device).frames.add(frame.retain());
+        }
+
+        private Batch getPendingBatch(OneSheeldDevice device) {
+            if (pendingBatch == null) {
+                final Batch batch = new Batch(device);
+                pendingBatch = batch;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (BatchingDispatcher.this) {
+                            if (pendingBatch == batch) pendingBatch = null;
+                        }
+                        batch.deliverTo(callback);
+                    }
+                });
+            }
+            return pendingBatch;
+        }
+    }
+
+    /**
+     * The events collected for one dispatch tick, the serial data is delivered before the frames.
+     * <p>The frames are parsed out of the serial data after it gets dispatched, so they never had a fixed
+     * order relative to the serial data chunks, only the order within each kind is kept.</p>
+     */
+    private static class Batch {
+        private final OneSheeldDevice device;
+        private final List<ShieldFrame> frames;
+        private byte[] serialData;
+        private int serialDataLength;
+
+        Batch(OneSheeldDevice device) {
+            this.device = device;
+            this.frames = new ArrayList<>();
+        }
+
+        void appendSerialData(byte[] data, int offset, int length) {
+            if (serialData == null) {
+                serialData = new byte[Math.max(length, 64)];
+            } else if (serialDataLength + length > serialData.length) {
+                byte[] newSerialData = new byte[Math.max(serialDataLength + length, serialData.length * 2)];
+                System.arraycopy(serialData, 0, newSerialData, 0, serialDataLength);
+                serialData = newSerialData;
+            }
+            System.arraycopy(data, offset, serialData, serialDataLength, length);
+            serialDataLength += length;
+        }
+
+        void deliverTo(OneSheeldDataCallback callback) {
+            if (serialDataLength > 0)
+                callback.onSerialDataReceive(device, serialData, 0, serialDataLength);
+            if (!frames.isEmpty())
+                callback.onShieldFramesReceive(device, frames);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The lock free traffic and error counters of a device.
+ * <p>Every counter is updated with a single atomic operation, a snapshot
+ * reads each of them separately, so it isn't taken atomically as a whole.</p>
+ */
+class DeviceMetrics {
+    private final AtomicLong readBytesCount = new AtomicLong(0);
+    private final AtomicLong writtenBytesCount = new AtomicLong(0);
+    private final AtomicLong droppedBytesCount = new AtomicLong(0);
+    private final AtomicLong decodedFramesCount = new AtomicLong(0);
+    private final AtomicLong sentFramesCount = new AtomicLong(0);
+    private final AtomicLongArray rejectedFramesCounts = new AtomicLongArray(FrameRejection.values().length);
+    private final AtomicLong connectionsCount = new AtomicLong(0);
+
+    void onBytesRead(int count) {
+        readBytesCount.addAndGet(count);
+    }
+
+    void onBytesWrite(int count) {
+        writtenBytesCount.addAndGet(count);
+    }
+
+    void onBytesDrop(int count) {
+        droppedBytesCount.addAndGet(count);
+    }
+
+    long getDroppedBytesCount() {
+        return droppedBytesCount.get();
+    }
+
+    void resetDroppedBytesCount() {
+        droppedBytesCount.set(0);
+    }
+
+    void onFrameDecode() {
+        decodedFramesCount.incrementAndGet();
+    }
+
+    void onFrameSend() {
+        sentFramesCount.incrementAndGet();
+    }
+
+    void onFrameReject(FrameRejection rejection) {
+        rejectedFramesCounts.incrementAndGet(rejection.ordinal());
+    }
+
+    void onConnect() {
+        connectionsCount.incrementAndGet();
+    }
+
+    OneSheeldMetrics snapshot(int queuedFramesCount) {
+        long[] rejectedFramesCounts = new long[this.rejectedFramesCounts.length()];
+        for (int i = 0; i < rejectedFramesCounts.length; i++) {
+            rejectedFramesCounts[i] = this.rejectedFramesCounts.get(i);
+        }
+        long connectionsCount = this.connectionsCount.get();
+        return new OneSheeldMetrics(readBytesCount.get(), writtenBytesCount.get(), droppedBytesCount.get(),
+                decodedFramesCount.get(), sentFramesCount.get(), rejectedFramesCounts,
+                connectionsCount, Math.max(0, connectionsCount - 1), queuedFramesCount);
+    }
+
+    void reset() {
+        readBytesCount.set(0);
+        writtenBytesCount.set(0);
+        droppedBytesCount.set(0);
+        decodedFramesCount.set(0);
+        sentFramesCount.set(0);
+        for (int i = 0; i < rejectedFramesCounts.length(); i++) {
+            rejectedFramesCounts.set(i, 0);
+        }
+        connectionsCount.set(0);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * Represents the reasons for discarding a malformed or incomplete frame
+ * received from the board.
+ *
+ * @see OneSheeldMetrics#getRejectedFramesCount(FrameRejection)
+ */
+public enum FrameRejection {
+    /**
+     * Implies that the verification byte of the frame is invalid.
+     */
+    VERIFICATION_BYTE,
+    /**
+     * Implies that the number of arguments doesn't match its complement.
+     */
+    ARGUMENTS_NUMBER,
+    /**
+     * Implies that the length of an argument doesn't match its complement or is zero.
+     */
+    ARGUMENT_LENGTH,
+    /**
+     * Implies that the frame doesn't end where its arguments end.
+     */
+    END_OF_FRAME,
+    /**
+     * Implies that the rest of the frame wasn't received in time.
+     */
+    TIME_OUT
+}
@@ -0,0 +1,327 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * Holds the typed arguments of a frame of a {@link KnownFunction}.
+ * <p>It is filled by {@link FunctionCodec#decode(ShieldFrame, FunctionArguments)} from a
+ * received frame, or by its add methods before
+ * {@link FunctionCodec#encode(FunctionArguments, ShieldFrame)} writes them to a frame.
+ * The numbers are kept as primitives and the bytes of the strings and arrays are copied
+ * into a buffer that is reused, so a holder can be decoded into over and over without
+ * allocating once it has grown to size. Strings and arrays are only created when asked for.</p>
+ * <p>It isn't thread safe, use a holder per thread.</p>
+ *
+ * @see FunctionCodec
+ */
+public class FunctionArguments {
+    private ArgumentType[] types;
+    private KnownArgument[] knownArguments;
+    private int[] values;
+    private int[] offsets;
+    private int[] lengths;
+    private byte[] data;
+    private int dataLength;
+    private int count;
+
+    /**
+     * Instantiates a new empty <tt>FunctionArguments</tt>.
+     */
+    public FunctionArguments() {
+        types = new ArgumentType[4];
+        knownArguments = new KnownArgument[4];
+        values = new int[4];
+        offsets = new int[4];
+        lengths = new int[4];
+        data = new byte[32];
+        dataLength = 0;
+        count = 0;
+    }
+
+    /**
+     * Removes all of the arguments.
+     */
+    public void clear() {
+        for (int i = 0; i < count; i++) {
+            knownArguments[i] = null;
+        }
+        count = 0;
+        dataLength = 0;
+    }
+
+    /**
+     * Gets the number of arguments.
+     *
+     * @return the number of arguments
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the type of a specific argument.
+     *
+     * @param argNo the argument number
+     * @return the type or null if the argument is not found.
+     */
+    public ArgumentType getType(int argNo) {
+        if (argNo < 0 || argNo >= count)
+            return null;
+        return types[argNo];
+    }
+
+    /**
+     * Gets the known argument that a specific decoded argument matched.
+     * <p>Arguments that can be multiple match the same known argument several times.</p>
+     *
+     * @param argNo the argument number
+     * @return the known argument or null if the argument is not found or wasn't decoded.
+     */
+    public KnownArgument getKnownArgument(int argNo) {
+        if (argNo < 0 || argNo >= count)
+            return null;
+        return knownArguments[argNo];
+    }
+
+    /**
+     * Gets a specific integer, byte or boolean argument as an integer.
+     * <p>Bytes are unsigned, booleans are 1 or 0.</p>
+     *
+     * @param argNo the argument number
+     * @return the argument as integer or 0 if the argument is not found or is a float, a string or a byte array.
+     */
+    public int getInteger(int argNo) {
+        if (argNo < 0 || argNo >= count || !isNumeric(types[argNo]) || types[argNo] == ArgumentType.FLOAT)
+            return 0;
+        return values[argNo];
+    }
+
+    /**
+     * Gets a specific numeric argument as a float.
+     *
+     * @param argNo the argument number
+     * @return the argument as float or 0 if the argument is not found or is a string or a byte array.
+     */
+    public float getFloat(int argNo) {
+        if (argNo < 0 || argNo >= count || !isNumeric(types[argNo]))
+            return 0;
+        return types[argNo] == ArgumentType.FLOAT ? Float.intBitsToFloat(values[argNo]) : values[argNo];
+    }
+
+    /**
+     * Gets a specific numeric argument as a boolean.
+     *
+     * @param argNo the argument number
+     * @return true if the argument is not zero, false if it is zero, not found or is a string or a byte array.
+     */
+    public boolean getBoolean(int argNo) {
+        return argNo >= 0 && argNo < count && isNumeric(types[argNo]) && values[argNo] != 0;
+    }
+
+    /**
+     * Gets a specific numeric argument as a byte.
+     *
+     * @param argNo the argument number
+     * @return the lowest byte of the argument or 0 if the argument is not found or is a string or a byte array.
+     */
+    public byte getByte(int argNo) {
+        if (argNo < 0 || argNo >= count || !isNumeric(types[argNo]))
+            return 0;
+        return (byte) values[argNo];
+    }
+
+    /**
+     * Gets a specific string argument.
+     *
+     * @param argNo the argument number
+     * @return a new string or null if the argument is not found or is not a string.
+     */
+    public String getString(int argNo) {
+        if (argNo < 0 || argNo >= count || types[argNo] != ArgumentType.STRING)
+            return null;
+        return new String(data, offsets[argNo], lengths[argNo]);
+    }
+
+    /**
+     * Gets a copy of the bytes of a specific string or byte array argument.
+     *
+     * @param argNo the argument number
+     * @return a byte array or null if the argument is not found or is numeric.
+     */
+    public byte[] getBytes(int argNo) {
+        if (argNo < 0 || argNo >= count || isNumeric(types[argNo]))
+            return null;
+        byte[] bytes = new byte[lengths[argNo]];
+        System.arraycopy(data, offsets[argNo], bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    /**
+     * Adds an integer argument, it takes as many bytes as its known argument.
+     *
+     * @param value the value
+     */
+    public void addInteger(int value) {
+        addValue(ArgumentType.INTEGER, value);
+    }
+
+    /**
+     * Adds a float argument.
+     *
+     * @param value the value
+     */
+    public void addFloat(float value) {
+        addValue(ArgumentType.FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * Adds a boolean argument.
+     *
+     * @param value the value
+     */
+    public void addBoolean(boolean value) {
+        addValue(ArgumentType.BOOLEAN, value ? 1 : 0);
+    }
+
+    /**
+     * Adds a single byte argument.
+     *
+     * @param value the value
+     */
+    public void addByte(byte value) {
+        addValue(ArgumentType.BYTE, value & 0xFF);
+    }
+
+    /**
+     * Adds a string argument, characters outside US-ASCII are replaced with '?'.
+     *
+     * @param value the value
+     * @throws NullPointerException if the passed string is null
+     */
+    public void addString(String value) {
+        if (value == null)
+            throw new NullPointerException("The passed string is null, have you checked its validity?");
+        int length = Math.min(value.length(), 255);
+        ensureCapacity(length);
+        int offset = dataLength;
+        for (int i = 0; i < length; i++) {
+            char character = value.charAt(i);
+            data[dataLength++] = character < 128 ? (byte) character : (byte) '?';
+        }
+        addBytesArgument(ArgumentType.STRING, offset, dataLength - offset);
+    }
+
+    /**
+     * Adds a raw byte array argument.
+     *
+     * @param value the value
+     * @throws NullPointerException if the passed array is null
+     */
+    public void addBytes(byte[] value) {
+        if (value == null)
+            throw new NullPointerException("The passed array is null, have you checked its validity?");
+        int length = Math.min(value.length, 255);
+        ensureCapacity(length);
+        System.arraycopy(value, 0, data, dataLength, length);
+        dataLength += length;
+        addBytesArgument(ArgumentType.RAW_BYTE_ARRAY, dataLength - length, length);
+    }
+
+    static boolean isNumeric(ArgumentType type) {
+        return type != ArgumentType.STRING && type != ArgumentType.RAW_BYTE_ARRAY;
+    }
+
+    int getValue(int argNo) {
+        return values[argNo];
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+    int getOffset(int argNo) {
+        return offsets[argNo];
+    }
+
+    int getLength(int argNo) {
+        return lengths[argNo];
+    }
+
+    void setKnownArgument(int argNo, KnownArgument knownArgument) {
+        knownArguments[argNo] = knownArgument;
+    }
+
+    void addDecodedValue(ArgumentType type, int value, KnownArgument knownArgument) {
+        addValue(type, value);
+        knownArguments[count - 1] = knownArgument;
+    }
+
+    void addDecodedBytes(ArgumentType type, byte[] source, int offset, int length, KnownArgument knownArgument) {
+        ensureCapacity(length);
+        System.arraycopy(source, offset, data, dataLength, length);
+        dataLength += length;
+        addBytesArgument(type, dataLength - length, length);
+        knownArguments[count - 1] = knownArgument;
+    }
+
+    private void addValue(ArgumentType type, int value) {
+        ensureArgumentsCapacity();
+        types[count] = type;
+        values[count] = value;
+        offsets[count] = 0;
+        lengths[count] = 0;
+        count++;
+    }
+
+    private void addBytesArgument(ArgumentType type, int offset, int length) {
+        ensureArgumentsCapacity();
+        types[count] = type;
+        values[count] = 0;
+        offsets[count] = offset;
+        lengths[count] = length;
+        count++;
+    }
+
+    private void ensureArgumentsCapacity() {
+        if (count < types.length) return;
+        int newCapacity = types.length * 2;
+        ArgumentType[] newTypes = new ArgumentType[newCapacity];
+        KnownArgument[] newKnownArguments = new KnownArgument[newCapacity];
+        int[] newValues = new int[newCapacity];
+        int[] newOffsets = new int[newCapacity];
+        int[] newLengths = new int[newCapacity];
+        System.arraycopy(types, 0, newTypes, 0, count);
+        System.arraycopy(knownArguments, 0, newKnownArguments, 0, count);
+        System.arraycopy(values, 0, newValues, 0, count);
+        System.arraycopy(offsets, 0, newOffsets, 0, count);
+        System.arraycopy(lengths, 0, newLengths, 0, count);
+        types = newTypes;
+        knownArguments = newKnownArguments;
+        values = newValues;
+        offsets = newOffsets;
+        lengths = newLengths;
+    }
+
+    private void ensureCapacity(int length) {
+        if (dataLength + length > data.length) {
+            byte[] newData = new byte[Math.max(dataLength + length, data.length * 2)];
+            System.arraycopy(data, 0, newData, 0, dataLength);
+            data = newData;
+        }
+    }
+}
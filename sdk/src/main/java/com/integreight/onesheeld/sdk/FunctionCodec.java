@@ -0,0 +1,197 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.List;
+
+/**
+ * Validates, decodes and encodes the frames of a {@link KnownFunction} against its
+ * {@link KnownArgument}s.
+ * <p>The known arguments are flattened into arrays once, then every frame is matched
+ * against them in a single pass over its arguments. A known argument that is optional
+ * may be skipped, one that can be multiple may match several consecutive arguments,
+ * fixed length ones only match arguments of that exact length.</p>
+ * <p>Codecs keep no state between calls, so they can be shared between threads.</p>
+ *
+ * @see KnownFunction#getCodec()
+ * @see FunctionArguments
+ */
+public class FunctionCodec {
+    private final byte functionId;
+    private final KnownArgument[] knownArguments;
+    private final ArgumentType[] types;
+    private final int[] lengths;
+    private final boolean[] isOptional;
+    private final boolean[] canBeMultiple;
+
+    FunctionCodec(byte functionId, List<KnownArgument> knownArguments) {
+        int count = knownArguments != null ? knownArguments.size() : 0;
+        this.functionId = functionId;
+        this.knownArguments = new KnownArgument[count];
+        this.types = new ArgumentType[count];
+        this.lengths = new int[count];
+        this.isOptional = new boolean[count];
+        this.canBeMultiple = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            KnownArgument knownArgument = knownArguments.get(i);
+            this.knownArguments[i] = knownArgument;
+            this.types[i] = knownArgument.getType();
+            this.lengths[i] = knownArgument.isVariableLength() ? 0 : knownArgument.getLength();
+            this.isOptional[i] = knownArgument.isOptional();
+            this.canBeMultiple[i] = knownArgument.canBeMultiple();
+        }
+    }
+
+    /**
+     * Checks whether a frame matches the known arguments of the function.
+     *
+     * @param frame the frame
+     * @return the boolean
+     * @throws NullPointerException if the passed frame is null
+     */
+    public boolean validate(ShieldFrame frame) {
+        return decode(frame, null);
+    }
+
+    /**
+     * Decodes the arguments of a frame into a holder, validating them on the way.
+     * <p>The holder is cleared first and left empty if the frame doesn't match.</p>
+     *
+     * @param frame     the frame
+     * @param arguments the holder to decode into, or null to only validate
+     * @return true if the frame matches the known arguments of the function
+     * @throws NullPointerException if the passed frame is null
+     */
+    public boolean decode(ShieldFrame frame, FunctionArguments arguments) {
+        if (frame == null)
+            throw new NullPointerException("The passed frame is null, have you checked its validity?");
+        if (arguments != null) arguments.clear();
+        if (frame.getFunctionId() != functionId) return false;
+        byte[] data = frame.getArgumentsData();
+        int count = frame.getArgumentsCount();
+        int knownArgumentIndex = 0;
+        int matchesCount = 0;
+        for (int i = 0; i < count; i++) {
+            int length = frame.getArgumentLength(i);
+            while (knownArgumentIndex < types.length && !fits(knownArgumentIndex, length)) {
+                if (matchesCount == 0 && !isOptional[knownArgumentIndex]) return onMismatch(arguments);
+                knownArgumentIndex++;
+                matchesCount = 0;
+            }
+            if (knownArgumentIndex == types.length) return onMismatch(arguments);
+            if (arguments != null) {
+                ArgumentType type = types[knownArgumentIndex];
+                int offset = frame.getArgumentOffset(i);
+                if (FunctionArguments.isNumeric(type)) {
+                    int value = 0;
+                    for (int j = 0; j < length && j < 4; j++) {
+                        value |= (data[offset + j] & 0xFF) << (8 * j);
+                    }
+                    arguments.addDecodedValue(type, value, knownArguments[knownArgumentIndex]);
+                } else {
+                    arguments.addDecodedBytes(type, data, offset, length, knownArguments[knownArgumentIndex]);
+                }
+            }
+            matchesCount++;
+            if (!canBeMultiple[knownArgumentIndex]) {
+                knownArgumentIndex++;
+                matchesCount = 0;
+            }
+        }
+        return isRestOptional(knownArgumentIndex, matchesCount) || onMismatch(arguments);
+    }
+
+    /**
+     * Appends the arguments in a holder to a frame, validating them first.
+     * <p>Integers take as many bytes as the known argument they match. Nothing is
+     * appended if the arguments don't match.</p>
+     *
+     * @param arguments the holder to encode
+     * @param frame     the frame to append the arguments to
+     * @return true if the arguments match the known arguments of the function
+     * @throws NullPointerException if the passed holder or frame is null
+     */
+    public boolean encode(FunctionArguments arguments, ShieldFrame frame) {
+        if (arguments == null)
+            throw new NullPointerException("The passed arguments are null, have you checked their validity?");
+        if (frame == null)
+            throw new NullPointerException("The passed frame is null, have you checked its validity?");
+        if (frame.getFunctionId() != functionId) return false;
+        int count = arguments.getCount();
+        int knownArgumentIndex = 0;
+        int matchesCount = 0;
+        for (int i = 0; i < count; i++) {
+            ArgumentType type = arguments.getType(i);
+            int length = arguments.getLength(i);
+            while (knownArgumentIndex < types.length && !fits(knownArgumentIndex, type, length)) {
+                if (matchesCount == 0 && !isOptional[knownArgumentIndex]) return false;
+                knownArgumentIndex++;
+                matchesCount = 0;
+            }
+            if (knownArgumentIndex == types.length) return false;
+            arguments.setKnownArgument(i, knownArguments[knownArgumentIndex]);
+            matchesCount++;
+            if (!canBeMultiple[knownArgumentIndex]) {
+                knownArgumentIndex++;
+                matchesCount = 0;
+            }
+        }
+        if (!isRestOptional(knownArgumentIndex, matchesCount)) return false;
+        for (int i = 0; i < count; i++) {
+            int value = arguments.getValue(i);
+            switch (arguments.getType(i)) {
+                case INTEGER:
+                    frame.addArgument(arguments.getKnownArgument(i).getLength(), value);
+                    break;
+                case FLOAT:
+                    frame.addArgument(Float.intBitsToFloat(value));
+                    break;
+                case BOOLEAN:
+                    frame.addArgument(value != 0);
+                    break;
+                case BYTE:
+                    frame.addArgument((byte) value);
+                    break;
+                default:
+                    frame.addArgument(arguments.getData(), arguments.getOffset(i), arguments.getLength(i));
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private boolean fits(int knownArgumentIndex, int length) {
+        return lengths[knownArgumentIndex] == 0 ? length > 0 : length == lengths[knownArgumentIndex];
+    }
+
+    private boolean fits(int knownArgumentIndex, ArgumentType type, int length) {
+        return types[knownArgumentIndex] == type && (FunctionArguments.isNumeric(type) || fits(knownArgumentIndex, length));
+    }
+
+    private boolean isRestOptional(int knownArgumentIndex, int matchesCount) {
+        for (int i = knownArgumentIndex; i < types.length; i++) {
+            if (!isOptional[i] && !(i == knownArgumentIndex && matchesCount > 0)) return false;
+        }
+        return true;
+    }
+
+    private static boolean onMismatch(FunctionArguments arguments) {
+        if (arguments != null) arguments.clear();
+        return false;
+    }
+}
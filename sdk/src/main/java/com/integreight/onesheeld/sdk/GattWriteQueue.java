@@ -0,0 +1,182 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.ArrayDeque;
+
+/**
+ * Splits outgoing data into characteristic sized chunks and writes them keeping
+ * a bounded number of writes in flight.
+ * <p>A window of one waits for every write to be acknowledged before the next,
+ * larger windows pipeline writes up to what the Bluetooth stack accepts. The
+ * actual writing is delegated to a {@link CharacteristicWriter} so the chunking
+ * and windowing don't depend on a real GATT connection.</p>
+ * <p>Writes that aren't acknowledged within the acknowledgement time out are
+ * considered lost, so a missing callback fails the flush instead of hanging it.
+ * A failed flush drops the chunks it didn't write, they belong to writes already
+ * reported as failed. The late acknowledgements of the lost writes are still
+ * expected for another time out, so they don't free the window of newer writes.</p>
+ */
+class GattWriteQueue {
+    static final int DEFAULT_CHUNK_SIZE = 20;
+    static final long DEFAULT_ACK_TIME_OUT = 1000;
+
+    private final CharacteristicWriter writer;
+    private final ArrayDeque<byte[]> chunks;
+    private final long ackTimeOutMilliSeconds;
+    private int chunkSize;
+    private int maximumInFlightWrites;
+    private int inFlightWrites;
+    private int lostWrites;
+    private long lostWritesDeadline;
+    private long completedWritesCount;
+
+    GattWriteQueue(CharacteristicWriter writer, int maximumInFlightWrites) {
+        this(writer, maximumInFlightWrites, DEFAULT_ACK_TIME_OUT);
+    }
+
+    GattWriteQueue(CharacteristicWriter writer, int maximumInFlightWrites, long ackTimeOutMilliSeconds) {
+        this.writer = writer;
+        this.chunks = new ArrayDeque<>();
+        this.ackTimeOutMilliSeconds = ackTimeOutMilliSeconds;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.maximumInFlightWrites = Math.max(1, maximumInFlightWrites);
+        this.inFlightWrites = 0;
+        this.lostWrites = 0;
+        this.completedWritesCount = 0;
+    }
+
+    synchronized int getChunkSize() {
+        return chunkSize;
+    }
+
+    synchronized void setChunkSize(int chunkSize) {
+        if (chunkSize >= DEFAULT_CHUNK_SIZE)
+            this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Checks whether there is nothing queued and nothing waiting for an acknowledgement.
+     */
+    synchronized boolean isIdle() {
+        if (lostWrites > 0 && System.nanoTime() - lostWritesDeadline >= 0) lostWrites = 0;
+        return chunks.isEmpty() && inFlightWrites == 0 && lostWrites == 0;
+    }
+
+    synchronized void enqueue(byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i += chunkSize) {
+            chunks.offer(ArrayUtils.copyOfRange(data, i, Math.min(i + chunkSize, end)));
+        }
+    }
+
+    /**
+     * Writes all the queued chunks in order, waiting whenever the window is full.
+     * <p>On failure the chunks that weren't written are dropped.</p>
+     *
+     * @return false if a write failed, an acknowledgement didn't arrive in time or the thread got interrupted
+     */
+    synchronized boolean flush() {
+        boolean isFlushed = false;
+        try {
+            isFlushed = writeChunks();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!isFlushed) chunks.clear();
+        return isFlushed;
+    }
+
+    private boolean writeChunks() throws InterruptedException {
+        awaitLostWrites();
+        while (!chunks.isEmpty()) {
+            if (inFlightWrites >= maximumInFlightWrites) {
+                if (!awaitWriteComplete()) return false;
+            } else if (writer.write(chunks.peek())) {
+                chunks.poll();
+                inFlightWrites++;
+            } else if (inFlightWrites > 0) {
+                // The stack may accept fewer pending writes than the window, retry once one completes.
+                if (!awaitWriteComplete()) return false;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the late acknowledgements of the lost writes until their time out
+     * elapses, past it they are given up on.
+     */
+    private void awaitLostWrites() throws InterruptedException {
+        long remainingTime;
+        while (lostWrites > 0 && (remainingTime = getRemainingTime(lostWritesDeadline)) > 0) {
+            wait(remainingTime);
+        }
+        lostWrites = 0;
+    }
+
+    /**
+     * Waits for the next acknowledgement, if it doesn't arrive within the time out
+     * the writes in flight are considered lost.
+     *
+     * @return false if the time out elapsed
+     */
+    private boolean awaitWriteComplete() throws InterruptedException {
+        long completedWritesCount = this.completedWritesCount;
+        long deadline = System.nanoTime() + ackTimeOutMilliSeconds * 1000000L;
+        long remainingTime = ackTimeOutMilliSeconds;
+        while (this.completedWritesCount == completedWritesCount && remainingTime > 0) {
+            wait(remainingTime);
+            remainingTime = getRemainingTime(deadline);
+        }
+        if (this.completedWritesCount != completedWritesCount) return true;
+        lostWrites += inFlightWrites;
+        lostWritesDeadline = System.nanoTime() + ackTimeOutMilliSeconds * 1000000L;
+        inFlightWrites = 0;
+        return false;
+    }
+
+    /**
+     * Gets the milliseconds left until the passed deadline, rounded up so the wait never ends early.
+     */
+    private static long getRemainingTime(long deadline) {
+        return (deadline - System.nanoTime() + 999999L) / 1000000L;
+    }
+
+    synchronized void onWriteComplete() {
+        // The acknowledgements arrive in order, so the lost writes, being older, come first.
+        if (lostWrites > 0) lostWrites--;
+        else if (inFlightWrites > 0) inFlightWrites--;
+        completedWritesCount++;
+        notifyAll();
+    }
+
+    synchronized void clear() {
+        chunks.clear();
+        inFlightWrites = 0;
+        lostWrites = 0;
+        // The cleared writes count as completed, so a waiting flush returns right away.
+        completedWritesCount++;
+        notifyAll();
+    }
+
+    interface CharacteristicWriter {
+        boolean write(byte[] value);
+    }
+}
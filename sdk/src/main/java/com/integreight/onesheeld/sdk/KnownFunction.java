@@ -31,11 +31,12 @@ public class KnownFunction {
     private byte id;
     private String name;
     private List<KnownArgument> knownArguments;
+    private volatile FunctionCodec codec;
 
     KnownFunction(byte id, String name, List<KnownArgument> knownArguments) {
         this.id = id;
         this.name = name;
-        this.knownArguments = knownArguments;
+        this.knownArguments = knownArguments != null ? Collections.unmodifiableList(knownArguments) : null;
     }
 
     /**
@@ -74,7 +75,22 @@ public class KnownFunction {
      * @see KnownArgument
      */
     public List<KnownArgument> getKnownArguments() {
-        return Collections.unmodifiableList(knownArguments);
+        return knownArguments;
+    }
+
+    /**
+     * Gets the codec that validates, decodes and encodes the frames of this function.
+     *
+     * @return the codec
+     * @see FunctionCodec
+     */
+    public FunctionCodec getCodec() {
+        FunctionCodec codec = this.codec;
+        if (codec == null) {
+            codec = new FunctionCodec(id, knownArguments);
+            this.codec = codec;
+        }
+        return codec;
     }
 
     /**
@@ -31,11 +31,17 @@ public class KnownShield {
     private byte id;
     private String name;
     private List<KnownFunction> knownFunctions;
+    private KnownFunction[] knownFunctionsTable;
 
     KnownShield(byte id, String name, List<KnownFunction> knownFunctions) {
         this.id = id;
         this.name = name;
-        this.knownFunctions = knownFunctions;
+        this.knownFunctions = Collections.unmodifiableList(knownFunctions);
+        this.knownFunctionsTable = new KnownFunction[256];
+        for (KnownFunction knownFunction : knownFunctions) {
+            if (knownFunction != null)
+                knownFunctionsTable[knownFunction.getId() & 0xFF] = knownFunction;
+        }
     }
 
     /**
@@ -63,7 +69,17 @@ public class KnownShield {
      * @see KnownFunction
      */
     public List<KnownFunction> getKnownFunctions() {
-        return Collections.unmodifiableList(knownFunctions);
+        return knownFunctions;
+    }
+
+    /**
+     * Gets the function with a specific id.
+     *
+     * @param functionId the function id
+     * @return the known function or null if the function can't be found.
+     */
+    public KnownFunction getKnownFunction(byte functionId) {
+        return knownFunctionsTable[functionId & 0xFF];
     }
 
     @Override
@@ -457,7 +457,7 @@ public class KnownShields implements List<KnownShield> {
      */
     public final KnownShield GLCD_SHIELD = new KnownShield((byte) 0x28, "GLCD Shield", new ArrayList<KnownFunction>());
     private List<KnownShield> knownShields;
-    private ArrayList<Byte> shieldsIds;
+    private KnownShield[] knownShieldsTable;
 
     private KnownShields() {
         knownShields = new ArrayList<>();
@@ -503,9 +503,9 @@ public class KnownShields implements List<KnownShield> {
         knownShields.add(NFC_SHIELD);
         knownShields.add(GLCD_SHIELD);
 
-        shieldsIds = new ArrayList<>();
+        knownShieldsTable = new KnownShield[256];
         for (KnownShield knownShield : knownShields) {
-            if (knownShield != null) shieldsIds.add(knownShield.getId());
+            if (knownShield != null) knownShieldsTable[knownShield.getId() & 0xFF] = knownShield;
         }
     }
 
@@ -672,7 +672,7 @@ public class KnownShields implements List<KnownShield> {
      * @return the boolean
      */
     public boolean contains(byte shieldId) {
-        return shieldsIds.contains(shieldId);
+        return knownShieldsTable[shieldId & 0xFF] != null;
     }
 
     /**
@@ -682,8 +682,18 @@ public class KnownShields implements List<KnownShield> {
      * @return the known shield or null if the shield can't be found.
      */
     public KnownShield getKnownShield(byte shieldId) {
-        for (int i = 0; i < knownShields.size(); i++)
-            if (knownShields.get(i).getId() == shieldId) return knownShields.get(i);
+        return knownShieldsTable[shieldId & 0xFF];
+    }
+
+    /**
+     * Gets the known shield of a frame if both its shield and its function are known.
+     *
+     * @return the known shield or null if the frame isn't known.
+     */
+    KnownShield getKnownShieldOf(ShieldFrame frame) {
+        KnownShield knownShield = getKnownShield(frame.getShieldId());
+        if (knownShield != null && knownShield.getKnownFunction(frame.getFunctionId()) != null)
+            return knownShield;
         return null;
     }
 }
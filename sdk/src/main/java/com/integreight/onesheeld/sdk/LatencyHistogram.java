@@ -0,0 +1,98 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of latencies with logarithmic buckets.
+ * <p>Recording a latency is a couple of atomic increments, so it can be done on the
+ * hot paths. Each power of two is split into eight linear sub-buckets, the way HDR
+ * histograms do, so the percentiles are approximated by the upper bound of their
+ * bucket, which is at most 12.5% above the actual latency.</p>
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKETS_BITS = 3;
+    private static final int SUB_BUCKETS_NUMBER = 1 << SUB_BUCKETS_BITS;
+    private static final int EXACT_VALUES_NUMBER = SUB_BUCKETS_NUMBER * 2;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS_NUMBER = EXACT_VALUES_NUMBER + (MAX_EXPONENT - SUB_BUCKETS_BITS) * SUB_BUCKETS_NUMBER;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_NUMBER);
+
+    /**
+     * Records a latency.
+     *
+     * @param nanoSeconds the latency in nanoseconds
+     */
+    void record(long nanoSeconds) {
+        buckets.incrementAndGet(getBucketOf(Math.max(0, nanoSeconds / 1000)));
+    }
+
+    private static int getBucketOf(long microSeconds) {
+        if (microSeconds < EXACT_VALUES_NUMBER) return (int) microSeconds;
+        int exponent = 63 - Long.numberOfLeadingZeros(microSeconds);
+        if (exponent >= MAX_EXPONENT) return BUCKETS_NUMBER - 1;
+        int subBucket = (int) (microSeconds >> (exponent - SUB_BUCKETS_BITS)) & (SUB_BUCKETS_NUMBER - 1);
+        return EXACT_VALUES_NUMBER + (exponent - SUB_BUCKETS_BITS - 1) * SUB_BUCKETS_NUMBER + subBucket;
+    }
+
+    private static long getUpperBoundOf(int bucket) {
+        if (bucket < EXACT_VALUES_NUMBER) return bucket;
+        int exponent = (bucket - EXACT_VALUES_NUMBER) / SUB_BUCKETS_NUMBER + SUB_BUCKETS_BITS + 1;
+        int subBucket = (bucket - EXACT_VALUES_NUMBER) % SUB_BUCKETS_NUMBER;
+        return ((long) (SUB_BUCKETS_NUMBER + subBucket + 1) << (exponent - SUB_BUCKETS_BITS)) - 1;
+    }
+
+    long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the latency below which the given percentage of the recorded latencies fall.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the latency in microseconds or zero if nothing is recorded
+     */
+    long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS_NUMBER];
+        long count = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            seen += counts[i];
+            if (seen >= rank) return getUpperBoundOf(i);
+        }
+        return getUpperBoundOf(BUCKETS_NUMBER - 1);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            buckets.set(i, 0);
+        }
+    }
+}
@@ -25,23 +25,28 @@ import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothProfile;
 import android.os.Build;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
 @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
 class LeConnection extends OneSheeldConnection {
     private static final Object connectionLock = new Object();
-    private final int MAX_DATA_LENGTH_PER_WRITE = 20;
-    private final Queue<Byte> readBuffer;
-    private final Queue<byte[]> writeBuffer;
-    private final Object writeLock;
+    private static final int REQUESTED_MTU = 247;
+    private static final int ATT_HEADER_SIZE = 3;
+    private final ChunkQueue readQueue;
+    private byte[] readChunk;
+    private int readChunkOffset;
+    private final GattWriteQueue writeQueue;
+    private final ReentrantLock writeLock;
     private OneSheeldDevice device;
     private BluetoothGatt bluetoothGatt;
     private boolean hasGattCallbackReplied;
     private boolean isConnectionSuccessful;
+    private final int coalescingLatencyBudget;
     private byte[] pendingSending;
+    private int pendingSendingLength;
     private TimeOut sendingPendingBytesTimeOut;
     private boolean isCharacteristicNotificationSet;
+    private boolean isMtuRequested;
     private BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
         @Override
         public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
@@ -52,7 +57,8 @@ class LeConnection extends OneSheeldConnection {
                     BluetoothGattDescriptor configDescriptor = commChar.getDescriptor(BluetoothUtils.DEVICE_CONFIG_CHARACTERISTIC);
                     if (isCharacteristicNotificationSet) {
                         if (configDescriptor != null && configDescriptor == descriptor && status == BluetoothGatt.GATT_SUCCESS) {
-                            notifyConnectionSuccess();
+                            isMtuRequested = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && requestMtu(gatt);
+                            if (!isMtuRequested) notifyConnectionSuccess();
                         } else {
                             notifyConnectionFailure();
                         }
@@ -110,24 +116,31 @@ class LeConnection extends OneSheeldConnection {
         @Override
         public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
             if (gatt != null && characteristic != null) {
-                synchronized (writeBuffer) {
-                    writeBuffer.notifyAll();
-                }
+                writeQueue.onWriteComplete();
+                sendPendingBytesOnAcknowledgement();
             } else {
                 close();
             }
         }
 
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                writeQueue.setChunkSize(mtu - ATT_HEADER_SIZE);
+                Log.i("Device " + device.getName() + ": MTU negotiated to " + mtu + " bytes.");
+            }
+            if (isMtuRequested) {
+                isMtuRequested = false;
+                notifyConnectionSuccess();
+            }
+        }
+
         @Override
         public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
             if (gatt != null && characteristic != null) {
                 final byte[] data = characteristic.getValue();
                 if (data != null && data.length > 0) {
-                    synchronized (readBuffer) {
-                        for (byte dataByte : data) {
-                            readBuffer.add(dataByte);
-                        }
-                    }
+                    onNotificationReceive(data.clone());
                 }
             } else {
                 close();
@@ -135,16 +148,50 @@ class LeConnection extends OneSheeldConnection {
         }
     };
 
-    LeConnection(OneSheeldDevice device) {
+    LeConnection(OneSheeldDevice device, int writeWindowSize, int coalescingLatencyBudget) {
         super(device);
         this.device = device;
-        this.readBuffer = new ConcurrentLinkedQueue<>();
-        this.writeBuffer = new ConcurrentLinkedQueue<>();
+        this.readQueue = new ChunkQueue(device.getReceiveBufferCapacity());
+        this.writeQueue = new GattWriteQueue(new GattWriteQueue.CharacteristicWriter() {
+            @Override
+            public boolean write(byte[] value) {
+                return writeCharacteristic(value);
+            }
+        }, writeWindowSize);
         this.hasGattCallbackReplied = false;
         this.isConnectionSuccessful = false;
-        this.pendingSending = new byte[]{};
-        this.writeLock = new Object();
+        this.coalescingLatencyBudget = coalescingLatencyBudget;
+        this.pendingSending = new byte[64];
+        this.pendingSendingLength = 0;
+        this.writeLock = new ReentrantLock();
         this.isCharacteristicNotificationSet = false;
+        this.isMtuRequested = false;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private boolean requestMtu(BluetoothGatt gatt) {
+        return gatt.requestMtu(REQUESTED_MTU);
+    }
+
+    private void onNotificationReceive(byte[] chunk) {
+        // This runs on a Binder thread that must never wait, so BLOCK drops the chunks that don't fit too.
+        int droppedBytes = 0;
+        switch (device.getReceiveBufferOverflowPolicy()) {
+            case DROP_OLDEST:
+                droppedBytes = readQueue.overwrite(chunk);
+                break;
+            case DISCONNECT:
+                if (!readQueue.offer(chunk)) {
+                    device.countDroppedBytes(chunk.length);
+                    device.onReceiveBufferOverflow();
+                    return;
+                }
+                break;
+            default:
+                if (!readQueue.offer(chunk)) droppedBytes = chunk.length;
+                break;
+        }
+        if (droppedBytes > 0) device.countDroppedBytes(droppedBytes);
     }
 
     private void notifyConnectionFailure() {
@@ -169,23 +216,18 @@ class LeConnection extends OneSheeldConnection {
     }
 
     private void initSendingPendingBytesTimeOut() {
-        stopSendingPendingBytesTimeOut();
-        sendingPendingBytesTimeOut = new TimeOut(100, 100, new TimeOut.TimeOutCallback() {
+        if (sendingPendingBytesTimeOut != null) {
+            sendingPendingBytesTimeOut.restart();
+            return;
+        }
+        sendingPendingBytesTimeOut = new TimeOut(coalescingLatencyBudget, coalescingLatencyBudget, new TimeOut.TimeOutCallback() {
             @Override
             public void onTimeOut() {
-                synchronized (writeLock) {
-                    synchronized (writeBuffer) {
-                        if (pendingSending.length >= 0) {
-                            for (int i = 0; i < pendingSending.length; i += MAX_DATA_LENGTH_PER_WRITE) {
-                                byte[] subArray = (i + MAX_DATA_LENGTH_PER_WRITE > pendingSending.length) ?
-                                        ArrayUtils.copyOfRange(pendingSending, i, pendingSending.length) :
-                                        ArrayUtils.copyOfRange(pendingSending, i, i + MAX_DATA_LENGTH_PER_WRITE);
-                                writeBuffer.add(subArray);
-                            }
-                            pendingSending = new byte[]{};
-                            flushWriteBuffer();
-                        }
-                    }
+                writeLock.lock();
+                try {
+                    sendPendingBytes();
+                } finally {
+                    writeLock.unlock();
                 }
             }
 
@@ -193,94 +235,131 @@ class LeConnection extends OneSheeldConnection {
             public void onTick(long milliSecondsLeft) {
             }
         });
-        sendingPendingBytesTimeOut.setName("SendingPendingBytesTimeOut");
+    }
+
+    /**
+     * Sends the held back bytes once the last write in flight is acknowledged instead of
+     * waiting for the rest of the latency budget.
+     * <p>It runs on a Binder thread that must never wait, so it gives up if a write holds the
+     * lock and leaves the bytes to the budget timer. The held bytes fit in one chunk and
+     * nothing is in flight, so the flush doesn't wait for an acknowledgement either.</p>
+     */
+    private void sendPendingBytesOnAcknowledgement() {
+        if (coalescingLatencyBudget == 0 || !writeQueue.isIdle() || !writeLock.tryLock()) return;
+        try {
+            if (pendingSendingLength > 0 && writeQueue.isIdle())
+                sendPendingBytes();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
-    boolean write(byte[] buffer) {
-        if (bluetoothGatt == null || buffer == null || buffer.length <= 0 || !hasGattCallbackReplied || !isConnectionSuccessful || bluetoothGatt.getService(BluetoothUtils.COMMUNICATIONS_SERVICE_UUID) == null ||
+    boolean write(byte[] buffer, int offset, int length) {
+        if (bluetoothGatt == null || buffer == null || length <= 0 || !hasGattCallbackReplied || !isConnectionSuccessful || bluetoothGatt.getService(BluetoothUtils.COMMUNICATIONS_SERVICE_UUID) == null ||
                 bluetoothGatt.getService(BluetoothUtils.COMMUNICATIONS_SERVICE_UUID).getCharacteristic(BluetoothUtils.COMMUNICATIONS_CHAR_UUID) == null) {
             return false;
         }
-        synchronized (writeLock) {
-            synchronized (writeBuffer) {
-                if (pendingSending.length <= 0 && buffer.length < 20)
-                    initSendingPendingBytesTimeOut();
-                pendingSending = ArrayUtils.concatenateBytesArrays(pendingSending, buffer);
-                if (pendingSending.length < 20) {
-                    return true;
-                }
-                if (sendingPendingBytesTimeOut != null) sendingPendingBytesTimeOut.resetTimer();
-                boolean isDataLeft = false;
-                for (int i = 0; i < pendingSending.length; i += MAX_DATA_LENGTH_PER_WRITE) {
-                    if (i + MAX_DATA_LENGTH_PER_WRITE > pendingSending.length) {
-                        pendingSending = ArrayUtils.copyOfRange(pendingSending, i, pendingSending.length);
-                        if (pendingSending.length > 0) initSendingPendingBytesTimeOut();
-                        isDataLeft = true;
-                        break;
-                    } else {
-                        byte[] subArray = ArrayUtils.copyOfRange(pendingSending, i, i + MAX_DATA_LENGTH_PER_WRITE);
-                        writeBuffer.add(subArray);
-                    }
-                }
-                if (!isDataLeft) pendingSending = new byte[]{};
-                return flushWriteBuffer();
+        writeLock.lock();
+        try {
+            boolean wasEmpty = pendingSendingLength == 0;
+            appendPendingBytes(buffer, offset, length);
+            int sendingLength;
+            if (coalescingLatencyBudget == 0 || writeQueue.isIdle()) {
+                // Like Nagle's algorithm, bytes are only held back while earlier ones are still on the air.
+                sendingLength = pendingSendingLength;
+            } else {
+                int chunkSize = writeQueue.getChunkSize();
+                sendingLength = pendingSendingLength - pendingSendingLength % chunkSize;
+            }
+            if (sendingLength > 0) {
+                writeQueue.enqueue(pendingSending, 0, sendingLength);
+                pendingSendingLength -= sendingLength;
+                System.arraycopy(pendingSending, sendingLength, pendingSending, 0, pendingSendingLength);
             }
+            if (pendingSendingLength == 0)
+                stopSendingPendingBytesTimeOut();
+            else if (wasEmpty || sendingLength > 0)
+                initSendingPendingBytesTimeOut();
+            return sendingLength == 0 || flushWriteBuffer();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    boolean flush() {
+        writeLock.lock();
+        try {
+            return sendPendingBytes();
+        } finally {
+            writeLock.unlock();
         }
     }
 
+    private boolean sendPendingBytes() {
+        stopSendingPendingBytesTimeOut();
+        if (pendingSendingLength == 0) return true;
+        writeQueue.enqueue(pendingSending, 0, pendingSendingLength);
+        pendingSendingLength = 0;
+        return flushWriteBuffer();
+    }
+
+    private void appendPendingBytes(byte[] buffer, int offset, int length) {
+        if (pendingSendingLength + length > pendingSending.length) {
+            byte[] newPendingSending = new byte[Math.max(pendingSendingLength + length, pendingSending.length * 2)];
+            System.arraycopy(pendingSending, 0, newPendingSending, 0, pendingSendingLength);
+            pendingSending = newPendingSending;
+        }
+        System.arraycopy(buffer, offset, pendingSending, pendingSendingLength, length);
+        pendingSendingLength += length;
+    }
+
     private boolean flushWriteBuffer() {
-        if (bluetoothGatt == null || !hasGattCallbackReplied || !isConnectionSuccessful || bluetoothGatt.getService(BluetoothUtils.COMMUNICATIONS_SERVICE_UUID) == null ||
-                bluetoothGatt.getService(BluetoothUtils.COMMUNICATIONS_SERVICE_UUID).getCharacteristic(BluetoothUtils.COMMUNICATIONS_CHAR_UUID) == null) {
+        if (bluetoothGatt == null || !hasGattCallbackReplied || !isConnectionSuccessful) {
             return false;
         }
+        return writeQueue.flush();
+    }
 
-        BluetoothGattCharacteristic commChar = bluetoothGatt.getService(BluetoothUtils.COMMUNICATIONS_SERVICE_UUID).getCharacteristic(BluetoothUtils.COMMUNICATIONS_CHAR_UUID);
-        synchronized (writeBuffer) {
-            while (!writeBuffer.isEmpty()) {
-                byte[] byteArrayInProgress = writeBuffer.peek();
-                boolean isSet = false;
-                for (int i = 0; i < 3; i++) {
-                    if (commChar.setValue(byteArrayInProgress)) {
-                        isSet = true;
-                        break;
-                    }
-                }
-                if (!isSet) {
-                    return false;
-                }
-                boolean didWriteSuccessfully = bluetoothGatt != null && bluetoothGatt.writeCharacteristic(commChar);
-                if (!didWriteSuccessfully) {
-                    return false;
-                }
-                try {
-                    writeBuffer.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return false;
-                }
-                writeBuffer.poll();
+    private boolean writeCharacteristic(byte[] value) {
+        BluetoothGatt gatt = bluetoothGatt;
+        if (gatt == null || gatt.getService(BluetoothUtils.COMMUNICATIONS_SERVICE_UUID) == null ||
+                gatt.getService(BluetoothUtils.COMMUNICATIONS_SERVICE_UUID).getCharacteristic(BluetoothUtils.COMMUNICATIONS_CHAR_UUID) == null) {
+            return false;
+        }
+        BluetoothGattCharacteristic commChar = gatt.getService(BluetoothUtils.COMMUNICATIONS_SERVICE_UUID).getCharacteristic(BluetoothUtils.COMMUNICATIONS_CHAR_UUID);
+        boolean isSet = false;
+        for (int i = 0; i < 3; i++) {
+            if (commChar.setValue(value)) {
+                isSet = true;
+                break;
             }
         }
-        return true;
+        return isSet && gatt.writeCharacteristic(commChar);
     }
 
     @Override
-    byte[] read() {
-        synchronized (readBuffer) {
-            if (bluetoothGatt == null || readBuffer.isEmpty() || !hasGattCallbackReplied || !isConnectionSuccessful)
-                return new byte[]{};
-            int readBufferSize = readBuffer.size();
-            byte[] buffer = new byte[readBufferSize];
-            int readBytesLength;
-            for (readBytesLength = 0; readBytesLength < buffer.length; readBytesLength++) {
-                Byte dataByte = readBuffer.poll();
-                if (dataByte != null)
-                    buffer[readBytesLength] = dataByte;
-                else break;
+    int read(byte[] buffer, int offset, int length, long timeOutMilliSeconds) {
+        if (bluetoothGatt == null || !hasGattCallbackReplied || !isConnectionSuccessful)
+            return 0;
+        // Only the connection thread reads, so the partly read chunk needs no locking.
+        if (readChunk == null) {
+            readChunk = readQueue.take(timeOutMilliSeconds * 1000000L);
+            readChunkOffset = 0;
+        }
+        int readBytesLength = 0;
+        while (readChunk != null && readBytesLength < length) {
+            int count = Math.min(length - readBytesLength, readChunk.length - readChunkOffset);
+            System.arraycopy(readChunk, readChunkOffset, buffer, offset + readBytesLength, count);
+            readBytesLength += count;
+            readChunkOffset += count;
+            if (readChunkOffset == readChunk.length) {
+                readChunk = readQueue.take(0);
+                readChunkOffset = 0;
             }
-            return buffer;
         }
+        return readBytesLength;
     }
 
     @Override
@@ -288,6 +367,7 @@ class LeConnection extends OneSheeldConnection {
         synchronized (connectionLock) {
             isConnectionSuccessful = false;
             hasGattCallbackReplied = false;
+            readQueue.open();
             bluetoothGatt = device.getBluetoothDevice().connectGatt(OneSheeldSdk.getContext(), false, gattCallback);
             while (!hasGattCallbackReplied) {
                 try {
@@ -308,13 +388,13 @@ class LeConnection extends OneSheeldConnection {
             bluetoothGatt.close();
             bluetoothGatt = null;
         }
-        synchronized (readBuffer) {
-            readBuffer.clear();
-        }
-        synchronized (writeBuffer) {
-            writeBuffer.clear();
-            pendingSending = new byte[]{};
-            writeBuffer.notifyAll();
+        readQueue.close();
+        writeQueue.clear();
+        writeLock.lock();
+        try {
+            pendingSendingLength = 0;
+        } finally {
+            writeLock.unlock();
         }
         synchronized (connectionLock) {
             isConnectionSuccessful = false;
@@ -14,43 +14,81 @@
 * or have any questions.
 */
 
+
 package com.integreight.onesheeld.sdk;
 
+/**
+ * The logging facade of the sdk.
+ * <p>The debugging flag and the log level are checked before anything is formatted.
+ * The parameterized methods replace each {} in the pattern with the next argument
+ * only if the message is logged, byte arrays are formatted in hex. They take at least
+ * two arguments so they are never confused with the tag and message methods.</p>
+ */
 abstract class Log {
+    static boolean isLoggable(LogLevel level) {
+        return OneSheeldSdk.isDebuggingEnabled() && level.compareTo(OneSheeldSdk.getLogLevel()) >= 0;
+    }
+
     static void i(String tag, String msg) {
-        if (OneSheeldSdk.isDebuggingEnabled() && tag != null && tag.trim().length() > 0 && msg != null && msg.trim().length() > 0)
-            android.util.Log.i(tag, msg);
+        if (isLoggable(LogLevel.INFO) && tag != null && tag.trim().length() > 0 && msg != null && msg.trim().length() > 0)
+            OneSheeldSdk.getLogSink().log(LogLevel.INFO, tag, msg, null);
     }
 
     static void i(String msg) {
-        if (OneSheeldSdk.isDebuggingEnabled() && msg != null && msg.trim().length() > 0)
-            android.util.Log.i(OneSheeldSdk.TAG, msg);
+        if (isLoggable(LogLevel.INFO) && msg != null && msg.trim().length() > 0)
+            OneSheeldSdk.getLogSink().log(LogLevel.INFO, OneSheeldSdk.TAG, msg, null);
+    }
+
+    static void i(String pattern, Object firstArgument, Object secondArgument) {
+        if (isLoggable(LogLevel.INFO))
+            OneSheeldSdk.getLogSink().log(LogLevel.INFO, OneSheeldSdk.TAG, format(pattern, firstArgument, secondArgument), null);
+    }
+
+    static void i(String pattern, Object firstArgument, Object secondArgument, Object thirdArgument) {
+        if (isLoggable(LogLevel.INFO))
+            OneSheeldSdk.getLogSink().log(LogLevel.INFO, OneSheeldSdk.TAG, format(pattern, firstArgument, secondArgument, thirdArgument), null);
     }
 
     static void d(String tag, String msg) {
-        if (OneSheeldSdk.isDebuggingEnabled() && tag != null && tag.trim().length() > 0 && msg != null && msg.trim().length() > 0)
-            android.util.Log.d(tag, msg);
+        if (isLoggable(LogLevel.DEBUG) && tag != null && tag.trim().length() > 0 && msg != null && msg.trim().length() > 0)
+            OneSheeldSdk.getLogSink().log(LogLevel.DEBUG, tag, msg, null);
     }
 
     static void d(String msg) {
-        if (OneSheeldSdk.isDebuggingEnabled() && msg != null && msg.trim().length() > 0)
-            android.util.Log.d(OneSheeldSdk.TAG, msg);
+        if (isLoggable(LogLevel.DEBUG) && msg != null && msg.trim().length() > 0)
+            OneSheeldSdk.getLogSink().log(LogLevel.DEBUG, OneSheeldSdk.TAG, msg, null);
     }
 
     static void e(String tag, String msg, Throwable tr) {
-        if (OneSheeldSdk.isDebuggingEnabled() && tag != null && tag.trim().length() > 0 && msg != null && msg.trim().length() > 0) {
-            if (tr != null) tr.printStackTrace();
-            android.util.Log.e(tag, msg);
-        }
+        if (isLoggable(LogLevel.ERROR) && tag != null && tag.trim().length() > 0 && msg != null && msg.trim().length() > 0)
+            OneSheeldSdk.getLogSink().log(LogLevel.ERROR, tag, msg, tr);
     }
 
     static void e(String tag, String msg) {
-        if (OneSheeldSdk.isDebuggingEnabled() && tag != null && tag.trim().length() > 0 && msg != null && msg.trim().length() > 0)
-            android.util.Log.e(tag, msg);
+        if (isLoggable(LogLevel.ERROR) && tag != null && tag.trim().length() > 0 && msg != null && msg.trim().length() > 0)
+            OneSheeldSdk.getLogSink().log(LogLevel.ERROR, tag, msg, null);
     }
 
     static void sysOut(String msg) {
         if (OneSheeldSdk.isDebuggingEnabled() && msg != null && msg.trim().length() > 0)
             System.out.println(msg);
     }
+
+    static String format(String pattern, Object... arguments) {
+        StringBuilder builder = new StringBuilder(pattern.length() + 16 * arguments.length);
+        int argumentIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argumentIndex < arguments.length && (placeholder = pattern.indexOf("{}", start)) >= 0) {
+            builder.append(pattern, start, placeholder);
+            Object argument = arguments[argumentIndex++];
+            if (argument instanceof byte[])
+                ArrayUtils.appendHexString(builder, (byte[]) argument);
+            else
+                builder.append(argument);
+            start = placeholder + 2;
+        }
+        builder.append(pattern, start, pattern.length());
+        return builder.toString();
+    }
 }
@@ -22,6 +22,7 @@ abstract class OneSheeldConnection {
     private OneSheeldDevice device;
     private boolean isConnectionCallbackCalled;
     private boolean isConnected;
+    private volatile boolean isClosed;
 
     protected OneSheeldConnection(OneSheeldDevice device) {
         this.device = device;
@@ -36,9 +37,32 @@ abstract class OneSheeldConnection {
             connectionFailure();
     }
 
-    abstract boolean write(byte[] buffer);
+    final boolean write(byte[] buffer) {
+        return write(buffer, 0, buffer.length);
+    }
 
-    abstract byte[] read();
+    abstract boolean write(byte[] buffer, int offset, int length);
+
+    /**
+     * Reads the available bytes into the passed buffer, waiting for them if there are none.
+     * <p>It returns as soon as at least one byte is read, or with zero once the time out
+     * elapses, the connection gets closed or the thread gets interrupted. It never returns
+     * zero right away while the connection is open and idle.</p>
+     *
+     * @param buffer              the buffer to fill
+     * @param offset              the offset to start filling the buffer at
+     * @param length              the maximum number of bytes to read
+     * @param timeOutMilliSeconds the longest time to wait for data
+     * @return the number of read bytes
+     */
+    abstract int read(byte[] buffer, int offset, int length, long timeOutMilliSeconds);
+
+    /**
+     * Sends right away any bytes the connection holds back to coalesce them with later writes.
+     */
+    boolean flush() {
+        return true;
+    }
 
     final void setConnectionCallback(BluetoothConnectionCallback connectionCallback) {
         this.connectionCallback = connectionCallback;
@@ -49,6 +73,7 @@ abstract class OneSheeldConnection {
     }
 
     final void close() {
+        isClosed = true;
         onClose();
         if (isConnected) {
             isConnected = false;
@@ -56,10 +81,31 @@ abstract class OneSheeldConnection {
         }
     }
 
+    /**
+     * Checks whether the connection got closed since it was established, a closed
+     * connection returns zero from every read right away.
+     *
+     * @return true if the connection is closed
+     */
+    final boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Marks a connection that wraps an already established one as established too,
+     * so that closing it notifies its close callback.
+     */
+    final void markAsConnected() {
+        isConnectionCallbackCalled = true;
+        isConnected = true;
+        isClosed = false;
+    }
+
     protected final void connectionSuccess() {
         if (connectionCallback != null && !isConnectionCallbackCalled) {
             isConnectionCallbackCalled = true;
             isConnected = true;
+            isClosed = false;
             connectionCallback.onConnectionSuccess();
         }
     }
@@ -16,12 +16,17 @@
 
 package com.integreight.onesheeld.sdk;
 
+import java.util.List;
+
 /**
  * Represents various data events for {@link OneSheeldDevice}.
  * <p>Should be extended and passed to {@link OneSheeldDevice} to get notified
  * about pins status change, raw data receive or shield frame receive.</p>
  * <p>Most of the methods here gets called in a thread different than the UI thread.
  * So take precautions and use some sort of handlers if you want to interact with the Ui.</p>
+ * <p>A callback added with an executor gets called on that executor instead,
+ * see {@link OneSheeldDevice#addDataCallback(OneSheeldDataCallback, java.util.concurrent.Executor)} and
+ * {@link OneSheeldDevice#addBatchedDataCallback(OneSheeldDataCallback, java.util.concurrent.Executor)}.</p>
  *
  * @see OneSheeldDevice
  */
@@ -49,9 +54,30 @@ public abstract class OneSheeldDataCallback {
 
     }
 
+    /**
+     * This method gets called for every chunk of bytes received on the serial
+     * pins of 1Sheeld board.
+     * <p>By default it calls {@link #onSerialDataReceive(OneSheeldDevice, int)}
+     * for every byte, override it to handle the whole chunk at once.</p>
+     * <p>The array is only valid until this method returns, copy the bytes
+     * you need to keep.</p>
+     *
+     * @param device the device where the event occurred
+     * @param data   the array holding the received bytes
+     * @param offset the offset of the first received byte
+     * @param length the number of received bytes
+     */
+    public void onSerialDataReceive(OneSheeldDevice device, byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            onSerialDataReceive(device, data[i] & 0xFF);
+        }
+    }
+
     /**
      * This method gets called for every {@link ShieldFrame} received on the
      * serial pins of 1Sheeld board.
+     * <p>The frame is only valid until this method returns, call
+     * {@link ShieldFrame#retain()} to keep it.</p>
      *
      * @param device the device where the event occurred
      * @param frame  the frame
@@ -67,6 +93,8 @@ public abstract class OneSheeldDataCallback {
      * <p>For a <tt>ShieldFrame</tt> to be known, its shield id and function id
      * should be present in one of {@link KnownShield}s in {@link KnownShields}
      * list. </p>
+     * <p>The frame is only valid until this method returns, call
+     * {@link ShieldFrame#retain()} to keep it.</p>
      *
      * @param device      the device where the event occurred
      * @param knownShield the known shield
@@ -78,4 +106,27 @@ public abstract class OneSheeldDataCallback {
     public void onKnownShieldFrameReceive(OneSheeldDevice device, KnownShield knownShield, ShieldFrame frame) {
 
     }
+
+    /**
+     * This method gets called with the {@link ShieldFrame}s received during a
+     * dispatch tick of a callback added through
+     * {@link OneSheeldDevice#addBatchedDataCallback(OneSheeldDataCallback, java.util.concurrent.Executor)}.
+     * <p>By default it calls {@link #onShieldFrameReceive(OneSheeldDevice, ShieldFrame)}
+     * and {@link #onKnownShieldFrameReceive(OneSheeldDevice, KnownShield, ShieldFrame)}
+     * for every frame.</p>
+     * <p>The frames are owned by the callback and can be kept, the list can't.</p>
+     *
+     * @param device the device where the event occurred
+     * @param frames the frames in the order they were received
+     * @see ShieldFrame
+     */
+    public void onShieldFramesReceive(OneSheeldDevice device, List<ShieldFrame> frames) {
+        for (int i = 0; i < frames.size(); i++) {
+            ShieldFrame frame = frames.get(i);
+            onShieldFrameReceive(device, frame);
+            KnownShield knownShield = OneSheeldSdk.getKnownShields().getKnownShieldOf(frame);
+            if (knownShield != null)
+                onKnownShieldFrameReceive(device, knownShield, frame);
+        }
+    }
 }
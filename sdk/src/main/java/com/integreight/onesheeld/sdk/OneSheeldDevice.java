@@ -16,19 +16,25 @@
 
 package com.integreight.onesheeld.sdk;
 
-import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.os.Build;
 import android.os.SystemClock;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a hardware 1Sheeld board.
@@ -74,12 +80,20 @@ public class OneSheeldDevice {
      */
     public static final int A5 = 19;
     private final char MAX_DATA_BYTES = 4096;
-    private final char MAX_OUTPUT_BYTES = 32;
+    static final int DEFAULT_RECEIVE_BUFFER_CAPACITY = 64 * 1024;
+    static final int RECEIVE_CHUNK_SIZE = 1024;
+    static final int DEFAULT_READ_CHUNK_SIZE = 1024;
+    static final int DEFAULT_WRITE_QUEUE_CAPACITY = 16 * 1024;
+    private static final int MAX_WRITE_MARKS = 256;
+    private static final int MAX_QUEUED_WRITES = 1024;
+    private final long CONNECTION_READ_TIME_OUT = 1000;
     private final byte DIGITAL_MESSAGE = (byte) 0x90;
     private final byte ANALOG_MESSAGE = (byte) 0xE0;
     private final byte REPORT_DIGITAL = (byte) 0xD0;
     private final byte SET_PIN_MODE = (byte) 0xF4;
     private final byte REPORT_VERSION = (byte) 0xF9;
+    static final int DEFAULT_MAXIMUM_WRITE_SIZE = 1024;
+    static final int MINIMUM_WRITE_SIZE = SysexEncoder.MAX_SYSEX_LENGTH;
     private final byte START_SYSEX = (byte) 0xF0;
     private final byte END_SYSEX = (byte) 0xF7;
     private final byte SET_BAUD_RATE = (byte) 0x5B;
@@ -102,6 +116,7 @@ public class OneSheeldDevice {
     private final byte IS_CALLBACK_ENTERED = (byte) 0x03;
     private final byte IS_CALLBACK_EXITED = (byte) 0x04;
     private final Object sendingDataLock = new Object();
+    private final Object bulkSendingLock = new Object();
     private final Object arduinoCallbacksLock = new Object();
     private final Object isConnectedLock = new Object();
     private final int MAX_RENAMING_RETRIES_NUMBER = 2;
@@ -120,24 +135,32 @@ public class OneSheeldDevice {
     private final Object bluetoothBufferLock = new Object();
     private final Object bufferThreadsInitLock = new Object();
     private Queue<ShieldFrame> queuedFrames;
-    private LinkedBlockingQueue<Byte> bluetoothBuffer;
-    private LinkedBlockingQueue<Byte> serialBuffer;
-    private LinkedBlockingQueue<Byte> firmwareUpdateBuffer;
+    private ByteRingBuffer bluetoothBuffer;
+    private ByteRingBuffer serialBuffer;
+    private ByteRingBuffer firmwareUpdateBuffer;
+    private volatile int receiveBufferCapacity;
+    private volatile int readChunkSize;
+    private volatile BufferOverflowPolicy receiveBufferOverflowPolicy;
+    private final AtomicBoolean isReceiveBufferOverflowed = new AtomicBoolean(false);
+    private byte[] pendingSerialData;
+    private int pendingSerialDataLength;
+    private final DeviceMetrics metrics = new DeviceMetrics();
     private BluetoothBufferListeningThread bluetoothBufferListeningThread;
     private SerialBufferListeningThread serialBufferListeningThread;
+    private volatile ReceivingTask receivingTask;
+    private volatile ThreadingMode threadingMode;
     private String name;
     private String address;
     private boolean isPaired;
-    private BluetoothDevice bluetoothDevice;
+    private volatile BluetoothDevice bluetoothDevice;
     private ConnectedThread connectedThread;
     private volatile boolean isBluetoothBufferWaiting;
     private volatile boolean isSerialBufferWaiting;
-    private TimeOut ShieldFrameTimeout;
     private boolean isConnected;
     private OneSheeldManager manager;
     private CopyOnWriteArrayList<OneSheeldConnectionCallback> connectionCallbacks;
     private CopyOnWriteArrayList<OneSheeldErrorCallback> errorCallbacks;
-    private CopyOnWriteArrayList<OneSheeldDataCallback> dataCallbacks;
+    private CopyOnWriteArrayList<DataCallbackDispatcher> dataCallbacks;
     private CopyOnWriteArrayList<OneSheeldVersionQueryCallback> versionQueryCallbacks;
     private CopyOnWriteArrayList<OneSheeldTestingCallback> testingCallbacks;
     private CopyOnWriteArrayList<OneSheeldRenamingCallback> renamingCallbacks;
@@ -151,6 +174,19 @@ public class OneSheeldDevice {
     private byte executeMultiByteCommand;
     private byte multiByteChannel;
     private byte[] storedInputData;
+    private byte[] frameOutputBuffer;
+    private final SysexEncoder sysexEncoder = new SysexEncoder(64);
+    private final SysexEncoder controlSysexEncoder = new SysexEncoder(SysexEncoder.MAX_SYSEX_LENGTH);
+    private volatile int maximumWriteSize;
+    private volatile boolean isAsynchronousWriting;
+    private volatile File captureFile;
+    private volatile ConnectionCapture capture;
+    private volatile int writeQueueCapacity;
+    private final AtomicInteger maximumWriteQueueDepth = new AtomicInteger(0);
+    private final LatencyHistogram writeLatencyHistogram = new LatencyHistogram();
+    private final PipelineInstrumentation pipelineInstrumentation = new PipelineInstrumentation();
+    private volatile boolean isLatencyInstrumentationEnabled;
+    private volatile long lastReadTime;
     private boolean parsingSysex;
     private int sysexBytesRead;
     private int majorVersion;
@@ -260,11 +296,10 @@ public class OneSheeldDevice {
     }
 
     private void initialize() {
-        bluetoothDevice = BluetoothUtils.getBluetoothAdapter().getRemoteDevice(address);
         isConnected = false;
-        bluetoothBuffer = new LinkedBlockingQueue<>();
-        serialBuffer = new LinkedBlockingQueue<>();
-        firmwareUpdateBuffer = new LinkedBlockingQueue<>();
+        receiveBufferCapacity = DEFAULT_RECEIVE_BUFFER_CAPACITY;
+        readChunkSize = DEFAULT_READ_CHUNK_SIZE;
+        receiveBufferOverflowPolicy = BufferOverflowPolicy.BLOCK;
         manager = OneSheeldManager.getInstance();
         connectionCallbacks = new CopyOnWriteArrayList<>();
         errorCallbacks = new CopyOnWriteArrayList<>();
@@ -287,6 +322,10 @@ public class OneSheeldDevice {
         executeMultiByteCommand = 0;
         multiByteChannel = 0;
         storedInputData = new byte[MAX_DATA_BYTES];
+        frameOutputBuffer = new byte[64];
+        maximumWriteSize = DEFAULT_MAXIMUM_WRITE_SIZE;
+        isAsynchronousWriting = false;
+        writeQueueCapacity = DEFAULT_WRITE_QUEUE_CAPACITY;
         isPinDebuggingEnabled = false;
         correctTestingChallengeAnswer = 0;
         hasFirmwareTestStarted = false;
@@ -319,6 +358,453 @@ public class OneSheeldDevice {
         return isPinDebuggingEnabled;
     }
 
+    /**
+     * Gets the maximum number of bytes handed to the connection in a single write.
+     *
+     * @return the maximum write size in bytes
+     */
+    public int getMaximumWriteSize() {
+        return maximumWriteSize;
+    }
+
+    /**
+     * Sets the maximum number of bytes handed to the connection in a single write.
+     * <p>The serial data of a frame is encoded into as few writes of this size as possible,
+     * a write never splits a sysex message.</p>
+     * <p>default value is 1024 bytes, values less than 32 bytes are ignored</p>
+     *
+     * @param maximumWriteSize the maximum write size in bytes
+     */
+    public void setMaximumWriteSize(int maximumWriteSize) {
+        if (maximumWriteSize >= MINIMUM_WRITE_SIZE)
+            this.maximumWriteSize = maximumWriteSize;
+    }
+
+    /**
+     * Checks whether the writes are queued and sent by a separate thread.
+     *
+     * @return the boolean
+     */
+    public boolean isAsynchronousWriting() {
+        return isAsynchronousWriting;
+    }
+
+    /**
+     * Sets whether the writes are queued and sent by a separate thread.
+     * <p>With asynchronous writing, sending frames, data and pin changes returns as soon
+     * as the bytes are queued instead of waiting for the connection to accept them. The
+     * queued bytes are coalesced into writes of up to the maximum write size. Pass a
+     * {@link OneSheeldWriteCallback} along with the frame or the data to know when it
+     * gets written.</p>
+     * <p>Only frames and serial data are queued, pin changes and the other control
+     * messages are still written directly, ahead of any queued bytes.</p>
+     * <p>It takes effect on the next connection.</p>
+     * <p>default value is false</p>
+     *
+     * @param isAsynchronousWriting true to queue the writes
+     * @see #setWriteQueueCapacity(int)
+     */
+    public void setAsynchronousWriting(boolean isAsynchronousWriting) {
+        this.isAsynchronousWriting = isAsynchronousWriting;
+    }
+
+    /**
+     * Gets the capacity of the write queue used with asynchronous writing.
+     *
+     * @return the capacity in bytes
+     */
+    public int getWriteQueueCapacity() {
+        return writeQueueCapacity;
+    }
+
+    /**
+     * Sets the capacity of the write queue used with asynchronous writing.
+     * <p>Writing waits for free space once the queue is full, so a slow connection
+     * eventually slows down its writers.</p>
+     * <p>It takes effect on the next connection.</p>
+     * <p>default value is 16 KB, values less than 1 KB are ignored</p>
+     *
+     * @param writeQueueCapacity the capacity in bytes
+     */
+    public void setWriteQueueCapacity(int writeQueueCapacity) {
+        if (writeQueueCapacity >= 1024)
+            this.writeQueueCapacity = writeQueueCapacity;
+    }
+
+    /**
+     * Gets the number of bytes waiting in the write queue.
+     * <p>It is always zero without asynchronous writing.</p>
+     *
+     * @return the write queue depth in bytes
+     */
+    public int getWriteQueueDepth() {
+        ConnectedThread connectedThread = this.connectedThread;
+        return connectedThread != null ? connectedThread.getWriteQueueDepth() : 0;
+    }
+
+    /**
+     * Gets the highest number of bytes that waited in the write queue.
+     *
+     * @return the maximum write queue depth in bytes
+     */
+    public int getMaximumWriteQueueDepth() {
+        return maximumWriteQueueDepth.get();
+    }
+
+    /**
+     * Gets a percentile of the latencies of the writes.
+     * <p>Without asynchronous writing, the latency is the time a write waits for the
+     * connection. With it, it is the time from queuing the bytes until the connection
+     * accepts them. The value is approximated within 12.5%.</p>
+     *
+     * @param percentile the percentile, from 0 to 100, 99 for example
+     * @return the latency in microseconds, or zero if nothing is written yet
+     */
+    public long getWriteLatency(double percentile) {
+        return writeLatencyHistogram.getPercentile(percentile);
+    }
+
+    /**
+     * Resets the write latencies and the maximum write queue depth.
+     */
+    public void resetWriteMetrics() {
+        writeLatencyHistogram.reset();
+        maximumWriteQueueDepth.set(0);
+    }
+
+    /**
+     * Checks whether the latencies of the sending and receiving stages are measured.
+     *
+     * @return the boolean
+     */
+    public boolean isLatencyInstrumentationEnabled() {
+        return isLatencyInstrumentationEnabled;
+    }
+
+    /**
+     * Sets whether the latencies of the sending and receiving stages are measured.
+     * <p>The latencies are aggregated for all frames and per shield, disabling the
+     * instrumentation keeps what is measured so far.</p>
+     * <p>default value is false</p>
+     *
+     * @param isLatencyInstrumentationEnabled true to measure the latencies
+     * @see PipelineStage
+     */
+    public void setLatencyInstrumentationEnabled(boolean isLatencyInstrumentationEnabled) {
+        this.isLatencyInstrumentationEnabled = isLatencyInstrumentationEnabled;
+    }
+
+    /**
+     * Gets a percentile of the measured latencies of a stage for all frames.
+     *
+     * @param stage      the stage
+     * @param percentile the percentile, from 0 to 100, 99 for example
+     * @return the latency in microseconds, approximated within 12.5%, or zero if nothing is measured
+     * @throws NullPointerException if the passed stage is null
+     */
+    public long getStageLatency(PipelineStage stage, double percentile) {
+        if (stage == null)
+            throw new NullPointerException("The passed stage is null, have you checked its validity?");
+        return pipelineInstrumentation.getPercentile(stage, percentile);
+    }
+
+    /**
+     * Gets a percentile of the measured latencies of a stage for the frames of a shield.
+     * <p>{@link PipelineStage#READ} is only measured for all frames.</p>
+     *
+     * @param shieldId   the shield id
+     * @param stage      the stage
+     * @param percentile the percentile, from 0 to 100, 99 for example
+     * @return the latency in microseconds, approximated within 12.5%, or zero if nothing is measured
+     * @throws NullPointerException if the passed stage is null
+     */
+    public long getStageLatency(byte shieldId, PipelineStage stage, double percentile) {
+        if (stage == null)
+            throw new NullPointerException("The passed stage is null, have you checked its validity?");
+        return pipelineInstrumentation.getPercentile(shieldId, stage, percentile);
+    }
+
+    /**
+     * Gets the number of measurements of a stage for all frames.
+     *
+     * @param stage the stage
+     * @return the count of measurements
+     * @throws NullPointerException if the passed stage is null
+     */
+    public long getStageMeasurementsCount(PipelineStage stage) {
+        if (stage == null)
+            throw new NullPointerException("The passed stage is null, have you checked its validity?");
+        return pipelineInstrumentation.getCount(stage);
+    }
+
+    /**
+     * Formats the measured latencies of every stage, for all frames then for
+     * each shield, in a line per stage with its count, median, 99th percentile and maximum.
+     * <p>Meant to be called periodically and logged or uploaded.</p>
+     *
+     * @return the measured latencies
+     */
+    public String exportLatencyInstrumentation() {
+        return pipelineInstrumentation.export();
+    }
+
+    /**
+     * Discards all of the measured latencies.
+     */
+    public void resetLatencyInstrumentation() {
+        pipelineInstrumentation.reset();
+    }
+
+    /**
+     * Gets the capacity of each of the receive buffers.
+     *
+     * @return the capacity in bytes
+     */
+    public int getReceiveBufferCapacity() {
+        return receiveBufferCapacity;
+    }
+
+    /**
+     * Sets the capacity of each of the receive buffers.
+     * <p>The incoming data passes through a couple of buffers before reaching the
+     * callbacks, none of them grows beyond this capacity.</p>
+     * <p>It takes effect on the next connection.</p>
+     * <p>default value is 64 KB, values less than 1 KB are ignored</p>
+     *
+     * @param receiveBufferCapacity the capacity in bytes
+     */
+    public void setReceiveBufferCapacity(int receiveBufferCapacity) {
+        if (receiveBufferCapacity >= RECEIVE_CHUNK_SIZE)
+            this.receiveBufferCapacity = receiveBufferCapacity;
+    }
+
+    /**
+     * Gets the size of the buffer each read from the connection fills.
+     *
+     * @return the read chunk size in bytes
+     */
+    public int getReadChunkSize() {
+        return readChunkSize;
+    }
+
+    /**
+     * Sets the size of the buffer each read from the connection fills.
+     * <p>Boards streaming at high baud rates benefit from bigger reads.</p>
+     * <p>It takes effect on the next connection.</p>
+     * <p>default value is 1 KB, values less than 64 bytes are ignored</p>
+     *
+     * @param readChunkSize the read chunk size in bytes
+     */
+    public void setReadChunkSize(int readChunkSize) {
+        if (readChunkSize >= 64)
+            this.readChunkSize = readChunkSize;
+    }
+
+    /**
+     * Gets the file the raw traffic of the device gets captured to.
+     *
+     * @return the capture file or null if capturing is off
+     */
+    public File getCaptureFile() {
+        return captureFile;
+    }
+
+    /**
+     * Gets the capture of the current connection, it is kept after the connection closes.
+     *
+     * @return the capture or null if nothing got captured
+     */
+    ConnectionCapture getCapture() {
+        return capture;
+    }
+
+    /**
+     * Sets the file to capture the raw traffic of the device to, with the time of every
+     * chunk read or written, for diagnosing the connection later or replaying it.
+     * <p>Capturing starts with the next connection and the file is overwritten on every
+     * connection, passing null stops the capture in progress right away.</p>
+     * <p>default value is null</p>
+     *
+     * @param captureFile the capture file or null to stop capturing
+     */
+    public void setCaptureFile(File captureFile) {
+        this.captureFile = captureFile;
+        ConnectionCapture capture = this.capture;
+        if (captureFile == null && capture != null) {
+            capture.stop();
+            this.capture = null;
+        }
+    }
+
+    /**
+     * Gets the policy applied when the received data doesn't fit in the receive buffers.
+     *
+     * @return the overflow policy
+     */
+    public BufferOverflowPolicy getReceiveBufferOverflowPolicy() {
+        return receiveBufferOverflowPolicy;
+    }
+
+    /**
+     * Sets the policy applied when the received data doesn't fit in the receive buffers.
+     * <p>default value is {@link BufferOverflowPolicy#BLOCK}.</p>
+     *
+     * @param receiveBufferOverflowPolicy the overflow policy
+     * @throws NullPointerException if the passed policy is null
+     */
+    public void setReceiveBufferOverflowPolicy(BufferOverflowPolicy receiveBufferOverflowPolicy) {
+        if (receiveBufferOverflowPolicy == null)
+            throw new NullPointerException("The passed overflow policy is null, have you checked its validity?");
+        this.receiveBufferOverflowPolicy = receiveBufferOverflowPolicy;
+    }
+
+    /**
+     * Gets the number of received bytes dropped because of receive buffers overflow.
+     *
+     * @return the count of dropped bytes
+     */
+    public long getDroppedBytesCount() {
+        return metrics.getDroppedBytesCount();
+    }
+
+    /**
+     * Resets the count of dropped bytes to zero.
+     */
+    public void resetDroppedBytesCount() {
+        metrics.resetDroppedBytesCount();
+    }
+
+    /**
+     * Gets a snapshot of the traffic and error counters of the device.
+     *
+     * @return the metrics
+     * @see OneSheeldMetrics
+     */
+    public OneSheeldMetrics getMetrics() {
+        return metrics.snapshot(queuedFrames.size());
+    }
+
+    /**
+     * Resets all of the traffic and error counters to zero, including the count of dropped bytes.
+     */
+    public void resetMetrics() {
+        metrics.reset();
+    }
+
+    /**
+     * Stores received bytes in one of the receive buffers applying the overflow policy.
+     *
+     * @return false if the bytes overflowed the buffer and the device is getting disconnected
+     */
+    boolean storeReceivedBytes(ByteRingBuffer buffer, byte[] data, int offset, int length) throws InterruptedException {
+        int droppedBytes;
+        switch (receiveBufferOverflowPolicy) {
+            case DROP_OLDEST:
+                droppedBytes = buffer.overwrite(data, offset, length);
+                break;
+            case DROP_NEWEST:
+                droppedBytes = length - buffer.offer(data, offset, length);
+                break;
+            case DISCONNECT:
+                droppedBytes = length - buffer.offer(data, offset, length);
+                if (droppedBytes > 0) {
+                    countDroppedBytes(droppedBytes);
+                    onReceiveBufferOverflow();
+                    return false;
+                }
+                break;
+            default:
+                buffer.put(data, offset, length);
+                droppedBytes = 0;
+                break;
+        }
+        if (droppedBytes > 0) countDroppedBytes(droppedBytes);
+        return true;
+    }
+
+    void countDroppedBytes(int droppedBytes) {
+        metrics.onBytesDrop(droppedBytes);
+    }
+
+    void onReceiveBufferOverflow() {
+        // More than one buffer may overflow at about the same time, only the first one closes the connection.
+        if (!isReceiveBufferOverflowed.compareAndSet(false, true)) return;
+        Log.i("Device " + this.name + ": Receive buffer overflowed, disconnecting.");
+        onError(OneSheeldError.RECEIVE_BUFFER_OVERFLOW);
+        // The overflow may be detected on a Bluetooth callback thread that a pending
+        // write is waiting for, so the connection is closed on the shared executor.
+        OneSheeldManager.getSharedExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                closeConnection();
+            }
+        });
+    }
+
+    /**
+     * Stores the bytes read from the connection in the Bluetooth buffer, under {@link BufferOverflowPolicy#BLOCK}
+     * it waits for free space with bluetoothBufferLock released, as the firmware update takes that lock
+     * while holding isUpdatingFirmwareLock that the parser needs to free the space.
+     *
+     * @return false if the bytes overflowed the buffer and the device is getting disconnected
+     */
+    private boolean storeReadBytes(byte[] data, int length) throws InterruptedException {
+        int storedLength = 0;
+        while (true) {
+            ByteRingBuffer buffer;
+            synchronized (bluetoothBufferLock) {
+                if (receiveBufferOverflowPolicy != BufferOverflowPolicy.BLOCK)
+                    return storeReceivedBytes(bluetoothBuffer, data, storedLength, length - storedLength);
+                storedLength += bluetoothBuffer.offer(data, storedLength, length - storedLength);
+                if (storedLength == length) return true;
+                buffer = bluetoothBuffer;
+            }
+            scheduleReceivingTask();
+            buffer.awaitFreeSpace();
+        }
+    }
+
+    /**
+     * Stores serial data under {@link BufferOverflowPolicy#BLOCK} without waiting, as the parser holds
+     * processInputLock, the bytes that don't fit are kept until the parser releases the lock.
+     */
+    private void stageSerialData(byte[] data, int offset, int length) {
+        int storedLength = pendingSerialDataLength == 0 ? serialBuffer.offer(data, offset, length) : 0;
+        int remainingLength = length - storedLength;
+        if (remainingLength == 0) return;
+        if (pendingSerialData == null || pendingSerialDataLength + remainingLength > pendingSerialData.length) {
+            byte[] newPendingSerialData = new byte[Math.max(pendingSerialDataLength + remainingLength, RECEIVE_CHUNK_SIZE)];
+            if (pendingSerialDataLength > 0)
+                System.arraycopy(pendingSerialData, 0, newPendingSerialData, 0, pendingSerialDataLength);
+            pendingSerialData = newPendingSerialData;
+        }
+        System.arraycopy(data, offset + storedLength, pendingSerialData, pendingSerialDataLength, remainingLength);
+        pendingSerialDataLength += remainingLength;
+    }
+
+    /**
+     * Moves as much of the staged serial data to the serial buffer as fits.
+     *
+     * @return true if no serial data is left staged
+     */
+    private boolean offerPendingSerialData() {
+        synchronized (processInputLock) {
+            if (pendingSerialDataLength == 0) return true;
+            int storedLength = serialBuffer.offer(pendingSerialData, 0, pendingSerialDataLength);
+            pendingSerialDataLength -= storedLength;
+            System.arraycopy(pendingSerialData, storedLength, pendingSerialData, 0, pendingSerialDataLength);
+            return pendingSerialDataLength == 0;
+        }
+    }
+
+    /**
+     * Moves all of the staged serial data to the serial buffer, waiting for free space with processInputLock released.
+     */
+    private void putPendingSerialData() throws InterruptedException {
+        while (!offerPendingSerialData())
+            serialBuffer.awaitFreeSpace();
+    }
+
     /**
      * Checks whether the firmware updating is running or not.
      *
@@ -332,6 +818,10 @@ public class OneSheeldDevice {
 
     private void stopBuffersThreads() {
         synchronized (bufferThreadsInitLock) {
+            if (receivingTask != null) {
+                receivingTask.stopRunning();
+                receivingTask = null;
+            }
             if (serialBufferListeningThread != null) {
                 serialBufferListeningThread.stopRunning();
             }
@@ -359,8 +849,54 @@ public class OneSheeldDevice {
      * @see OneSheeldDataCallback
      */
     public void addDataCallback(OneSheeldDataCallback dataCallback) {
-        if (dataCallback != null && !dataCallbacks.contains(dataCallback))
-            dataCallbacks.add(dataCallback);
+        if (dataCallback != null && indexOfDataCallback(dataCallback) < 0)
+            dataCallbacks.add(DataCallbackDispatcher.inline(dataCallback));
+    }
+
+    /**
+     * Add a data callback that gets called on the passed executor.
+     * <p>Every event is handed to the executor as soon as it is received and the
+     * events are delivered in order, so a slow callback doesn't stall the parsing
+     * of the incoming data.</p>
+     *
+     * @param dataCallback the data callback
+     * @param executor     the executor, an executor posting to a handler for example
+     * @throws NullPointerException if the passed executor is null
+     * @see OneSheeldDataCallback
+     */
+    public void addDataCallback(OneSheeldDataCallback dataCallback, Executor executor) {
+        if (executor == null)
+            throw new NullPointerException("The passed executor is null, have you checked its validity?");
+        if (dataCallback != null && indexOfDataCallback(dataCallback) < 0)
+            dataCallbacks.add(DataCallbackDispatcher.onExecutor(dataCallback, executor));
+    }
+
+    /**
+     * Add a data callback that gets called on the passed executor with batches of events.
+     * <p>The events received until the executor gets to run the callback are merged,
+     * the serial data is delivered as a single chunk to
+     * {@link OneSheeldDataCallback#onSerialDataReceive(OneSheeldDevice, byte[], int, int)} and
+     * the frames as a single list to
+     * {@link OneSheeldDataCallback#onShieldFramesReceive(OneSheeldDevice, java.util.List)},
+     * the serial data of a batch comes before its frames.</p>
+     *
+     * @param dataCallback the data callback
+     * @param executor     the executor, an executor posting to a handler for example
+     * @throws NullPointerException if the passed executor is null
+     * @see OneSheeldDataCallback
+     */
+    public void addBatchedDataCallback(OneSheeldDataCallback dataCallback, Executor executor) {
+        if (executor == null)
+            throw new NullPointerException("The passed executor is null, have you checked its validity?");
+        if (dataCallback != null && indexOfDataCallback(dataCallback) < 0)
+            dataCallbacks.add(DataCallbackDispatcher.batched(dataCallback, executor));
+    }
+
+    private int indexOfDataCallback(OneSheeldDataCallback dataCallback) {
+        for (int i = 0; i < dataCallbacks.size(); i++) {
+            if (dataCallbacks.get(i).callback == dataCallback) return i;
+        }
+        return -1;
     }
 
     /**
@@ -480,8 +1016,11 @@ public class OneSheeldDevice {
      * @see OneSheeldDataCallback
      */
     public void removeDataCallback(OneSheeldDataCallback dataCallback) {
-        if (dataCallback != null && dataCallbacks.contains(dataCallback))
-            dataCallbacks.remove(dataCallback);
+        if (dataCallback == null) return;
+        for (DataCallbackDispatcher dataCallbackDispatcher : dataCallbacks) {
+            if (dataCallbackDispatcher.callback == dataCallback)
+                dataCallbacks.remove(dataCallbackDispatcher);
+        }
     }
 
     /**
@@ -588,38 +1127,59 @@ public class OneSheeldDevice {
     }
 
 
-    private void clearAllBuffers() {
+    /**
+     * Allocates the receive buffers on the first connection, or when their capacity changed,
+     * so that the devices found while scanning don't hold buffers they never use.
+     */
+    private void resizeBuffers() {
+        int capacity = receiveBufferCapacity;
         synchronized (bluetoothBufferLock) {
-            bluetoothBuffer.clear();
-
+            if (bluetoothBuffer == null || bluetoothBuffer.capacity() != capacity)
+                bluetoothBuffer = new ByteRingBuffer(capacity);
         }
-        serialBuffer.clear();
-        firmwareUpdateBuffer.clear();
-    }
-
-    private byte readByteFromSerialBuffer() throws InterruptedException,
-            ShieldFrameNotComplete {
-        if (ShieldFrameTimeout != null && ShieldFrameTimeout.isTimeout())
-            throw new ShieldFrameNotComplete();
-        isSerialBufferWaiting = true;
-        byte temp = serialBuffer.take();
-        if (ShieldFrameTimeout != null)
-            ShieldFrameTimeout.resetTimer();
-        return temp;
+        synchronized (processInputLock) {
+            if (serialBuffer == null || serialBuffer.capacity() != capacity)
+                serialBuffer = new ByteRingBuffer(capacity);
+        }
+        if (firmwareUpdateBuffer == null || firmwareUpdateBuffer.capacity() != capacity)
+            firmwareUpdateBuffer = new ByteRingBuffer(capacity);
     }
 
-    private byte readByteFromBluetoothBuffer() throws InterruptedException {
-        isBluetoothBufferWaiting = true;
-        return bluetoothBuffer.take();
+    private void clearAllBuffers() {
+        synchronized (bluetoothBufferLock) {
+            if (bluetoothBuffer != null) bluetoothBuffer.clear();
+        }
+        if (serialBuffer != null) serialBuffer.clear();
+        if (firmwareUpdateBuffer != null) firmwareUpdateBuffer.clear();
     }
 
     private void checkBluetoothAddress(String address) {
-        if (address == null || !BluetoothAdapter.checkBluetoothAddress(address)) {
+        if (!isValidBluetoothAddress(address)) {
             throw new InvalidBluetoothAddressException("Bluetooth address is invalid, are you sure you specified it correctly?");
         }
     }
 
+    /**
+     * Does the same checks as <tt>BluetoothAdapter.checkBluetoothAddress()</tt>, an address
+     * like "00:11:22:AA:BB:CC" with upper case letters only, without calling into the
+     * Bluetooth stack so that devices can be created for simulated boards as well.
+     */
+    private static boolean isValidBluetoothAddress(String address) {
+        if (address == null || address.length() != 17) return false;
+        for (int i = 0; i < 17; i++) {
+            char c = address.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':') return false;
+            } else if (!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     BluetoothDevice getBluetoothDevice() {
+        if (bluetoothDevice == null)
+            bluetoothDevice = BluetoothUtils.getBluetoothAdapter().getRemoteDevice(address);
         return bluetoothDevice;
     }
 
@@ -661,6 +1221,17 @@ public class OneSheeldDevice {
     synchronized void connectUsing(OneSheeldConnection connection) {
         try {
             closeConnection();
+            File captureFile = this.captureFile;
+            if (captureFile != null && connection != null) {
+                try {
+                    capture = new ConnectionCapture(captureFile);
+                    connection = new CapturingConnection(connection, capture);
+                    Log.i("Device " + this.name + ": Capturing the connection traffic to " + captureFile.getName() + ".");
+                } catch (IOException e) {
+                    capture = null;
+                    Log.e(OneSheeldSdk.TAG, "Device " + this.name + ": Couldn't create the capture file " + captureFile.getName() + ".", e);
+                }
+            }
             connectedThread = new ConnectedThread(connection);
             connectedThread.start();
         } catch (IllegalArgumentException e) {
@@ -668,15 +1239,53 @@ public class OneSheeldDevice {
         }
     }
 
+    /**
+     * Connects the device using a connection that doesn't go through the manager, like the
+     * simulated and the replay ones, the connection callbacks get called the same way.
+     */
+    void connect(final OneSheeldConnection connection) {
+        connection.setConnectionCallback(new BluetoothConnectionCallback() {
+            @Override
+            public void onConnectionSuccess() {
+                connectUsing(connection);
+            }
+
+            @Override
+            public void onConnectionFailure() {
+                onError(OneSheeldError.BLUETOOTH_CONNECTION_FAILED);
+            }
+
+            @Override
+            public void onConnectionInterrupt() {
+            }
+        });
+        connection.initiate();
+    }
+
+    /**
+     * Overrides the threading mode of the manager for this device, the devices connected
+     * without the manager, like the simulated ones, use dedicated threads unless it is set.
+     * <p>It takes effect on the next connection of the device.</p>
+     */
+    void setThreadingMode(ThreadingMode threadingMode) {
+        this.threadingMode = threadingMode;
+    }
+
+    private ThreadingMode getThreadingMode() {
+        ThreadingMode threadingMode = this.threadingMode;
+        if (threadingMode != null) return threadingMode;
+        return manager != null ? manager.getThreadingMode() : ThreadingMode.DEDICATED_THREADS;
+    }
+
     private void onConnect() {
-        manager.onConnect(OneSheeldDevice.this);
+        if (manager != null) manager.onConnect(OneSheeldDevice.this);
         for (OneSheeldConnectionCallback connectionCallback : connectionCallbacks) {
             connectionCallback.onConnect(OneSheeldDevice.this);
         }
     }
 
     private void onDisconnect() {
-        manager.onDisconnect(OneSheeldDevice.this);
+        if (manager != null) manager.onDisconnect(OneSheeldDevice.this);
         for (OneSheeldConnectionCallback connectionCallback : connectionCallbacks) {
             connectionCallback.onDisconnect(OneSheeldDevice.this);
         }
@@ -699,52 +1308,33 @@ public class OneSheeldDevice {
             waitForData = 0;
             executeMultiByteCommand = 0;
             multiByteChannel = 0;
-            storedInputData = new byte[MAX_DATA_BYTES];
             parsingSysex = false;
             sysexBytesRead = 0;
+            pendingSerialDataLength = 0;
         }
     }
 
-    private byte[] getByteAs2SevenBitsBytes(byte data) {
-        byte[] temp = new byte[2];
-        temp[0] = (byte) ((data & 0xFF) & 127);
-        temp[1] = (byte) (((data & 0xFF) >> 7) & 127);
-        return temp;
-    }
-
-    private byte[] getByteArrayAs2SevenBitsBytesArray(byte[] data) {
-        byte[] temp = new byte[data.length * 2];
-        for (int i = 0; i < temp.length; i += 2) {
-            temp[i] = getByteAs2SevenBitsBytes(data[i / 2])[0];
-            temp[i + 1] = getByteAs2SevenBitsBytes(data[i / 2])[1];
-        }
-        return temp;
-    }
-
     private void sysex(byte command, byte[] bytes) {
-        byte[] data = getByteArrayAs2SevenBitsBytesArray(bytes);
-        if (data.length > 32)
-            return;
-        byte[] writeData = new byte[data.length + 3];
-        writeData[0] = START_SYSEX;
-        writeData[1] = command;
-        for (int i = 0; i < data.length; i++) {
-            writeData[i + 2] = (byte) (data[i] & 127); // 7bit
+        synchronized (controlSysexEncoder) {
+            controlSysexEncoder.reset();
+            if (controlSysexEncoder.appendSysex(command, bytes, 0, bytes.length))
+                write(controlSysexEncoder.getBuffer(), 0, controlSysexEncoder.size());
         }
-        writeData[writeData.length - 1] = END_SYSEX;
-        write(writeData);
     }
 
     private void notifyHardwareOfConnection() {
         if (isConnected()) {
             Log.i("Device " + this.name + ": Notifying the board with connection.");
-            sendShieldFrame(new ShieldFrame(CONFIGURATION_SHIELD_ID, BT_CONNECTED), true);
+            ShieldFrame frame = ShieldFrame.obtain(CONFIGURATION_SHIELD_ID, BT_CONNECTED);
+            sendShieldFrame(frame, true);
+            frame.recycle();
         }
     }
 
 
     /**
      * Explicitly queue a shield frame for sending after the Arduino exits the callback.
+     * <p>The frame is copied, so it can be changed or recycled after this call.</p>
      *
      * @param frame the frame
      * @throws NullPointerException if the passed frame is null
@@ -759,7 +1349,7 @@ public class OneSheeldDevice {
             onError(OneSheeldError.FIRMWARE_UPDATE_IN_PROGRESS);
             return;
         }
-        queuedFrames.add(frame);
+        queuedFrames.add(ShieldFrame.obtainCopyOf(frame));
         callbackEntered();
     }
 
@@ -772,7 +1362,7 @@ public class OneSheeldDevice {
                 synchronized (arduinoCallbacksLock) {
                     isInACallback = true;
                 }
-                if (callbacksTimeout == null || !callbacksTimeout.isAlive()) {
+                if (callbacksTimeout == null || !callbacksTimeout.isRunning()) {
                     callbacksTimeout = new TimeOut(5000, 1000, new TimeOut.TimeOutCallback() {
                         @Override
                         public void onTimeOut() {
@@ -796,7 +1386,7 @@ public class OneSheeldDevice {
             isInACallback = false;
             lastTimeCallbacksExited = SystemClock.elapsedRealtime();
         }
-        if (callbacksTimeout != null && !callbacksTimeout.isAlive()) callbacksTimeout.stopTimer();
+        if (callbacksTimeout != null && !callbacksTimeout.isRunning()) callbacksTimeout.stopTimer();
         if (exitingCallbacksThread != null && exitingCallbacksThread.isAlive())
             return;
         exitingCallbacksThread = new Thread(new Runnable() {
@@ -807,7 +1397,9 @@ public class OneSheeldDevice {
                     sent = false;
                     synchronized (arduinoCallbacksLock) {
                         if (!isInACallback && lastTimeCallbacksExited != 0 && (SystemClock.elapsedRealtime() - lastTimeCallbacksExited > 200)) {
-                            sendFrame(queuedFrames.poll());
+                            ShieldFrame queuedFrame = queuedFrames.poll();
+                            sendFrame(queuedFrame);
+                            if (queuedFrame != null) queuedFrame.recycle();
                             sent = true;
                         }
                     }
@@ -852,12 +1444,12 @@ public class OneSheeldDevice {
         }
 
         if (inACallback) {
-            queuedFrames.add(frame);
+            queuedFrames.add(ShieldFrame.obtainCopyOf(frame));
         } else {
             if (queuedFrames.isEmpty()) {
                 sendFrame(frame);
             } else {
-                queuedFrames.add(frame);
+                queuedFrames.add(ShieldFrame.obtainCopyOf(frame));
             }
         }
     }
@@ -872,11 +1464,60 @@ public class OneSheeldDevice {
         sendShieldFrame(frame, false);
     }
 
+    /**
+     * Send shield frame without waiting and get notified once it is written.
+     *
+     * @param frame         the frame
+     * @param writeCallback the write callback
+     * @throws NullPointerException if passed frame or callback is null
+     * @see OneSheeldWriteCallback
+     */
+    public void sendShieldFrame(ShieldFrame frame, OneSheeldWriteCallback writeCallback) {
+        if (writeCallback == null)
+            throw new NullPointerException("The passed callback is null, have you checked its validity?");
+        long failedWritesCount = getFailedBulkWritesCount();
+        sendShieldFrame(frame, false);
+        notifyWhenWritten(writeCallback, failedWritesCount);
+    }
+
+    private long getFailedBulkWritesCount() {
+        ConnectedThread connectedThread = this.connectedThread;
+        return connectedThread != null ? connectedThread.getFailedBulkWritesCount() : 0;
+    }
+
+    /**
+     * @param failedWritesCount the count of failed bulk writes before the data was sent,
+     *                          used to report the result of synchronous writes
+     */
+    private void notifyWhenWritten(OneSheeldWriteCallback writeCallback, long failedWritesCount) {
+        ConnectedThread connectedThread = this.connectedThread;
+        if (isConnected() && connectedThread != null && connectedThread.isAlive() && !isUpdatingFirmware())
+            connectedThread.notifyWhenWritten(writeCallback, failedWritesCount);
+        else
+            writeCallback.onWriteFailure(OneSheeldDevice.this);
+    }
+
     private void sendFrame(ShieldFrame frame) {
         if (frame == null) return;
-        byte[] frameBytes = frame.getAllFrameAsBytes();
-        sendData(frameBytes);
-        Log.i("Device " + this.name + ": Frame sent, values: " + frame + ".");
+        boolean isInstrumented = isLatencyInstrumentationEnabled;
+        long enqueueTime = isInstrumented ? System.nanoTime() : 0;
+        synchronized (bulkSendingLock) {
+            long encodeTime = isInstrumented ? System.nanoTime() : 0;
+            int frameSize = frame.getFrameSize();
+            if (frameOutputBuffer.length < frameSize)
+                frameOutputBuffer = new byte[Math.max(frameSize, frameOutputBuffer.length * 2)];
+            frame.writeTo(frameOutputBuffer, 0);
+            long writeTime = isInstrumented ? System.nanoTime() : 0;
+            sendData(frameOutputBuffer, 0, frameSize);
+            metrics.onFrameSend();
+            if (isInstrumented) {
+                byte shieldId = frame.getShieldId();
+                pipelineInstrumentation.record(shieldId, PipelineStage.ENQUEUE, encodeTime - enqueueTime);
+                pipelineInstrumentation.record(shieldId, PipelineStage.ENCODE, writeTime - encodeTime);
+                pipelineInstrumentation.record(shieldId, PipelineStage.WRITE, System.nanoTime() - writeTime);
+            }
+        }
+        Log.i("Device {}: Frame sent, values: {}.", this.name, frame);
     }
 
     private void respondToIsAlive() {
@@ -904,22 +1545,48 @@ public class OneSheeldDevice {
             onError(OneSheeldError.FIRMWARE_UPDATE_IN_PROGRESS);
             return;
         }
-        sendData(data);
-        Log.i("Device " + this.name + ": Serial data sent, values: " + ArrayUtils.toHexString(data) + ".");
+        sendData(data, 0, data.length);
+        Log.i("Device {}: Serial data sent, values: {}.", this.name, data);
     }
 
-    private void sendData(byte[] data) {
-        int maxShieldFrameBytes = (MAX_OUTPUT_BYTES - 3) / 2;
-        ArrayList<byte[]> subArrays = new ArrayList<>();
-        for (int i = 0; i < data.length; i += maxShieldFrameBytes) {
-            byte[] subArray = (i + maxShieldFrameBytes > data.length) ? ArrayUtils
-                    .copyOfRange(data, i, data.length) : ArrayUtils
-                    .copyOfRange(data, i, i + maxShieldFrameBytes);
-            subArrays.add(subArray);
-        }
-        synchronized (sendingDataLock) {
-            for (byte[] sub : subArrays)
-                sysex(SERIAL_DATA, sub);
+    /**
+     * Send raw serial data and get notified once it is written.
+     *
+     * @param data          the data
+     * @param writeCallback the write callback
+     * @throws NullPointerException if the passed data array or callback is null
+     * @see OneSheeldWriteCallback
+     */
+    public void sendSerialData(byte[] data, OneSheeldWriteCallback writeCallback) {
+        if (writeCallback == null)
+            throw new NullPointerException("The passed callback is null, have you checked its validity?");
+        long failedWritesCount = getFailedBulkWritesCount();
+        sendSerialData(data);
+        notifyWhenWritten(writeCallback, failedWritesCount);
+    }
+
+    /**
+     * Sends serial data in the bulk lane.
+     * <p>The bulk lane is serialized by its own lock, the control messages only wait for
+     * the write in progress, which always ends at a sysex boundary.</p>
+     */
+    private void sendData(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int maximumWriteSize = this.maximumWriteSize;
+        synchronized (bulkSendingLock) {
+            synchronized (sysexEncoder) {
+                sysexEncoder.reset();
+                for (int i = offset; i < end; i += SysexEncoder.MAX_SYSEX_DATA_BYTES) {
+                    int pieceLength = Math.min(SysexEncoder.MAX_SYSEX_DATA_BYTES, end - i);
+                    if (sysexEncoder.size() + SysexEncoder.getEncodedLength(pieceLength) > maximumWriteSize) {
+                        writeBulk(sysexEncoder.getBuffer(), 0, sysexEncoder.size());
+                        sysexEncoder.reset();
+                    }
+                    sysexEncoder.appendSysex(SERIAL_DATA, data, i, pieceLength);
+                }
+                if (sysexEncoder.size() > 0)
+                    writeBulk(sysexEncoder.getBuffer(), 0, sysexEncoder.size());
+            }
         }
     }
 
@@ -1047,7 +1714,7 @@ public class OneSheeldDevice {
             return false;
         }
         if (isPinDebuggingEnabled)
-            Log.i("Device " + this.name + ": Digital read from pin " + pin + ".");
+            Log.i("Device {}: Digital read from pin {}.", this.name, pin);
         if (pin >= 20 || pin < 0)
             throw new IncorrectPinException("The specified pin number is incorrect, are you sure you specified it correctly?");
         return getDigitalPinStatus(pin);
@@ -1072,7 +1739,7 @@ public class OneSheeldDevice {
             return;
         }
         if (isPinDebuggingEnabled)
-            Log.i("Device " + this.name + ": Change mode of pin " + pin + " to " + mode + ".");
+            Log.i("Device {}: Change mode of pin {} to {}.", this.name, pin, mode);
         if (pin >= 20 || pin < 0)
             throw new IncorrectPinException("The specified pin number is incorrect, are you sure you specified it correctly?");
         byte[] writeData = {SET_PIN_MODE, (byte) pin, mode};
@@ -1096,7 +1763,7 @@ public class OneSheeldDevice {
             return;
         }
         if (isPinDebuggingEnabled)
-            Log.i("Device " + this.name + ": Digital write " + (value ? "High" : "Low") + " to pin " + pin + ".");
+            Log.i("Device {}: Digital write {} to pin {}.", this.name, value ? "High" : "Low", pin);
         if (pin >= 20 || pin < 0)
             throw new IncorrectPinException("The specified pin number is incorrect, are you sure you specified it correctly?");
         byte portNumber = (byte) ((pin >> 3) & 0x0F);
@@ -1128,7 +1795,7 @@ public class OneSheeldDevice {
             return;
         }
         if (isPinDebuggingEnabled)
-            Log.i("Device " + this.name + ": Analog write " + value + " to pin " + pin + ".");
+            Log.i("Device {}: Analog write {} to pin {}.", this.name, value, pin);
         if (pin >= 20 || pin < 0)
             throw new IncorrectPinException("The specified pin number is incorrect, are you sure you specified it correctly?");
         byte[] writeData = {SET_PIN_MODE, (byte) pin, PWM,
@@ -1151,9 +1818,9 @@ public class OneSheeldDevice {
             for (int pinNumber : differentPinNumbers) {
                 int actualPinNumber = (portNumber << 3) + pinNumber;
                 if (isPinDebuggingEnabled)
-                    Log.i("Device " + this.name + ": Pin #" + actualPinNumber + " status changed to " + (getDigitalPinStatus(actualPinNumber) ? "High" : "Low") + ".");
-                for (OneSheeldDataCallback oneSheeldDataCallback : dataCallbacks) {
-                    oneSheeldDataCallback.onDigitalPinStatusChange(OneSheeldDevice.this, actualPinNumber, getDigitalPinStatus(actualPinNumber));
+                    Log.i("Device {}: Pin #{} status changed to {}.", this.name, actualPinNumber, getDigitalPinStatus(actualPinNumber) ? "High" : "Low");
+                for (DataCallbackDispatcher dataCallbackDispatcher : dataCallbacks) {
+                    dataCallbackDispatcher.dispatchDigitalPinStatusChange(OneSheeldDevice.this, actualPinNumber, getDigitalPinStatus(actualPinNumber));
                 }
             }
         }
@@ -1205,7 +1872,9 @@ public class OneSheeldDevice {
 
     private void sendLibraryVersionQueryFrame() {
         if (isConnected()) {
-            sendShieldFrame(new ShieldFrame(CONFIGURATION_SHIELD_ID, QUERY_LIBRARY_VERSION), true);
+            ShieldFrame frame = ShieldFrame.obtain(CONFIGURATION_SHIELD_ID, QUERY_LIBRARY_VERSION);
+            sendShieldFrame(frame, true);
+            frame.recycle();
         }
     }
 
@@ -1247,23 +1916,43 @@ public class OneSheeldDevice {
     }
 
     private void write(byte[] writeData) {
+        write(writeData, 0, writeData.length);
+    }
+
+    private void write(byte[] writeData, int offset, int length) {
         if (isConnected() && connectedThread != null && connectedThread.isAlive() && !isUpdatingFirmware())
-            connectedThread.write(writeData);
+            connectedThread.writeControl(writeData, offset, length);
+    }
+
+    private void writeBulk(byte[] writeData, int offset, int length) {
+        if (isConnected() && connectedThread != null && connectedThread.isAlive() && !isUpdatingFirmware())
+            connectedThread.writeBulk(writeData, offset, length);
+    }
+
+    /**
+     * Sends right away any bytes held back by the connection to be coalesced with later writes.
+     * <p>Only 1Sheeld+ connections hold bytes back, for at most the coalescing latency budget.</p>
+     *
+     * @see OneSheeldManager#setCoalescingLatencyBudgetForLeConnections(int)
+     */
+    public void flush() {
+        if (isConnected() && connectedThread != null && connectedThread.isAlive())
+            connectedThread.flush();
     }
 
     private void write(byte writeData) {
         if (isConnected() && connectedThread != null && connectedThread.isAlive() && !isUpdatingFirmware())
-            connectedThread.write(new byte[]{writeData});
+            connectedThread.writeControl(new byte[]{writeData});
     }
 
     private void writeByteForFirmwareUpdate(byte[] writeData) {
         if (isConnected() && connectedThread != null && connectedThread.isAlive())
-            connectedThread.write(writeData);
+            connectedThread.writeControl(writeData);
     }
 
     private void writeByteForFirmwareUpdate(byte writeData) {
         if (isConnected() && connectedThread != null && connectedThread.isAlive())
-            connectedThread.write(new byte[]{writeData});
+            connectedThread.writeControl(new byte[]{writeData});
     }
 
     private void initFirmware() {
@@ -1274,12 +1963,20 @@ public class OneSheeldDevice {
         isSerialBufferWaiting = false;
         arduinoLibraryVersion = -1;
         isMuted = false;
+        isReceiveBufferOverflowed.set(false);
         stopBuffersThreads();
+        resizeBuffers();
         clearAllBuffers();
         resetProcessInput();
         synchronized (bufferThreadsInitLock) {
-            bluetoothBufferListeningThread = new BluetoothBufferListeningThread();
-            serialBufferListeningThread = new SerialBufferListeningThread();
+            if (getThreadingMode() == ThreadingMode.SHARED_POOL) {
+                receivingTask = new ReceivingTask(OneSheeldManager.getSharedExecutor());
+                isBluetoothBufferWaiting = true;
+                isSerialBufferWaiting = true;
+            } else {
+                bluetoothBufferListeningThread = new BluetoothBufferListeningThread();
+                serialBufferListeningThread = new SerialBufferListeningThread();
+            }
         }
         while (true) {
             if (isBluetoothBufferWaiting) break;
@@ -1426,7 +2123,7 @@ public class OneSheeldDevice {
         }
     }
 
-    private void onSysex(byte command, byte[] data) {
+    private void onSysex(byte command, byte[] data, int offset, int length) {
 
     }
 
@@ -1473,150 +2170,154 @@ public class OneSheeldDevice {
         return arduinoLibraryVersion;
     }
 
-    private void processInput(byte inputData) {
+    private void processInput(byte[] data, int offset, int length) throws InterruptedException {
         byte command;
-        if (parsingSysex) {
-            if (inputData == END_SYSEX) {
-                parsingSysex = false;
-                byte sysexCommand = storedInputData[0];
-                if (sysexBytesRead > 0) {
-                    byte[] sysexData = new byte[sysexBytesRead - 1];
-
-                    System.arraycopy(storedInputData, 1, sysexData, 0,
-                            sysexBytesRead - 1);
-
-                    byte[] fixedSysexData = null;
-                    if (sysexData.length % 2 == 0) {
-                        fixedSysexData = new byte[sysexData.length / 2];
-                        for (int i = 0; i < sysexData.length; i += 2) {
-                            fixedSysexData[i / 2] = (byte) (sysexData[i] | (sysexData[i + 1] << 7));
-                        }
-
-                        if (sysexCommand == SERIAL_DATA) {
-                            for (byte b : fixedSysexData) {
-                                serialBuffer.add(b);
-                                for (OneSheeldDataCallback oneSheeldDataCallback : dataCallbacks) {
-                                    oneSheeldDataCallback.onSerialDataReceive(OneSheeldDevice.this, b & 0xFF);
-                                }
-                            }
-                        } else if (sysexCommand == BLUETOOTH_RESET) {
-                            byte randomVal = (byte) (Math.random() * 255);
-                            byte complement = (byte) (255 - randomVal & 0xFF);
-                            synchronized (sendingDataLock) {
-                                sysex(BLUETOOTH_RESET, new byte[]{(byte) (neglectNextBluetoothResetFrame.get() ? 0x00 : 0x01), randomVal, complement});
-                            }
-                            Log.i("Device " + this.name + ": Device requested Bluetooth reset" + (neglectNextBluetoothResetFrame.get() ? ", and it was neglected" : "") + ".");
-                            if (!neglectNextBluetoothResetFrame.get()) closeConnection();
-                            neglectNextBluetoothResetFrame.set(false);
-
-                        } else if (sysexCommand == IS_ALIVE) {
-                            respondToIsAlive();
-                        } else if (sysexCommand == BOARD_TESTING) {
-                            stopFirmwareTestingTimeOut();
-                            hasFirmwareTestStarted = false;
-                            boolean isPassed = fixedSysexData.length == 1 && fixedSysexData[0] == correctTestingChallengeAnswer;
-                            if (isPassed)
-                                Log.i("Device " + OneSheeldDevice.this.name + ": Firmware testing succeeded.");
-                            else
-                                Log.i("Device " + OneSheeldDevice.this.name + ": Firmware testing failed.");
-                            if (isConnected()) {
-                                for (OneSheeldTestingCallback oneSheeldTestingCallback : testingCallbacks)
-                                    oneSheeldTestingCallback.onFirmwareTestResult(OneSheeldDevice.this, isPassed);
-                            }
-                        } else if (sysexCommand == BOARD_RENAMING) {
-                            Log.i("Device " + this.name + ": Device received the renaming request successfully, it should be renamed to \"" + pendingName + "\" in a couple of seconds.");
-                            this.name = pendingName;
-                            hasRenamingStarted = false;
-                            stopRenamingBoardTimeOut();
-                            if (isConnected()) {
-                                for (OneSheeldRenamingCallback renamingCallback : renamingCallbacks) {
-                                    renamingCallback.onRenamingRequestReceivedSuccessfully(OneSheeldDevice.this);
-                                }
-                            }
-                            closeConnection();
-                        } else if (sysexCommand == QUERY_BAUD_RATE && fixedSysexData.length == 1) {
-                            boolean isSupported = true;
-                            switch (fixedSysexData[0]) {
-                                case 0x01:
-                                    currentBaudRate = SupportedBaudRate._9600;
-                                    break;
-                                case 0x02:
-                                    currentBaudRate = SupportedBaudRate._14400;
-                                    break;
-                                case 0x03:
-                                    currentBaudRate = SupportedBaudRate._19200;
-                                    break;
-                                case 0x04:
-                                    currentBaudRate = SupportedBaudRate._28800;
-                                    break;
-                                case 0x05:
-                                    currentBaudRate = SupportedBaudRate._38400;
-                                    break;
-                                case 0x06:
-                                    currentBaudRate = SupportedBaudRate._57600;
-                                    break;
-                                case 0x07:
-                                    currentBaudRate = SupportedBaudRate._115200;
-                                    break;
-                                default:
-                                    isSupported = false;
-                                    break;
-                            }
-                            isBaudRateQueried = true;
-                            if (isSupported) {
-                                Log.i("Device " + this.name + ": Device responded with baud rate: " + currentBaudRate.getBaudRate() + ".");
-                                onBaudRateQueryResponse(currentBaudRate);
-                            } else {
-                                Log.i("Device " + this.name + ": Device responded with an unsupported baud rate.");
-                                onBaudRateQueryResponse(null);
-                            }
-                        } else {
-                            onSysex(sysexCommand, sysexData);
-                        }
+        byte inputData;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            inputData = data[i];
+            if (parsingSysex) {
+                if (inputData == END_SYSEX) {
+                    parsingSysex = false;
+                    processSysex();
+                    if (Thread.currentThread().isInterrupted()) return;
+                } else if (sysexBytesRead < storedInputData.length) {
+                    storedInputData[sysexBytesRead] = inputData;
+                    sysexBytesRead++;
+                }
+            } else if (waitForData > 0 && (int) (inputData & 0xFF) < 128) {
+                waitForData--;
+                storedInputData[waitForData] = inputData;
+                if (executeMultiByteCommand != 0 && waitForData == 0) {
+                    switch (executeMultiByteCommand) {
+                        case DIGITAL_MESSAGE:
+                            setDigitalInputs(multiByteChannel,
+                                    (storedInputData[0] << 7) + storedInputData[1]);
+                            break;
+                        case REPORT_VERSION:
+                            setVersion(storedInputData[0], storedInputData[1]);
+                            isFirmwareVersionQueried = true;
+                            break;
                     }
-                } else {
-                    onSysex(sysexCommand, new byte[]{});
                 }
-
             } else {
-                if (sysexBytesRead < storedInputData.length) {
-                    storedInputData[sysexBytesRead] = inputData;
-                    sysexBytesRead++;
+                if ((int) (inputData & 0xFF) < 0xF0) {
+                    command = (byte) (inputData & 0xF0);
+                    multiByteChannel = (byte) (inputData & 0x0F);
+                } else {
+                    command = inputData;
                 }
-            }
-        } else if (waitForData > 0 && (int) (inputData & 0xFF) < 128) {
-            waitForData--;
-            storedInputData[waitForData] = inputData;
-            if (executeMultiByteCommand != 0 && waitForData == 0) {
-                switch (executeMultiByteCommand) {
-                    case DIGITAL_MESSAGE:
-                        setDigitalInputs(multiByteChannel,
-                                (storedInputData[0] << 7) + storedInputData[1]);
+                switch (command) {
+                    case START_SYSEX:
+                        parsingSysex = true;
+                        sysexBytesRead = 0;
                         break;
+                    case DIGITAL_MESSAGE:
                     case REPORT_VERSION:
-                        setVersion(storedInputData[0], storedInputData[1]);
-                        isFirmwareVersionQueried = true;
+                        waitForData = 2;
+                        executeMultiByteCommand = command;
                         break;
                 }
             }
-        } else {
-            if ((int) (inputData & 0xFF) < 0xF0) {
-                command = (byte) (inputData & 0xF0);
-                multiByteChannel = (byte) (inputData & 0x0F);
-            } else {
-                command = inputData;
+        }
+    }
+
+    private void processSysex() throws InterruptedException {
+        byte sysexCommand = storedInputData[0];
+        if (sysexBytesRead <= 0) {
+            onSysex(sysexCommand, storedInputData, 0, 0);
+            return;
+        }
+        int encodedLength = sysexBytesRead - 1;
+        if (encodedLength % 2 != 0) return;
+        // The 7-bit pairs are decoded in place, each decoded byte is written
+        // behind the pair it came from so nothing is overwritten before it is read.
+        int dataLength = encodedLength / 2;
+        for (int i = 0; i < dataLength; i++) {
+            storedInputData[i + 1] = (byte) (storedInputData[2 * i + 1] | (storedInputData[2 * i + 2] << 7));
+        }
+        final int dataOffset = 1;
+
+        if (sysexCommand == SERIAL_DATA) {
+            if (receiveBufferOverflowPolicy == BufferOverflowPolicy.BLOCK)
+                stageSerialData(storedInputData, dataOffset, dataLength);
+            else if (!storeReceivedBytes(serialBuffer, storedInputData, dataOffset, dataLength)) return;
+            for (DataCallbackDispatcher dataCallbackDispatcher : dataCallbacks) {
+                dataCallbackDispatcher.dispatchSerialData(OneSheeldDevice.this, storedInputData, dataOffset, dataLength);
+            }
+        } else if (sysexCommand == BLUETOOTH_RESET) {
+            byte randomVal = (byte) (Math.random() * 255);
+            byte complement = (byte) (255 - randomVal & 0xFF);
+            synchronized (sendingDataLock) {
+                sysex(BLUETOOTH_RESET, new byte[]{(byte) (neglectNextBluetoothResetFrame.get() ? 0x00 : 0x01), randomVal, complement});
+            }
+            Log.i("Device " + this.name + ": Device requested Bluetooth reset" + (neglectNextBluetoothResetFrame.get() ? ", and it was neglected" : "") + ".");
+            if (!neglectNextBluetoothResetFrame.get()) closeConnection();
+            neglectNextBluetoothResetFrame.set(false);
+
+        } else if (sysexCommand == IS_ALIVE) {
+            respondToIsAlive();
+        } else if (sysexCommand == BOARD_TESTING) {
+            stopFirmwareTestingTimeOut();
+            hasFirmwareTestStarted = false;
+            boolean isPassed = dataLength == 1 && storedInputData[dataOffset] == correctTestingChallengeAnswer;
+            if (isPassed)
+                Log.i("Device " + OneSheeldDevice.this.name + ": Firmware testing succeeded.");
+            else
+                Log.i("Device " + OneSheeldDevice.this.name + ": Firmware testing failed.");
+            if (isConnected()) {
+                for (OneSheeldTestingCallback oneSheeldTestingCallback : testingCallbacks)
+                    oneSheeldTestingCallback.onFirmwareTestResult(OneSheeldDevice.this, isPassed);
+            }
+        } else if (sysexCommand == BOARD_RENAMING) {
+            Log.i("Device " + this.name + ": Device received the renaming request successfully, it should be renamed to \"" + pendingName + "\" in a couple of seconds.");
+            this.name = pendingName;
+            hasRenamingStarted = false;
+            stopRenamingBoardTimeOut();
+            if (isConnected()) {
+                for (OneSheeldRenamingCallback renamingCallback : renamingCallbacks) {
+                    renamingCallback.onRenamingRequestReceivedSuccessfully(OneSheeldDevice.this);
+                }
             }
-            switch (command) {
-                case START_SYSEX:
-                    parsingSysex = true;
-                    sysexBytesRead = 0;
+            closeConnection();
+        } else if (sysexCommand == QUERY_BAUD_RATE && dataLength == 1) {
+            boolean isSupported = true;
+            switch (storedInputData[dataOffset]) {
+                case 0x01:
+                    currentBaudRate = SupportedBaudRate._9600;
+                    break;
+                case 0x02:
+                    currentBaudRate = SupportedBaudRate._14400;
+                    break;
+                case 0x03:
+                    currentBaudRate = SupportedBaudRate._19200;
+                    break;
+                case 0x04:
+                    currentBaudRate = SupportedBaudRate._28800;
+                    break;
+                case 0x05:
+                    currentBaudRate = SupportedBaudRate._38400;
+                    break;
+                case 0x06:
+                    currentBaudRate = SupportedBaudRate._57600;
+                    break;
+                case 0x07:
+                    currentBaudRate = SupportedBaudRate._115200;
                     break;
-                case DIGITAL_MESSAGE:
-                case REPORT_VERSION:
-                    waitForData = 2;
-                    executeMultiByteCommand = command;
+                default:
+                    isSupported = false;
                     break;
             }
+            isBaudRateQueried = true;
+            if (isSupported) {
+                Log.i("Device " + this.name + ": Device responded with baud rate: " + currentBaudRate.getBaudRate() + ".");
+                onBaudRateQueryResponse(currentBaudRate);
+            } else {
+                Log.i("Device " + this.name + ": Device responded with an unsupported baud rate.");
+                onBaudRateQueryResponse(null);
+            }
+        } else {
+            onSysex(sysexCommand, storedInputData, dataOffset, dataLength);
         }
     }
 
@@ -1693,7 +2394,7 @@ public class OneSheeldDevice {
      * @return the boolean
      */
     public boolean isTypePlus() {
-        return Build.VERSION.SDK_INT >= 18 && (isTypePlus || bluetoothDevice.getType() == BluetoothDevice.DEVICE_TYPE_LE);
+        return Build.VERSION.SDK_INT >= 18 && (isTypePlus || getBluetoothDevice().getType() == BluetoothDevice.DEVICE_TYPE_LE);
     }
 
     private byte readByteFromBluetoothBufferForFirmware() throws InterruptedException {
@@ -1703,44 +2404,45 @@ public class OneSheeldDevice {
         return returnValue;
     }
 
-    private int calculateCrc(byte[] data) {
+    private static final int[] CRC_TABLE = {
+            0x0000, 0x1021, 0x2042, 0x3063, 0x4084, 0x50a5, 0x60c6, 0x70e7,
+            0x8108, 0x9129, 0xa14a, 0xb16b, 0xc18c, 0xd1ad, 0xe1ce, 0xf1ef,
+            0x1231, 0x0210, 0x3273, 0x2252, 0x52b5, 0x4294, 0x72f7, 0x62d6,
+            0x9339, 0x8318, 0xb37b, 0xa35a, 0xd3bd, 0xc39c, 0xf3ff, 0xe3de,
+            0x2462, 0x3443, 0x0420, 0x1401, 0x64e6, 0x74c7, 0x44a4, 0x5485,
+            0xa56a, 0xb54b, 0x8528, 0x9509, 0xe5ee, 0xf5cf, 0xc5ac, 0xd58d,
+            0x3653, 0x2672, 0x1611, 0x0630, 0x76d7, 0x66f6, 0x5695, 0x46b4,
+            0xb75b, 0xa77a, 0x9719, 0x8738, 0xf7df, 0xe7fe, 0xd79d, 0xc7bc,
+            0x48c4, 0x58e5, 0x6886, 0x78a7, 0x0840, 0x1861, 0x2802, 0x3823,
+            0xc9cc, 0xd9ed, 0xe98e, 0xf9af, 0x8948, 0x9969, 0xa90a, 0xb92b,
+            0x5af5, 0x4ad4, 0x7ab7, 0x6a96, 0x1a71, 0x0a50, 0x3a33, 0x2a12,
+            0xdbfd, 0xcbdc, 0xfbbf, 0xeb9e, 0x9b79, 0x8b58, 0xbb3b, 0xab1a,
+            0x6ca6, 0x7c87, 0x4ce4, 0x5cc5, 0x2c22, 0x3c03, 0x0c60, 0x1c41,
+            0xedae, 0xfd8f, 0xcdec, 0xddcd, 0xad2a, 0xbd0b, 0x8d68, 0x9d49,
+            0x7e97, 0x6eb6, 0x5ed5, 0x4ef4, 0x3e13, 0x2e32, 0x1e51, 0x0e70,
+            0xff9f, 0xefbe, 0xdfdd, 0xcffc, 0xbf1b, 0xaf3a, 0x9f59, 0x8f78,
+            0x9188, 0x81a9, 0xb1ca, 0xa1eb, 0xd10c, 0xc12d, 0xf14e, 0xe16f,
+            0x1080, 0x00a1, 0x30c2, 0x20e3, 0x5004, 0x4025, 0x7046, 0x6067,
+            0x83b9, 0x9398, 0xa3fb, 0xb3da, 0xc33d, 0xd31c, 0xe37f, 0xf35e,
+            0x02b1, 0x1290, 0x22f3, 0x32d2, 0x4235, 0x5214, 0x6277, 0x7256,
+            0xb5ea, 0xa5cb, 0x95a8, 0x8589, 0xf56e, 0xe54f, 0xd52c, 0xc50d,
+            0x34e2, 0x24c3, 0x14a0, 0x0481, 0x7466, 0x6447, 0x5424, 0x4405,
+            0xa7db, 0xb7fa, 0x8799, 0x97b8, 0xe75f, 0xf77e, 0xc71d, 0xd73c,
+            0x26d3, 0x36f2, 0x0691, 0x16b0, 0x6657, 0x7676, 0x4615, 0x5634,
+            0xd94c, 0xc96d, 0xf90e, 0xe92f, 0x99c8, 0x89e9, 0xb98a, 0xa9ab,
+            0x5844, 0x4865, 0x7806, 0x6827, 0x18c0, 0x08e1, 0x3882, 0x28a3,
+            0xcb7d, 0xdb5c, 0xeb3f, 0xfb1e, 0x8bf9, 0x9bd8, 0xabbb, 0xbb9a,
+            0x4a75, 0x5a54, 0x6a37, 0x7a16, 0x0af1, 0x1ad0, 0x2ab3, 0x3a92,
+            0xfd2e, 0xed0f, 0xdd6c, 0xcd4d, 0xbdaa, 0xad8b, 0x9de8, 0x8dc9,
+            0x7c26, 0x6c07, 0x5c64, 0x4c45, 0x3ca2, 0x2c83, 0x1ce0, 0x0cc1,
+            0xef1f, 0xff3e, 0xcf5d, 0xdf7c, 0xaf9b, 0xbfba, 0x8fd9, 0x9ff8,
+            0x6e17, 0x7e36, 0x4e55, 0x5e74, 0x2e93, 0x3eb2, 0x0ed1, 0x1ef0
+    };
+
+    static int calculateCrc(byte[] data) {
         int crc = 0;
-        int crcTable[] = {
-                0x0000, 0x1021, 0x2042, 0x3063, 0x4084, 0x50a5, 0x60c6, 0x70e7,
-                0x8108, 0x9129, 0xa14a, 0xb16b, 0xc18c, 0xd1ad, 0xe1ce, 0xf1ef,
-                0x1231, 0x0210, 0x3273, 0x2252, 0x52b5, 0x4294, 0x72f7, 0x62d6,
-                0x9339, 0x8318, 0xb37b, 0xa35a, 0xd3bd, 0xc39c, 0xf3ff, 0xe3de,
-                0x2462, 0x3443, 0x0420, 0x1401, 0x64e6, 0x74c7, 0x44a4, 0x5485,
-                0xa56a, 0xb54b, 0x8528, 0x9509, 0xe5ee, 0xf5cf, 0xc5ac, 0xd58d,
-                0x3653, 0x2672, 0x1611, 0x0630, 0x76d7, 0x66f6, 0x5695, 0x46b4,
-                0xb75b, 0xa77a, 0x9719, 0x8738, 0xf7df, 0xe7fe, 0xd79d, 0xc7bc,
-                0x48c4, 0x58e5, 0x6886, 0x78a7, 0x0840, 0x1861, 0x2802, 0x3823,
-                0xc9cc, 0xd9ed, 0xe98e, 0xf9af, 0x8948, 0x9969, 0xa90a, 0xb92b,
-                0x5af5, 0x4ad4, 0x7ab7, 0x6a96, 0x1a71, 0x0a50, 0x3a33, 0x2a12,
-                0xdbfd, 0xcbdc, 0xfbbf, 0xeb9e, 0x9b79, 0x8b58, 0xbb3b, 0xab1a,
-                0x6ca6, 0x7c87, 0x4ce4, 0x5cc5, 0x2c22, 0x3c03, 0x0c60, 0x1c41,
-                0xedae, 0xfd8f, 0xcdec, 0xddcd, 0xad2a, 0xbd0b, 0x8d68, 0x9d49,
-                0x7e97, 0x6eb6, 0x5ed5, 0x4ef4, 0x3e13, 0x2e32, 0x1e51, 0x0e70,
-                0xff9f, 0xefbe, 0xdfdd, 0xcffc, 0xbf1b, 0xaf3a, 0x9f59, 0x8f78,
-                0x9188, 0x81a9, 0xb1ca, 0xa1eb, 0xd10c, 0xc12d, 0xf14e, 0xe16f,
-                0x1080, 0x00a1, 0x30c2, 0x20e3, 0x5004, 0x4025, 0x7046, 0x6067,
-                0x83b9, 0x9398, 0xa3fb, 0xb3da, 0xc33d, 0xd31c, 0xe37f, 0xf35e,
-                0x02b1, 0x1290, 0x22f3, 0x32d2, 0x4235, 0x5214, 0x6277, 0x7256,
-                0xb5ea, 0xa5cb, 0x95a8, 0x8589, 0xf56e, 0xe54f, 0xd52c, 0xc50d,
-                0x34e2, 0x24c3, 0x14a0, 0x0481, 0x7466, 0x6447, 0x5424, 0x4405,
-                0xa7db, 0xb7fa, 0x8799, 0x97b8, 0xe75f, 0xf77e, 0xc71d, 0xd73c,
-                0x26d3, 0x36f2, 0x0691, 0x16b0, 0x6657, 0x7676, 0x4615, 0x5634,
-                0xd94c, 0xc96d, 0xf90e, 0xe92f, 0x99c8, 0x89e9, 0xb98a, 0xa9ab,
-                0x5844, 0x4865, 0x7806, 0x6827, 0x18c0, 0x08e1, 0x3882, 0x28a3,
-                0xcb7d, 0xdb5c, 0xeb3f, 0xfb1e, 0x8bf9, 0x9bd8, 0xabbb, 0xbb9a,
-                0x4a75, 0x5a54, 0x6a37, 0x7a16, 0x0af1, 0x1ad0, 0x2ab3, 0x3a92,
-                0xfd2e, 0xed0f, 0xdd6c, 0xcd4d, 0xbdaa, 0xad8b, 0x9de8, 0x8dc9,
-                0x7c26, 0x6c07, 0x5c64, 0x4c45, 0x3ca2, 0x2c83, 0x1ce0, 0x0cc1,
-                0xef1f, 0xff3e, 0xcf5d, 0xdf7c, 0xaf9b, 0xbfba, 0x8fd9, 0x9ff8,
-                0x6e17, 0x7e36, 0x4e55, 0x5e74, 0x2e93, 0x3eb2, 0x0ed1, 0x1ef0
-        };
         for (byte readChar : data)
-            crc = (crc << 8) ^ crcTable[((crc >> 8) ^ readChar) & 0xff];
+            crc = (crc << 8) ^ CRC_TABLE[((crc >> 8) ^ readChar) & 0xff];
         return crc & 0xffff;
     }
 
@@ -1942,23 +2644,19 @@ public class OneSheeldDevice {
                 isMuted = false;
                 serialBuffer.clear();
                 synchronized (bluetoothBufferLock) {
-                    ArrayList<Byte> pendingBytes = new ArrayList<>();
-                    for (byte dataByte : firmwareUpdateBuffer) {
-                        pendingBytes.add(dataByte);
-                    }
-                    for (byte dataByte : bluetoothBuffer) {
-                        pendingBytes.add(dataByte);
-                    }
+                    byte[] pendingBytes = new byte[bluetoothBuffer.capacity()];
+                    int pendingBytesLength = 0;
+                    pendingBytesLength += firmwareUpdateBuffer.poll(pendingBytes, 0, pendingBytes.length);
+                    pendingBytesLength += bluetoothBuffer.poll(pendingBytes, pendingBytesLength, pendingBytes.length - pendingBytesLength);
                     bluetoothBuffer.clear();
-                    for (byte dataByte : pendingBytes) {
-                        bluetoothBuffer.add(dataByte);
-                    }
+                    bluetoothBuffer.offer(pendingBytes, 0, pendingBytesLength);
                     isUpdatingFirmware = false;
                     resetProcessInput();
                 }
                 firmwareUpdateBuffer.clear();
             }
         }
+        scheduleReceivingTask();
         sendInitializationFrames();
     }
 
@@ -2077,11 +2775,108 @@ public class OneSheeldDevice {
         }
     }
 
+    private void onShieldFrameDecode(ShieldFrame frame, int tempArduinoLibVersion, long frameStartTime) {
+        boolean isInstrumented = isLatencyInstrumentationEnabled;
+        long dispatchTime = isInstrumented ? System.nanoTime() : 0;
+        byte shieldId = frame.getShieldId();
+        metrics.onFrameDecode();
+        if (isInstrumented)
+            pipelineInstrumentation.record(shieldId, PipelineStage.PARSE, dispatchTime - frameStartTime);
+        byte functionId = frame.getFunctionId();
+        if (arduinoLibraryVersion != tempArduinoLibVersion) {
+            arduinoLibraryVersion = tempArduinoLibVersion;
+            isLibraryVersionQueried = true;
+            Log.i("Device " + OneSheeldDevice.this.name + ": Device replied with library version: " + arduinoLibraryVersion + ".");
+            onLibraryVersionQueryResponse(arduinoLibraryVersion);
+        }
+
+        if (shieldId == CONFIGURATION_SHIELD_ID) {
+            switch (functionId) {
+                case LIBRARY_VERSION_RESPONSE:
+                    break;
+                case IS_HARDWARE_CONNECTED_QUERY:
+                    notifyHardwareOfConnection();
+                    break;
+                case IS_CALLBACK_ENTERED:
+                    callbackEntered();
+                    break;
+                case IS_CALLBACK_EXITED:
+                    callbackExited();
+                    break;
+                case LIBRARY_TESTING_CHALLENGE_RESPONSE:
+                    hasLibraryTestStarted = false;
+                    boolean isTestResultCorrect = false;
+                    try {
+                        if (frame.getArgumentsCount() == 2) {
+                            if (frame.getArgumentAsString(0).equals("Yup, I'm feeling great!")) {
+                                if (frame.getArgumentLength(1) == 1 && frame.getArgument(1)[0] == correctTestingChallengeAnswer) {
+                                    isTestResultCorrect = true;
+                                }
+                            }
+                        }
+                    } catch (Exception ignored) {
+                    }
+                    if (isTestResultCorrect)
+                        Log.i("Device " + OneSheeldDevice.this.name + ": Library testing succeeded.");
+                    else
+                        Log.i("Device " + OneSheeldDevice.this.name + ": Library testing failed.");
+                    stopLibraryTestingTimeOut();
+                    if (isConnected()) {
+                        for (OneSheeldTestingCallback oneSheeldTestingCallback : testingCallbacks)
+                            oneSheeldTestingCallback.onLibraryTestResult(OneSheeldDevice.this, isTestResultCorrect);
+                    }
+                    break;
+            }
+        } else {
+            Log.i("Device {}: Frame received, values: {}.", OneSheeldDevice.this.name, frame);
+            KnownShield knownShield = dataCallbacks.isEmpty() ? null : OneSheeldSdk.getKnownShields().getKnownShieldOf(frame);
+            for (DataCallbackDispatcher dataCallbackDispatcher : dataCallbacks) {
+                dataCallbackDispatcher.dispatchShieldFrame(OneSheeldDevice.this, frame, knownShield);
+            }
+            if (isInstrumented)
+                pipelineInstrumentation.record(shieldId, PipelineStage.DISPATCH, System.nanoTime() - dispatchTime);
+        }
+    }
+
+    private void onReceivedBytesParse() {
+        long readTime = lastReadTime;
+        if (isLatencyInstrumentationEnabled && readTime != 0)
+            pipelineInstrumentation.record(PipelineStage.READ, System.nanoTime() - readTime);
+    }
+
+    private ShieldFrameDecoder createShieldFrameDecoder() {
+        return new ShieldFrameDecoder(3000, new ShieldFrameDecoder.Listener() {
+            @Override
+            public void onFrameDecode(ShieldFrame frame, int libraryVersion, long frameStartTime) {
+                onShieldFrameDecode(frame, libraryVersion, frameStartTime);
+            }
+
+            @Override
+            public void onFrameReject(FrameRejection rejection) {
+                metrics.onFrameReject(rejection);
+                if (rejection == FrameRejection.TIME_OUT)
+                    Log.i("Device " + OneSheeldDevice.this.name + ": Frame wasn't completed in 3 seconds, canceling what we've read so far.");
+                else
+                    Log.i("Device " + OneSheeldDevice.this.name + ": Frame is incorrect, canceling what we've read so far.");
+            }
+        });
+    }
+
+    private void scheduleReceivingTask() {
+        ReceivingTask task = receivingTask;
+        if (task != null) task.schedule();
+    }
+
     private class ConnectedThread extends Thread {
         private final OneSheeldConnection connection;
+        // Fair, so a waiting control message goes right after the write in progress.
+        private final ReentrantLock transportLock = new ReentrantLock(true);
+        private final WritingThread writingThread;
+        private final AtomicLong failedBulkWritesCount = new AtomicLong(0);
 
         ConnectedThread(OneSheeldConnection connection) {
             this.connection = connection;
+            this.writingThread = connection != null && isAsynchronousWriting ? new WritingThread(connection, transportLock, writeQueueCapacity) : null;
             if (connection != null)
                 connection.setConnectionCloseCallback(new BluetoothConnectionCloseCallback() {
                     @Override
@@ -2099,17 +2894,29 @@ public class OneSheeldDevice {
             synchronized (isConnectedLock) {
                 isConnected = true;
             }
+            if (writingThread != null) writingThread.start();
             Log.i("Device " + OneSheeldDevice.this.name + ": Initializing board and querying its information.");
             initFirmware();
             if (isConnected()) {
                 Log.i("Device " + OneSheeldDevice.this.name + ": Device connected, initialized and ready for communication.");
+                metrics.onConnect();
                 onConnect();
+                byte[] readBytes = new byte[readChunkSize];
                 while (!this.isInterrupted()) {
-                    byte[] readBytes = connection.read();
-                    synchronized (bluetoothBufferLock) {
-                        for (byte readByte : readBytes) {
-                            bluetoothBuffer.add(readByte);
-                        }
+                    int readBytesLength = connection.read(readBytes, 0, readBytes.length, CONNECTION_READ_TIME_OUT);
+                    if (readBytesLength == 0) {
+                        // A closed connection returns zero right away, so keeping on reading would spin.
+                        if (connection.isClosed()) break;
+                        continue;
+                    }
+                    metrics.onBytesRead(readBytesLength);
+                    if (isLatencyInstrumentationEnabled) lastReadTime = System.nanoTime();
+                    try {
+                        if (!storeReadBytes(readBytes, readBytesLength)) return;
+                        scheduleReceivingTask();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
                     }
                 }
             } else {
@@ -2117,15 +2924,327 @@ public class OneSheeldDevice {
             }
         }
 
-        private synchronized void write(final byte[] buffer) {
-            if (connection != null) connection.write(buffer);
+        private boolean writeControl(final byte[] buffer) {
+            return writeControl(buffer, 0, buffer.length);
+        }
+
+        /**
+         * Writes control messages straight to the connection, even with asynchronous writing,
+         * so they never queue behind bulk data.
+         *
+         * @return false if the connection refused the bytes
+         */
+        private boolean writeControl(final byte[] buffer, int offset, int length) {
+            if (connection == null) return false;
+            long startTime = System.nanoTime();
+            boolean isWritten;
+            transportLock.lock();
+            try {
+                isWritten = connection.write(buffer, offset, length);
+                if (isWritten) metrics.onBytesWrite(length);
+            } finally {
+                transportLock.unlock();
+            }
+            writeLatencyHistogram.record(System.nanoTime() - startTime);
+            return isWritten;
+        }
+
+        /**
+         * Writes bulk data, each call should end at a sysex boundary.
+         */
+        private void writeBulk(final byte[] buffer, int offset, int length) {
+            if (connection == null) return;
+            boolean isWritten = writingThread != null ? writingThread.enqueue(buffer, offset, length) : writeControl(buffer, offset, length);
+            if (!isWritten) failedBulkWritesCount.incrementAndGet();
+        }
+
+        private long getFailedBulkWritesCount() {
+            return failedBulkWritesCount.get();
+        }
+
+        private void flush() {
+            if (writingThread != null) {
+                writingThread.flush();
+                return;
+            }
+            if (connection == null) return;
+            transportLock.lock();
+            try {
+                connection.flush();
+            } finally {
+                transportLock.unlock();
+            }
+        }
+
+        /**
+         * Calls the callback once all of the bulk data sent so far is written, synchronous writes
+         * are already done so it fails right away if any of them failed since the passed count.
+         */
+        private void notifyWhenWritten(OneSheeldWriteCallback writeCallback, long failedWritesCount) {
+            if (writingThread != null)
+                writingThread.notifyWhenWritten(writeCallback);
+            else if (failedBulkWritesCount.get() != failedWritesCount)
+                writeCallback.onWriteFailure(OneSheeldDevice.this);
+            else
+                writeCallback.onWriteComplete(OneSheeldDevice.this);
+        }
+
+        private int getWriteQueueDepth() {
+            return writingThread != null ? writingThread.getQueueDepth() : 0;
         }
 
-        private synchronized void cancel() {
+        private void cancel() {
+            if (writingThread != null) writingThread.stopRunning();
+            // Not taking the transport lock, closing is what unblocks a stuck write.
             if (connection != null) connection.close();
         }
     }
 
+    /**
+     * Sends the bytes queued by the asynchronous writes to the connection.
+     * <p>Every write records where it ends in the byte stream, so the completion callbacks
+     * and the latencies are resolved by comparing it with the count of written bytes.
+     * The queued writes are coalesced without splitting any of them, so the control
+     * messages written directly to the connection land between whole writes.</p>
+     * <p>The end of a write is only recorded once all of its bytes are queued, and the
+     * writer only takes the bytes made available to it, so it never waits on the queue
+     * while holding the transport lock in the middle of a write.</p>
+     */
+    private class WritingThread extends Thread {
+        private final OneSheeldConnection connection;
+        private final ReentrantLock transportLock;
+        private final ByteRingBuffer queue;
+        private final Object positionsLock = new Object();
+        private final long[] writesEnds = new long[MAX_QUEUED_WRITES];
+        private final long[] marksPositions = new long[MAX_WRITE_MARKS];
+        private final long[] marksTimes = new long[MAX_WRITE_MARKS];
+        private final ArrayDeque<PendingWriteCallback> pendingWriteCallbacks = new ArrayDeque<>();
+        private int writesStart;
+        private int writesCount;
+        private int marksStart;
+        private int marksCount;
+        private long queuedPosition;
+        private long writtenPosition;
+        private volatile boolean isFlushRequested;
+        private volatile boolean isStopped;
+
+        WritingThread(OneSheeldConnection connection, ReentrantLock transportLock, int queueCapacity) {
+            this.connection = connection;
+            this.transportLock = transportLock;
+            this.queue = new ByteRingBuffer(queueCapacity);
+            setName("OneSheeldWritingThread: " + OneSheeldDevice.this.getName());
+        }
+
+        /**
+         * Queues a write, the writes are serialized by the bulk sending lock.
+         * <p>A write longer than the free space of the queue is made available to the writer a
+         * part at a time, so the writer frees the space the rest needs. An interrupt doesn't stop
+         * queuing the rest of a write, as a partly queued sysex would corrupt the stream, only
+         * stopping the thread does.</p>
+         *
+         * @return false if the thread got stopped before the whole write was queued
+         */
+        private boolean enqueue(byte[] buffer, int offset, int length) {
+            long enqueueTime = System.nanoTime();
+            boolean isInterrupted = false;
+            int queuedLength = 0;
+            int availableLength = 0;
+            while (queuedLength < length && !isStopped) {
+                try {
+                    queuedLength += queue.offer(buffer, offset + queuedLength, length - queuedLength, 100);
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                    continue;
+                }
+                if (queuedLength < length && queuedLength > availableLength) {
+                    synchronized (positionsLock) {
+                        queuedPosition += queuedLength - availableLength;
+                        positionsLock.notifyAll();
+                    }
+                    availableLength = queuedLength;
+                }
+            }
+            if (isInterrupted) Thread.currentThread().interrupt();
+            if (queuedLength < length) return false;
+            synchronized (positionsLock) {
+                queuedPosition += length - availableLength;
+                if (writesCount < MAX_QUEUED_WRITES) {
+                    writesEnds[(writesStart + writesCount) % MAX_QUEUED_WRITES] = queuedPosition;
+                    writesCount++;
+                } else {
+                    // Too many small writes are queued, this one is merged with the last.
+                    writesEnds[(writesStart + writesCount - 1) % MAX_QUEUED_WRITES] = queuedPosition;
+                }
+                // Latencies are sampled when the writes outpace the marks.
+                if (marksCount < MAX_WRITE_MARKS) {
+                    int index = (marksStart + marksCount) % MAX_WRITE_MARKS;
+                    marksPositions[index] = queuedPosition;
+                    marksTimes[index] = enqueueTime;
+                    marksCount++;
+                }
+                positionsLock.notifyAll();
+            }
+            int depth = queue.size();
+            int maximumDepth;
+            while (depth > (maximumDepth = maximumWriteQueueDepth.get())) {
+                if (maximumWriteQueueDepth.compareAndSet(maximumDepth, depth)) break;
+            }
+            return true;
+        }
+
+        private void flush() {
+            isFlushRequested = true;
+            if (queue.isEmpty() && isFlushRequested) {
+                isFlushRequested = false;
+                transportLock.lock();
+                try {
+                    connection.flush();
+                } finally {
+                    transportLock.unlock();
+                }
+            }
+        }
+
+        private void notifyWhenWritten(OneSheeldWriteCallback writeCallback) {
+            synchronized (positionsLock) {
+                if (!isStopped && writtenPosition < queuedPosition) {
+                    pendingWriteCallbacks.add(new PendingWriteCallback(queuedPosition, writeCallback));
+                    return;
+                }
+            }
+            if (isStopped)
+                writeCallback.onWriteFailure(OneSheeldDevice.this);
+            else
+                writeCallback.onWriteComplete(OneSheeldDevice.this);
+        }
+
+        private int getQueueDepth() {
+            return queue.size();
+        }
+
+        private void stopRunning() {
+            isStopped = true;
+            interrupt();
+            queue.clear();
+            synchronized (positionsLock) {
+                positionsLock.notifyAll();
+            }
+        }
+
+        /**
+         * Gets how many of the available bytes can be written without splitting a queued write,
+         * it is called holding the positions lock.
+         * <p>A write longer than the chunk, or whose end isn't queued yet, is split, and the
+         * transport lock is held until its last piece is written.</p>
+         */
+        private int getChunkLimit(int chunkSize) {
+            int limit = 0;
+            for (int i = 0; i < writesCount; i++) {
+                long writeLength = writesEnds[(writesStart + i) % MAX_QUEUED_WRITES] - writtenPosition;
+                if (writeLength > chunkSize) break;
+                limit = (int) writeLength;
+            }
+            return limit > 0 ? limit : (int) Math.min(chunkSize, queuedPosition - writtenPosition);
+        }
+
+        @Override
+        public void run() {
+            byte[] chunk = new byte[maximumWriteSize];
+            int chunkLength;
+            boolean isInTheMiddleOfWrite = false;
+            try {
+                while (!isStopped) {
+                    if (chunk.length != maximumWriteSize) chunk = new byte[maximumWriteSize];
+                    try {
+                        synchronized (positionsLock) {
+                            // In the middle of a write this only waits for the rest of a write
+                            // longer than the free space of the queue, which is being queued.
+                            while (!isStopped && queuedPosition == writtenPosition)
+                                positionsLock.wait();
+                            if (isStopped) break;
+                            chunkLength = getChunkLimit(chunk.length);
+                        }
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    // The available bytes are in the queue already, only stopping clears it.
+                    if (queue.poll(chunk, 0, chunkLength) < chunkLength) break;
+                    if (!isInTheMiddleOfWrite) transportLock.lock();
+                    boolean isWritten = connection.write(chunk, 0, chunkLength);
+                    if (isWritten) metrics.onBytesWrite(chunkLength);
+                    isInTheMiddleOfWrite = !onChunkWrite(chunkLength, isWritten);
+                    if (!isInTheMiddleOfWrite) transportLock.unlock();
+                    if (isFlushRequested && queue.isEmpty()) {
+                        isFlushRequested = false;
+                        transportLock.lock();
+                        try {
+                            connection.flush();
+                        } finally {
+                            transportLock.unlock();
+                        }
+                    }
+                }
+            } finally {
+                if (isInTheMiddleOfWrite) transportLock.unlock();
+            }
+            ArrayList<OneSheeldWriteCallback> failedWriteCallbacks = new ArrayList<>();
+            synchronized (positionsLock) {
+                for (PendingWriteCallback pendingWriteCallback : pendingWriteCallbacks)
+                    failedWriteCallbacks.add(pendingWriteCallback.writeCallback);
+                pendingWriteCallbacks.clear();
+            }
+            for (OneSheeldWriteCallback writeCallback : failedWriteCallbacks)
+                writeCallback.onWriteFailure(OneSheeldDevice.this);
+        }
+
+        /**
+         * Accounts for a written chunk and calls the callbacks of the writes it completed.
+         *
+         * @return true if the chunk ended at the end of a queued write
+         */
+        private boolean onChunkWrite(int chunkLength, boolean isWritten) {
+            long now = System.nanoTime();
+            boolean isAtWriteEnd = false;
+            ArrayList<OneSheeldWriteCallback> writeCallbacks = null;
+            synchronized (positionsLock) {
+                writtenPosition += chunkLength;
+                while (writesCount > 0 && writesEnds[writesStart] <= writtenPosition) {
+                    isAtWriteEnd = writesEnds[writesStart] == writtenPosition;
+                    writesStart = (writesStart + 1) % MAX_QUEUED_WRITES;
+                    writesCount--;
+                }
+                while (marksCount > 0 && marksPositions[marksStart] <= writtenPosition) {
+                    writeLatencyHistogram.record(now - marksTimes[marksStart]);
+                    marksStart = (marksStart + 1) % MAX_WRITE_MARKS;
+                    marksCount--;
+                }
+                while (!pendingWriteCallbacks.isEmpty() && pendingWriteCallbacks.peek().position <= writtenPosition) {
+                    if (writeCallbacks == null) writeCallbacks = new ArrayList<>();
+                    writeCallbacks.add(pendingWriteCallbacks.poll().writeCallback);
+                }
+            }
+            if (writeCallbacks != null) {
+                for (OneSheeldWriteCallback writeCallback : writeCallbacks) {
+                    if (isWritten)
+                        writeCallback.onWriteComplete(OneSheeldDevice.this);
+                    else
+                        writeCallback.onWriteFailure(OneSheeldDevice.this);
+                }
+            }
+            return isAtWriteEnd;
+        }
+    }
+
+    private static class PendingWriteCallback {
+        private final long position;
+        private final OneSheeldWriteCallback writeCallback;
+
+        PendingWriteCallback(long position, OneSheeldWriteCallback writeCallback) {
+            this.position = position;
+            this.writeCallback = writeCallback;
+        }
+    }
+
     private class BluetoothBufferListeningThread extends Thread {
         BluetoothBufferListeningThread() {
             setName("BluetoothBufferListeningThread: " + OneSheeldDevice.this.getName());
@@ -2139,16 +3258,20 @@ public class OneSheeldDevice {
 
         @Override
         public void run() {
-            byte input;
+            byte[] chunk = new byte[RECEIVE_CHUNK_SIZE];
+            int chunkLength;
             while (!this.isInterrupted()) {
                 try {
-                    input = readByteFromBluetoothBuffer();
+                    isBluetoothBufferWaiting = true;
+                    chunkLength = bluetoothBuffer.drain(chunk);
                     if (isUpdatingFirmware()) {
-                        firmwareUpdateBuffer.add(input);
+                        if (!storeReceivedBytes(firmwareUpdateBuffer, chunk, 0, chunkLength)) return;
                     } else {
+                        onReceivedBytesParse();
                         synchronized (processInputLock) {
-                            processInput(input);
+                            processInput(chunk, 0, chunkLength);
                         }
+                        putPendingSerialData();
                     }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
@@ -2159,6 +3282,9 @@ public class OneSheeldDevice {
     }
 
     private class SerialBufferListeningThread extends Thread {
+        private final byte[] chunk = new byte[RECEIVE_CHUNK_SIZE];
+        private final ShieldFrameDecoder shieldFrameDecoder = createShieldFrameDecoder();
+
         SerialBufferListeningThread() {
             setName("SerialBufferListeningThread: " + OneSheeldDevice.this.getName());
             start();
@@ -2171,127 +3297,80 @@ public class OneSheeldDevice {
 
         @Override
         public void run() {
+            int chunkLength;
             while (!this.isInterrupted()) {
                 try {
-                    while (true) {
-                        if (readByteFromSerialBuffer() == ShieldFrame.START_OF_FRAME)
-                            break;
-                    }
-                    if (ShieldFrameTimeout != null)
-                        ShieldFrameTimeout.stopTimer();
-                    ShieldFrameTimeout = new TimeOut(3000);
-                    int tempArduinoLibVersion = readByteFromSerialBuffer();
-                    byte shieldId = readByteFromSerialBuffer();
-                    byte verificationByte = readByteFromSerialBuffer();
-                    if ((((verificationByte & 0xF0) >> 4) & (verificationByte & 0x0F)) != 0) {
-                        Log.i("Device " + OneSheeldDevice.this.name + ": Frame is incorrect, canceling what we've read so far.");
-                        if (ShieldFrameTimeout != null)
-                            ShieldFrameTimeout.stopTimer();
-                        continue;
-                    }
-                    byte functionId = readByteFromSerialBuffer();
-                    ShieldFrame frame = new ShieldFrame(shieldId, functionId);
-                    int argumentsNumber = readByteFromSerialBuffer() & 0xFF;
-                    int argumentsNumberVerification = (255 - (readByteFromSerialBuffer() & 0xFF));
-                    if (argumentsNumber != argumentsNumberVerification) {
-                        Log.i("Device " + OneSheeldDevice.this.name + ": Frame is incorrect, canceling what we've read so far.");
-                        if (ShieldFrameTimeout != null)
-                            ShieldFrameTimeout.stopTimer();
-                        continue;
-                    }
-                    boolean continueRequested = false;
-                    for (int i = 0; i < argumentsNumber; i++) {
-                        int length = readByteFromSerialBuffer() & 0xFF;
-                        int lengthVerification = (255 - (readByteFromSerialBuffer() & 0xFF));
-                        if (length != lengthVerification || length <= 0) {
-                            Log.i("Device " + OneSheeldDevice.this.name + ": Frame is incorrect, canceling what we've read so far.");
-                            if (ShieldFrameTimeout != null)
-                                ShieldFrameTimeout.stopTimer();
-                            continueRequested = true;
-                            break;
-                        }
-                        byte[] data = new byte[length];
-                        for (int j = 0; j < length; j++) {
-                            data[j] = readByteFromSerialBuffer();
-                        }
-                        frame.addArgument(data);
-                    }
-                    if (continueRequested) continue;
-                    if ((readByteFromSerialBuffer()) != ShieldFrame.END_OF_FRAME) {
-                        Log.i("Device " + OneSheeldDevice.this.name + ": Frame is incorrect, canceling what we've read so far.");
-                        if (ShieldFrameTimeout != null)
-                            ShieldFrameTimeout.stopTimer();
+                    isSerialBufferWaiting = true;
+                    chunkLength = serialBuffer.drain(chunk);
+                    shieldFrameDecoder.decode(chunk, 0, chunkLength);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Does the work of both buffer listening threads as a task on the manager's shared pool.
+     * <p>The serial buffer is drained right after every chunk is processed, so the task never
+     * waits for another task to make room for it.</p>
+     */
+    private class ReceivingTask implements Runnable {
+        private final SerialExecutor executor;
+        private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+        private final byte[] bluetoothChunk = new byte[RECEIVE_CHUNK_SIZE];
+        private final byte[] serialChunk = new byte[RECEIVE_CHUNK_SIZE];
+        private final ShieldFrameDecoder shieldFrameDecoder = createShieldFrameDecoder();
+        private volatile boolean isStopped;
+
+        ReceivingTask(Executor sharedExecutor) {
+            this.executor = new SerialExecutor(sharedExecutor);
+        }
+
+        private void schedule() {
+            if (!isStopped && isScheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    isScheduled.set(false);
+                }
+            }
+        }
+
+        private void stopRunning() {
+            isStopped = true;
+            executor.clear();
+        }
+
+        @Override
+        public void run() {
+            isScheduled.set(false);
+            int chunkLength;
+            while (!isStopped && (chunkLength = bluetoothBuffer.poll(bluetoothChunk, 0, bluetoothChunk.length)) > 0) {
+                try {
+                    if (isUpdatingFirmware()) {
+                        if (!storeReceivedBytes(firmwareUpdateBuffer, bluetoothChunk, 0, chunkLength)) return;
                         continue;
                     }
-                    if (ShieldFrameTimeout != null)
-                        ShieldFrameTimeout.stopTimer();
-                    if (arduinoLibraryVersion != tempArduinoLibVersion) {
-                        arduinoLibraryVersion = tempArduinoLibVersion;
-                        isLibraryVersionQueried = true;
-                        Log.i("Device " + OneSheeldDevice.this.name + ": Device replied with library version: " + arduinoLibraryVersion + ".");
-                        onLibraryVersionQueryResponse(arduinoLibraryVersion);
-                    }
-
-                    if (shieldId == CONFIGURATION_SHIELD_ID) {
-                        switch (functionId) {
-                            case LIBRARY_VERSION_RESPONSE:
-                                break;
-                            case IS_HARDWARE_CONNECTED_QUERY:
-                                notifyHardwareOfConnection();
-                                break;
-                            case IS_CALLBACK_ENTERED:
-                                callbackEntered();
-                                break;
-                            case IS_CALLBACK_EXITED:
-                                callbackExited();
-                                break;
-                            case LIBRARY_TESTING_CHALLENGE_RESPONSE:
-                                hasLibraryTestStarted = false;
-                                boolean isTestResultCorrect = false;
-                                try {
-                                    if (frame.getArguments().size() == 2) {
-                                        if (frame.getArgumentAsString(0).equals("Yup, I'm feeling great!")) {
-                                            if (frame.getArgument(1).length == 1 && frame.getArgument(1)[0] == correctTestingChallengeAnswer) {
-                                                isTestResultCorrect = true;
-                                            }
-                                        }
-                                    }
-                                } catch (Exception ignored) {
-                                }
-                                if (isTestResultCorrect)
-                                    Log.i("Device " + OneSheeldDevice.this.name + ": Library testing succeeded.");
-                                else
-                                    Log.i("Device " + OneSheeldDevice.this.name + ": Library testing failed.");
-                                stopLibraryTestingTimeOut();
-                                if (isConnected()) {
-                                    for (OneSheeldTestingCallback oneSheeldTestingCallback : testingCallbacks)
-                                        oneSheeldTestingCallback.onLibraryTestResult(OneSheeldDevice.this, isTestResultCorrect);
-                                }
-                                break;
-                        }
-                    } else {
-                        Log.i("Device " + OneSheeldDevice.this.name + ": Frame received, values: " + frame + ".");
-                        for (OneSheeldDataCallback oneSheeldDataCallback : dataCallbacks) {
-                            oneSheeldDataCallback.onShieldFrameReceive(OneSheeldDevice.this, frame);
-                            if (OneSheeldSdk.getKnownShields().contains(shieldId) &&
-                                    OneSheeldSdk.getKnownShields().getKnownShield(shieldId).getKnownFunctions().contains(KnownFunction.getFunctionWithId(functionId)))
-                                oneSheeldDataCallback.onKnownShieldFrameReceive(OneSheeldDevice.this, OneSheeldSdk.getKnownShields().getKnownShield(shieldId), frame);
-                        }
+                    onReceivedBytesParse();
+                    synchronized (processInputLock) {
+                        processInput(bluetoothChunk, 0, chunkLength);
                     }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     return;
-                } catch (ShieldFrameNotComplete e) {
-                    Log.i("Device " + OneSheeldDevice.this.name + ": Frame wasn't completed in 3 seconds, canceling what we've read so far.");
-                    if (ShieldFrameTimeout != null)
-                        ShieldFrameTimeout.stopTimer();
-                    ShieldFrameTimeout = null;
                 }
+                // The serial buffer is drained by this task too, so the staged serial data
+                // is stored a buffer at a time instead of waiting for free space.
+                boolean isSerialDataStored;
+                do {
+                    isSerialDataStored = offerPendingSerialData();
+                    while (!isStopped && (chunkLength = serialBuffer.poll(serialChunk, 0, serialChunk.length)) > 0) {
+                        shieldFrameDecoder.decode(serialChunk, 0, chunkLength);
+                    }
+                } while (!isStopped && !isSerialDataStored);
             }
         }
     }
-
-    private class ShieldFrameNotComplete extends Exception {
-    }
 }
-
@@ -64,4 +64,10 @@ public enum OneSheeldError {
      * the device is updating the firmware.
      */
     FIRMWARE_UPDATE_IN_PROGRESS,
+    /**
+     * Happens if the received data overflowed the receive buffers of
+     * {@link OneSheeldDevice} while its overflow policy is
+     * {@link BufferOverflowPolicy#DISCONNECT}.
+     */
+    RECEIVE_BUFFER_OVERFLOW,
 }
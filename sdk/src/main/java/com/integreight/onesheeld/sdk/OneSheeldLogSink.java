@@ -0,0 +1,40 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * Represents a destination for the sdk log messages.
+ * <p>Should be extended and passed to {@link OneSheeldSdk} to redirect the
+ * messages somewhere other than the log cat console, a file or a test runner
+ * console for example.</p>
+ * <p>The method here gets called in whatever thread logs the message.</p>
+ *
+ * @see OneSheeldSdk#setLogSink(OneSheeldLogSink)
+ */
+public abstract class OneSheeldLogSink {
+    /**
+     * This method gets called for every message that passes the debugging
+     * flag and the log level.
+     *
+     * @param level     the level of the message
+     * @param tag       the tag of the message
+     * @param message   the message
+     * @param throwable the throwable related to the message or null
+     */
+    public abstract void log(LogLevel level, String tag, String message, Throwable throwable);
+}
@@ -31,6 +31,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -48,6 +51,10 @@ public class OneSheeldManager {
     private TimeOut scanningTimeOut;
     private ConnectThread connectThread;
     private boolean isAutomaticConnectingRetriesEnabled;
+    private int writeWindowSizeForLeConnections;
+    private int coalescingLatencyBudgetForLeConnections;
+    private volatile ThreadingMode threadingMode;
+    private static ExecutorService sharedExecutor;
     private CopyOnWriteArrayList<OneSheeldConnectionCallback> connectionCallbacks;
     private CopyOnWriteArrayList<OneSheeldScanningCallback> scanningCallbacks;
     private CopyOnWriteArrayList<OneSheeldErrorCallback> errorCallbacks;
@@ -96,6 +103,9 @@ public class OneSheeldManager {
         currentState = ConnectionState.READY;
         bluetoothAdapter = BluetoothUtils.getBluetoothAdapter();
         isAutomaticConnectingRetriesEnabled = false;
+        writeWindowSizeForLeConnections = 1;
+        coalescingLatencyBudgetForLeConnections = 20;
+        threadingMode = ThreadingMode.DEDICATED_THREADS;
     }
 
     /**
@@ -299,6 +309,94 @@ public class OneSheeldManager {
         isAutomaticConnectingRetriesEnabled = value;
     }
 
+    /**
+     * Gets the maximum number of unacknowledged writes for 1Sheeld+ connections.
+     *
+     * @return the write window size
+     */
+    public int getWriteWindowSizeForLeConnections() {
+        return writeWindowSizeForLeConnections;
+    }
+
+    /**
+     * Sets the maximum number of unacknowledged writes for 1Sheeld+ connections.
+     * <p>A window of 1 waits for every write to be acknowledged before the next one,
+     * larger windows pipeline the writes as far as the Bluetooth stack accepts them.</p>
+     * <p>It takes effect for the connections started after the call.</p>
+     * <p>default value is 1.</p>
+     *
+     * @param writeWindowSize the write window size
+     */
+    public void setWriteWindowSizeForLeConnections(int writeWindowSize) {
+        if (writeWindowSize > 0)
+            this.writeWindowSizeForLeConnections = writeWindowSize;
+    }
+
+    /**
+     * Gets the longest time small writes are held back to be coalesced on 1Sheeld+ connections.
+     *
+     * @return the latency budget in milliseconds
+     */
+    public int getCoalescingLatencyBudgetForLeConnections() {
+        return coalescingLatencyBudgetForLeConnections;
+    }
+
+    /**
+     * Sets the longest time small writes are held back to be coalesced on 1Sheeld+ connections.
+     * <p>Writes are only held back while earlier ones are still waiting to be acknowledged,
+     * 0 disables the coalescing, see {@link OneSheeldDevice#flush()} to send held bytes right away.</p>
+     * <p>It takes effect for the connections started after the call.</p>
+     * <p>default value is 20 milliseconds.</p>
+     *
+     * @param latencyBudget the latency budget in milliseconds
+     */
+    public void setCoalescingLatencyBudgetForLeConnections(int latencyBudget) {
+        if (latencyBudget >= 0)
+            this.coalescingLatencyBudgetForLeConnections = latencyBudget;
+    }
+
+    /**
+     * Gets the threading mode used by the devices to process their incoming data.
+     *
+     * @return the threading mode
+     */
+    public ThreadingMode getThreadingMode() {
+        return threadingMode;
+    }
+
+    /**
+     * Sets the threading mode used by the devices to process their incoming data.
+     * <p>{@link ThreadingMode#SHARED_POOL} keeps the thread count low when many devices are
+     * connected at the same time, each device keeps only its connection thread.</p>
+     * <p>It takes effect for the devices connected after the call.</p>
+     * <p>default value is {@link ThreadingMode#DEDICATED_THREADS}.</p>
+     *
+     * @param threadingMode the threading mode
+     * @throws NullPointerException if the passed threading mode is null
+     */
+    public void setThreadingMode(ThreadingMode threadingMode) {
+        if (threadingMode == null)
+            throw new NullPointerException("The passed threading mode is null, have you checked its validity?");
+        this.threadingMode = threadingMode;
+    }
+
+    static synchronized ExecutorService getSharedExecutor() {
+        if (sharedExecutor == null) {
+            int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+            sharedExecutor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+                private final AtomicInteger threadsCount = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "OneSheeldSharedPoolThread: " + threadsCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sharedExecutor;
+    }
+
     /**
      * Gets a list of connected devices.
      *
@@ -310,6 +408,20 @@ public class OneSheeldManager {
         }
     }
 
+    /**
+     * Gets the sum of the traffic and error counters of all connected devices.
+     *
+     * @return the aggregated metrics
+     * @see OneSheeldDevice#getMetrics()
+     */
+    public OneSheeldMetrics getMetrics() {
+        ArrayList<OneSheeldMetrics> metricsList = new ArrayList<>();
+        for (OneSheeldDevice device : getConnectedDevices()) {
+            metricsList.add(device.getMetrics());
+        }
+        return OneSheeldMetrics.sum(metricsList);
+    }
+
     /**
      * Disconnect all connected devices.
      */
@@ -756,7 +868,7 @@ public class OneSheeldManager {
             final int totalTries = connectionRetryCount + 1;
             final AtomicInteger triesCounter = new AtomicInteger(totalTries);
             if (device.isTypePlus())
-                connection = new LeConnection(device);
+                connection = new LeConnection(device, writeWindowSizeForLeConnections, coalescingLatencyBudgetForLeConnections);
             else
                 connection = new ClassicConnection(device, isDefaultConnectingRetriesEnabled);
 
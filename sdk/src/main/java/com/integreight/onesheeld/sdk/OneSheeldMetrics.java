@@ -0,0 +1,195 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.Arrays;
+
+/**
+ * Represents a snapshot of the traffic and error counters of a device, or of
+ * all connected devices when it is taken from {@link OneSheeldManager}.
+ * <p>The counters accumulate across connections until they are reset.</p>
+ *
+ * @see OneSheeldDevice#getMetrics()
+ * @see OneSheeldManager#getMetrics()
+ */
+public class OneSheeldMetrics {
+    private final long readBytesCount;
+    private final long writtenBytesCount;
+    private final long droppedBytesCount;
+    private final long decodedFramesCount;
+    private final long sentFramesCount;
+    private final long[] rejectedFramesCounts;
+    private final long connectionsCount;
+    private final long reconnectionsCount;
+    private final int queuedFramesCount;
+
+    OneSheeldMetrics(long readBytesCount, long writtenBytesCount, long droppedBytesCount,
+                     long decodedFramesCount, long sentFramesCount, long[] rejectedFramesCounts,
+                     long connectionsCount, long reconnectionsCount, int queuedFramesCount) {
+        this.readBytesCount = readBytesCount;
+        this.writtenBytesCount = writtenBytesCount;
+        this.droppedBytesCount = droppedBytesCount;
+        this.decodedFramesCount = decodedFramesCount;
+        this.sentFramesCount = sentFramesCount;
+        this.rejectedFramesCounts = rejectedFramesCounts;
+        this.connectionsCount = connectionsCount;
+        this.reconnectionsCount = reconnectionsCount;
+        this.queuedFramesCount = queuedFramesCount;
+    }
+
+    static OneSheeldMetrics sum(Iterable<OneSheeldMetrics> metricsList) {
+        long readBytesCount = 0;
+        long writtenBytesCount = 0;
+        long droppedBytesCount = 0;
+        long decodedFramesCount = 0;
+        long sentFramesCount = 0;
+        long[] rejectedFramesCounts = new long[FrameRejection.values().length];
+        long connectionsCount = 0;
+        long reconnectionsCount = 0;
+        int queuedFramesCount = 0;
+        for (OneSheeldMetrics metrics : metricsList) {
+            readBytesCount += metrics.readBytesCount;
+            writtenBytesCount += metrics.writtenBytesCount;
+            droppedBytesCount += metrics.droppedBytesCount;
+            decodedFramesCount += metrics.decodedFramesCount;
+            sentFramesCount += metrics.sentFramesCount;
+            for (int i = 0; i < rejectedFramesCounts.length; i++) {
+                rejectedFramesCounts[i] += metrics.rejectedFramesCounts[i];
+            }
+            connectionsCount += metrics.connectionsCount;
+            reconnectionsCount += metrics.reconnectionsCount;
+            queuedFramesCount += metrics.queuedFramesCount;
+        }
+        return new OneSheeldMetrics(readBytesCount, writtenBytesCount, droppedBytesCount,
+                decodedFramesCount, sentFramesCount, rejectedFramesCounts,
+                connectionsCount, reconnectionsCount, queuedFramesCount);
+    }
+
+    /**
+     * Gets the number of bytes read from the connection.
+     *
+     * @return the count of read bytes
+     */
+    public long getReadBytesCount() {
+        return readBytesCount;
+    }
+
+    /**
+     * Gets the number of bytes accepted by the connection.
+     *
+     * @return the count of written bytes
+     */
+    public long getWrittenBytesCount() {
+        return writtenBytesCount;
+    }
+
+    /**
+     * Gets the number of received bytes dropped because of receive buffers overflow.
+     *
+     * @return the count of dropped bytes
+     * @see OneSheeldDevice#setReceiveBufferOverflowPolicy(BufferOverflowPolicy)
+     */
+    public long getDroppedBytesCount() {
+        return droppedBytesCount;
+    }
+
+    /**
+     * Gets the number of frames received and decoded successfully.
+     *
+     * @return the count of decoded frames
+     */
+    public long getDecodedFramesCount() {
+        return decodedFramesCount;
+    }
+
+    /**
+     * Gets the number of frames sent to the board.
+     *
+     * @return the count of sent frames
+     */
+    public long getSentFramesCount() {
+        return sentFramesCount;
+    }
+
+    /**
+     * Gets the number of received frames discarded for a specific reason.
+     *
+     * @param rejection the reason
+     * @return the count of rejected frames
+     * @throws NullPointerException if the passed reason is null
+     */
+    public long getRejectedFramesCount(FrameRejection rejection) {
+        if (rejection == null)
+            throw new NullPointerException("The passed rejection is null, have you checked its validity?");
+        return rejectedFramesCounts[rejection.ordinal()];
+    }
+
+    /**
+     * Gets the number of received frames discarded for any reason.
+     *
+     * @return the count of rejected frames
+     */
+    public long getRejectedFramesCount() {
+        long count = 0;
+        for (long rejectedFramesCount : rejectedFramesCounts) {
+            count += rejectedFramesCount;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of successful connections.
+     *
+     * @return the count of connections
+     */
+    public long getConnectionsCount() {
+        return connectionsCount;
+    }
+
+    /**
+     * Gets the number of successful connections after the first one of each device.
+     *
+     * @return the count of reconnections
+     */
+    public long getReconnectionsCount() {
+        return reconnectionsCount;
+    }
+
+    /**
+     * Gets the number of frames waiting for the Arduino to exit its callback
+     * when the snapshot was taken.
+     *
+     * @return the count of queued frames
+     */
+    public int getQueuedFramesCount() {
+        return queuedFramesCount;
+    }
+
+    @Override
+    public String toString() {
+        return "OneSheeldMetrics{readBytes=" + readBytesCount +
+                ", writtenBytes=" + writtenBytesCount +
+                ", droppedBytes=" + droppedBytesCount +
+                ", decodedFrames=" + decodedFramesCount +
+                ", sentFrames=" + sentFramesCount +
+                ", rejectedFrames=" + Arrays.toString(rejectedFramesCounts) +
+                ", connections=" + connectionsCount +
+                ", reconnections=" + reconnectionsCount +
+                ", queuedFrames=" + queuedFramesCount + "}";
+    }
+}
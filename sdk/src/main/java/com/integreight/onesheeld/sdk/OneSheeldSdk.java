@@ -28,7 +28,9 @@ public class OneSheeldSdk {
     private static final int compatibleLibraryVersion = 14;
     private static final int versionCode = BuildConfig.VERSION_CODE;
     private static final String versionName = BuildConfig.VERSION_NAME;
-    private static boolean isDebuggingEnabled = false;
+    private static volatile boolean isDebuggingEnabled = false;
+    private static volatile LogLevel logLevel = LogLevel.DEBUG;
+    private static volatile OneSheeldLogSink logSink = new AndroidLogSink();
     private static Context context;
     private static boolean isInit = false;
 
@@ -58,6 +60,48 @@ public class OneSheeldSdk {
         if (value) Log.i("Debugging logs enabled.");
     }
 
+    /**
+     * Gets the lowest level of the logged messages.
+     *
+     * @return the log level
+     */
+    public static LogLevel getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Sets the lowest level of the logged messages.
+     * <p>It only applies while debugging messages are enabled, the messages below it
+     * are skipped before being formatted.</p>
+     * <p>default value is {@link LogLevel#DEBUG}</p>
+     *
+     * @param logLevel the log level
+     * @throws NullPointerException if the passed level is null
+     */
+    public static void setLogLevel(LogLevel logLevel) {
+        if (logLevel == null)
+            throw new NullPointerException("The passed log level is null, have you checked its validity?");
+        OneSheeldSdk.logLevel = logLevel;
+    }
+
+    static OneSheeldLogSink getLogSink() {
+        return logSink;
+    }
+
+    /**
+     * Sets where the logged messages go.
+     * <p>default is the log cat console under the tag OneSheeldSdk</p>
+     *
+     * @param logSink the log sink
+     * @throws NullPointerException if the passed sink is null
+     * @see OneSheeldLogSink
+     */
+    public static void setLogSink(OneSheeldLogSink logSink) {
+        if (logSink == null)
+            throw new NullPointerException("The passed log sink is null, have you checked its validity?");
+        OneSheeldSdk.logSink = logSink;
+    }
+
     /**
      * Gets the highest compatible firmware version.
      *
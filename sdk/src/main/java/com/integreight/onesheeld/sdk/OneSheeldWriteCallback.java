@@ -0,0 +1,49 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * Represents the completion of a write.
+ * <p>Should be extended and passed to {@link OneSheeldDevice} along with the
+ * frame or the data to get notified once they are handed to the connection.</p>
+ * <p>With asynchronous writing the methods here gets called in the writing thread
+ * of the connection. So take precautions and use some sort of handlers if you want
+ * to interact with the Ui, and don't block it.</p>
+ *
+ * @see OneSheeldDevice#setAsynchronousWriting(boolean)
+ */
+public abstract class OneSheeldWriteCallback {
+    /**
+     * This method gets called once the written bytes are handed to the connection.
+     *
+     * @param device the device
+     */
+    public void onWriteComplete(OneSheeldDevice device) {
+
+    }
+
+    /**
+     * This method gets called if the connection refused the written bytes or
+     * got closed before writing them.
+     *
+     * @param device the device
+     */
+    public void onWriteFailure(OneSheeldDevice device) {
+
+    }
+}
@@ -0,0 +1,115 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Aggregates the latencies of the pipeline stages of a device, for all frames and per shield.
+ * <p>The histograms of a shield are created the first time one of its frames is measured.</p>
+ */
+class PipelineInstrumentation {
+    private static final PipelineStage[] STAGES = PipelineStage.values();
+
+    private final LatencyHistogram[] histograms = createHistograms();
+    private final AtomicReferenceArray<LatencyHistogram[]> shieldsHistograms = new AtomicReferenceArray<>(256);
+
+    private static LatencyHistogram[] createHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    void record(PipelineStage stage, long nanoSeconds) {
+        histograms[stage.ordinal()].record(nanoSeconds);
+    }
+
+    void record(byte shieldId, PipelineStage stage, long nanoSeconds) {
+        histograms[stage.ordinal()].record(nanoSeconds);
+        getShieldHistograms(shieldId, true)[stage.ordinal()].record(nanoSeconds);
+    }
+
+    private LatencyHistogram[] getShieldHistograms(byte shieldId, boolean create) {
+        int index = shieldId & 0xFF;
+        LatencyHistogram[] shieldHistograms = shieldsHistograms.get(index);
+        if (shieldHistograms == null && create) {
+            shieldsHistograms.compareAndSet(index, null, createHistograms());
+            shieldHistograms = shieldsHistograms.get(index);
+        }
+        return shieldHistograms;
+    }
+
+    long getCount(PipelineStage stage) {
+        return histograms[stage.ordinal()].getCount();
+    }
+
+    long getPercentile(PipelineStage stage, double percentile) {
+        return histograms[stage.ordinal()].getPercentile(percentile);
+    }
+
+    long getCount(byte shieldId, PipelineStage stage) {
+        LatencyHistogram[] shieldHistograms = getShieldHistograms(shieldId, false);
+        return shieldHistograms != null ? shieldHistograms[stage.ordinal()].getCount() : 0;
+    }
+
+    long getPercentile(byte shieldId, PipelineStage stage, double percentile) {
+        LatencyHistogram[] shieldHistograms = getShieldHistograms(shieldId, false);
+        return shieldHistograms != null ? shieldHistograms[stage.ordinal()].getPercentile(percentile) : 0;
+    }
+
+    void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        for (int i = 0; i < shieldsHistograms.length(); i++) {
+            shieldsHistograms.set(i, null);
+        }
+    }
+
+    /**
+     * Formats the count and the main percentiles of every measured stage,
+     * for all frames then for each shield, one line each.
+     */
+    String export() {
+        StringBuilder builder = new StringBuilder();
+        appendHistograms(builder, "All", histograms);
+        for (int i = 0; i < shieldsHistograms.length(); i++) {
+            LatencyHistogram[] shieldHistograms = shieldsHistograms.get(i);
+            if (shieldHistograms != null)
+                appendHistograms(builder, String.format(Locale.US, "Shield 0x%02X", i), shieldHistograms);
+        }
+        return builder.toString();
+    }
+
+    private static void appendHistograms(StringBuilder builder, String title, LatencyHistogram[] histograms) {
+        for (PipelineStage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            long count = histogram.getCount();
+            if (count == 0) continue;
+            builder.append(title).append(' ').append(stage)
+                    .append(": count=").append(count)
+                    .append(", p50=").append(histogram.getPercentile(50))
+                    .append("us, p99=").append(histogram.getPercentile(99))
+                    .append("us, max=").append(histogram.getPercentile(100))
+                    .append("us\n");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * Represents the stages of sending and receiving frames that
+ * {@link OneSheeldDevice} measures when latency instrumentation is enabled.
+ *
+ * @see OneSheeldDevice#setLatencyInstrumentationEnabled(boolean)
+ */
+public enum PipelineStage {
+    /**
+     * The time a frame waits for the frames and serial data sent before it.
+     */
+    ENQUEUE,
+    /**
+     * The time it takes to serialize a frame.
+     */
+    ENCODE,
+    /**
+     * The time it takes to encode the frame bytes into sysex messages and
+     * hand them to the connection, or to the write queue with asynchronous writing.
+     */
+    WRITE,
+    /**
+     * The time the bytes wait after being read from the connection until
+     * they are parsed. It is measured from the latest read, so it is a lower
+     * bound when several reads are parsed at once.
+     */
+    READ,
+    /**
+     * The time from the first byte of a frame reaching the frame decoder until
+     * the frame is complete.
+     */
+    PARSE,
+    /**
+     * The time it takes the data callbacks to handle a frame, or to get it
+     * handed to their executors.
+     */
+    DISPATCH
+}
@@ -0,0 +1,172 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection that feeds the inbound chunks of a {@link ConnectionCapture} file back to a device.
+ * <p>The chunks are read either at the pace they were recorded at, relative to the time the
+ * connection got established, or as fast as the device reads them. The outbound records are
+ * skipped and whatever the device writes is only counted. Once the capture is over the
+ * connection stays open and idle until it is closed.</p>
+ */
+class ReplayConnection extends OneSheeldConnection {
+    private final File file;
+    private final boolean isRealTime;
+    private final AtomicLong writtenBytesCount = new AtomicLong();
+    private volatile DataInputStream input;
+    private volatile boolean isFinished;
+    private long startTime;
+    private byte[] chunk;
+    private int chunkOffset;
+    private int chunkLength;
+    private long chunkTime;
+
+    /**
+     * @param isRealTime true to replay the chunks at their recorded pace, false to replay them at full speed
+     */
+    ReplayConnection(OneSheeldDevice device, File file, boolean isRealTime) {
+        super(device);
+        this.file = file;
+        this.isRealTime = isRealTime;
+        this.chunk = new byte[1024];
+    }
+
+    boolean isFinished() {
+        return isFinished;
+    }
+
+    long getWrittenBytesCount() {
+        return writtenBytesCount.get();
+    }
+
+    @Override
+    protected synchronized boolean onConnectionInitiationRequest() {
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            if (input.readInt() != ConnectionCapture.MAGIC || input.readByte() != ConnectionCapture.VERSION) {
+                input.close();
+                return false;
+            }
+            input.readLong();
+        } catch (IOException e) {
+            if (input != null)
+                try {
+                    input.close();
+                } catch (IOException ignored) {
+                }
+            return false;
+        }
+        chunkOffset = 0;
+        chunkLength = 0;
+        isFinished = false;
+        startTime = System.nanoTime();
+        this.input = input;
+        return true;
+    }
+
+    @Override
+    boolean write(byte[] buffer, int offset, int length) {
+        if (input == null) return false;
+        writtenBytesCount.addAndGet(length);
+        return true;
+    }
+
+    @Override
+    int read(byte[] buffer, int offset, int length, long timeOutMilliSeconds) {
+        if (input == null) return 0;
+        try {
+            if (chunkOffset == chunkLength && !readNextInboundChunk()) {
+                Thread.sleep(timeOutMilliSeconds);
+                return 0;
+            }
+            if (isRealTime) {
+                long waitTime = (chunkTime * 1000 - (System.nanoTime() - startTime)) / 1000000;
+                if (waitTime > timeOutMilliSeconds) {
+                    Thread.sleep(timeOutMilliSeconds);
+                    return 0;
+                } else if (waitTime > 0) {
+                    Thread.sleep(waitTime);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        int readBytesLength = Math.min(length, chunkLength - chunkOffset);
+        System.arraycopy(chunk, chunkOffset, buffer, offset, readBytesLength);
+        chunkOffset += readBytesLength;
+        return readBytesLength;
+    }
+
+    private boolean readNextInboundChunk() {
+        DataInputStream input = this.input;
+        if (isFinished || input == null) return false;
+        try {
+            while (true) {
+                byte direction = input.readByte();
+                long time = readVarLong(input);
+                int length = (int) readVarLong(input);
+                if (direction != ConnectionCapture.INBOUND) {
+                    input.skipBytes(length);
+                    continue;
+                }
+                if (chunk.length < length) chunk = new byte[length];
+                input.readFully(chunk, 0, length);
+                chunkTime = time;
+                chunkOffset = 0;
+                chunkLength = length;
+                return true;
+            }
+        } catch (IOException e) {
+            // The end of the file, a truncated last record or a closed connection, the replay is over either way.
+            isFinished = true;
+            chunkOffset = 0;
+            chunkLength = 0;
+            return false;
+        }
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new EOFException("Malformed variable length integer.");
+    }
+
+    @Override
+    protected void onClose() {
+        DataInputStream input = this.input;
+        this.input = null;
+        if (input != null)
+            try {
+                input.close();
+            } catch (IOException ignored) {
+            }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the submitted tasks one at a time and in order on top of another, possibly shared, executor.
+ */
+class SerialExecutor implements Executor {
+    private final ArrayDeque<Runnable> tasks;
+    private final Executor executor;
+    private Runnable activeTask;
+
+    SerialExecutor(Executor executor) {
+        this.tasks = new ArrayDeque<>();
+        this.executor = executor;
+    }
+
+    @Override
+    public synchronized void execute(final Runnable task) {
+        tasks.offer(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext();
+                }
+            }
+        });
+        if (activeTask == null) {
+            scheduleNext();
+        }
+    }
+
+    synchronized void clear() {
+        tasks.clear();
+    }
+
+    private synchronized void scheduleNext() {
+        if ((activeTask = tasks.poll()) != null) {
+            executor.execute(activeTask);
+        }
+    }
+}
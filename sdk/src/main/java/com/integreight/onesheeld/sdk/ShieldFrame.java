@@ -16,23 +16,37 @@
 
 package com.integreight.onesheeld.sdk;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * Represents a shield frame with 1Sheeld protocol.
+ * <p>Frames passed to {@link OneSheeldDataCallback} are views over the sdk's receiving
+ * buffer and are only valid during the callback, use {@link #retain()} to keep one.</p>
  */
 public class ShieldFrame {
     static final byte START_OF_FRAME = (byte) 0xFF;
     static final byte END_OF_FRAME = (byte) 0x00;
+    private static final byte[] EMPTY_DATA = new byte[0];
+    private static final int[] EMPTY_INDEXES = new int[0];
+    private static final int MAX_POOL_SIZE = 50;
+    private static final Object poolLock = new Object();
+    private static ShieldFrame pool;
+    private static int poolSize = 0;
 
     private byte shieldId;
     private byte verificationByte;
     private byte functionId;
-    private ArrayList<byte[]> arguments;
+    private byte[] argumentsData;
+    private int argumentsDataLength;
+    private int[] argumentsOffsets;
+    private int[] argumentsLengths;
+    private int argumentsCount;
+    private boolean isView;
+    private boolean isRecycled;
+    private ShieldFrame nextInPool;
 
 
     /**
@@ -45,7 +59,7 @@ public class ShieldFrame {
         this.shieldId = shieldId;
         this.verificationByte = getNewVerificationByte();
         this.functionId = functionId;
-        arguments = new ArrayList<>();
+        clearArguments();
     }
 
     /**
@@ -57,7 +71,199 @@ public class ShieldFrame {
         this.shieldId = shieldId;
         this.verificationByte = getNewVerificationByte();
         this.functionId = 0;
-        arguments = new ArrayList<>();
+        clearArguments();
+    }
+
+    ShieldFrame() {
+        this.shieldId = 0;
+        this.verificationByte = 0;
+        this.functionId = 0;
+        clearArguments();
+    }
+
+    /**
+     * Gets a <tt>ShieldFrame</tt> from the global pool or a new one if the pool is empty.
+     * <p>Frames obtained this way reuse their arguments buffers, call {@link #recycle()}
+     * once the frame is sent to return it to the pool.</p>
+     *
+     * @param shieldId   the shield id
+     * @param functionId the function id
+     * @return an empty frame
+     */
+    public static ShieldFrame obtain(byte shieldId, byte functionId) {
+        ShieldFrame frame = null;
+        synchronized (poolLock) {
+            if (pool != null) {
+                frame = pool;
+                pool = frame.nextInPool;
+                frame.nextInPool = null;
+                poolSize--;
+            }
+        }
+        if (frame == null) return new ShieldFrame(shieldId, functionId);
+        frame.isRecycled = false;
+        frame.shieldId = shieldId;
+        frame.functionId = functionId;
+        frame.verificationByte = frame.getNewVerificationByte();
+        return frame;
+    }
+
+    /**
+     * Gets a <tt>ShieldFrame</tt> from the global pool or a new one if the pool is empty.
+     *
+     * @param shieldId the shield id
+     * @return an empty frame
+     * @see #obtain(byte, byte)
+     */
+    public static ShieldFrame obtain(byte shieldId) {
+        return obtain(shieldId, (byte) 0);
+    }
+
+    static ShieldFrame obtainCopyOf(ShieldFrame frame) {
+        ShieldFrame copy = obtain(frame.shieldId, frame.functionId);
+        copy.verificationByte = frame.verificationByte;
+        for (int i = 0; i < frame.argumentsCount; i++)
+            copy.appendArgument(frame.argumentsData, frame.argumentsOffsets[i], frame.argumentsLengths[i]);
+        return copy;
+    }
+
+    /**
+     * Returns this frame to the global pool so {@link #obtain(byte, byte)} can reuse it.
+     * <p>The frame must not be used after this call. The sdk copies any frame it needs
+     * to hold on to, so it is safe to recycle a frame right after sending it.</p>
+     * <p>Recycling a frame passed to a {@link OneSheeldDataCallback} has no effect.</p>
+     *
+     * @throws IllegalStateException if the frame is already recycled
+     */
+    public void recycle() {
+        if (isView) return;
+        if (isRecycled)
+            throw new IllegalStateException("The frame has already been recycled, have you recycled it twice?");
+        isRecycled = true;
+        argumentsCount = 0;
+        argumentsDataLength = 0;
+        synchronized (poolLock) {
+            if (poolSize < MAX_POOL_SIZE) {
+                nextInPool = pool;
+                pool = this;
+                poolSize++;
+            }
+        }
+    }
+
+    private void clearArguments() {
+        argumentsData = EMPTY_DATA;
+        argumentsDataLength = 0;
+        argumentsOffsets = EMPTY_INDEXES;
+        argumentsLengths = EMPTY_INDEXES;
+        argumentsCount = 0;
+        isView = false;
+    }
+
+    /**
+     * Points this frame at arguments that live in a buffer owned by someone else.
+     * <p>The arrays are referenced, not copied, and must not change while the view is in use.</p>
+     */
+    void setAsView(byte shieldId, byte verificationByte, byte functionId, byte[] argumentsData,
+                   int[] argumentsOffsets, int[] argumentsLengths, int argumentsCount) {
+        this.shieldId = shieldId;
+        this.verificationByte = verificationByte;
+        this.functionId = functionId;
+        this.argumentsData = argumentsData;
+        this.argumentsDataLength = argumentsData.length;
+        this.argumentsOffsets = argumentsOffsets;
+        this.argumentsLengths = argumentsLengths;
+        this.argumentsCount = argumentsCount;
+        this.isView = true;
+    }
+
+    /**
+     * Checks whether this frame is a view over a buffer owned by the sdk.
+     * <p>Views are only valid during the callback they were passed to.</p>
+     *
+     * @return the boolean
+     */
+    public boolean isView() {
+        return isView;
+    }
+
+    /**
+     * Gets a frame that stays valid after the current callback returns.
+     * <p>If this frame is a view, its arguments are copied into a new frame,
+     * otherwise this same frame is returned.</p>
+     *
+     * @return a frame that owns its arguments
+     */
+    public ShieldFrame retain() {
+        if (!isView) return this;
+        ShieldFrame frame = new ShieldFrame();
+        frame.shieldId = shieldId;
+        frame.verificationByte = verificationByte;
+        frame.functionId = functionId;
+        frame.copyArgumentsFrom(this);
+        return frame;
+    }
+
+    private void copyArgumentsFrom(ShieldFrame frame) {
+        int totalLength = 0;
+        for (int i = 0; i < frame.argumentsCount; i++)
+            totalLength += frame.argumentsLengths[i];
+        byte[] data = totalLength > 0 ? new byte[totalLength] : EMPTY_DATA;
+        int[] offsets = frame.argumentsCount > 0 ? new int[frame.argumentsCount] : EMPTY_INDEXES;
+        int[] lengths = frame.argumentsCount > 0 ? new int[frame.argumentsCount] : EMPTY_INDEXES;
+        int dataLength = 0;
+        for (int i = 0; i < frame.argumentsCount; i++) {
+            System.arraycopy(frame.argumentsData, frame.argumentsOffsets[i], data, dataLength, frame.argumentsLengths[i]);
+            offsets[i] = dataLength;
+            lengths[i] = frame.argumentsLengths[i];
+            dataLength += lengths[i];
+        }
+        argumentsData = data;
+        argumentsDataLength = dataLength;
+        argumentsOffsets = offsets;
+        argumentsLengths = lengths;
+        argumentsCount = frame.argumentsCount;
+        isView = false;
+    }
+
+    private void ensureArgumentCapacity(int length) {
+        if (isView) copyArgumentsFrom(this);
+        if (argumentsCount == argumentsOffsets.length) {
+            int newCapacity = Math.max(4, argumentsOffsets.length * 2);
+            int[] offsets = new int[newCapacity];
+            int[] lengths = new int[newCapacity];
+            System.arraycopy(argumentsOffsets, 0, offsets, 0, argumentsCount);
+            System.arraycopy(argumentsLengths, 0, lengths, 0, argumentsCount);
+            argumentsOffsets = offsets;
+            argumentsLengths = lengths;
+        }
+        if (argumentsDataLength + length > argumentsData.length) {
+            byte[] data = new byte[Math.max(argumentsDataLength + length, Math.max(16, argumentsData.length * 2))];
+            System.arraycopy(argumentsData, 0, data, 0, argumentsDataLength);
+            argumentsData = data;
+        }
+    }
+
+    private void appendArgument(byte[] source, int offset, int length) {
+        ensureArgumentCapacity(length);
+        System.arraycopy(source, offset, argumentsData, argumentsDataLength, length);
+        argumentsOffsets[argumentsCount] = argumentsDataLength;
+        argumentsLengths[argumentsCount] = length;
+        argumentsDataLength += length;
+        argumentsCount++;
+    }
+
+    private void appendArgument(byte first, byte second, byte third, byte fourth, int length) {
+        ensureArgumentCapacity(length);
+        int offset = argumentsDataLength;
+        argumentsData[offset] = first;
+        if (length > 1) argumentsData[offset + 1] = second;
+        if (length > 2) argumentsData[offset + 2] = third;
+        if (length > 3) argumentsData[offset + 3] = fourth;
+        argumentsOffsets[argumentsCount] = offset;
+        argumentsLengths[argumentsCount] = length;
+        argumentsDataLength += length;
+        argumentsCount++;
     }
 
     /**
@@ -80,24 +286,62 @@ public class ShieldFrame {
     }
 
     /**
-     * Gets a list of all arguments.
+     * Gets a list of copies of all arguments.
      *
      * @return the arguments
      */
     public List<byte[]> getArguments() {
+        ArrayList<byte[]> arguments = new ArrayList<>(argumentsCount);
+        for (int i = 0; i < argumentsCount; i++)
+            arguments.add(getArgument(i));
         return arguments;
     }
 
+    byte[] getArgumentsData() {
+        return argumentsData;
+    }
+
+    int getArgumentOffset(int argNo) {
+        return argumentsOffsets[argNo];
+    }
+
+    void addArgument(byte[] source, int offset, int length) {
+        appendArgument(source, offset, (length > 255) ? 255 : length);
+    }
+
     /**
-     * Gets a specific argument.
+     * Gets the number of arguments.
+     *
+     * @return the number of arguments
+     */
+    public int getArgumentsCount() {
+        return argumentsCount;
+    }
+
+    /**
+     * Gets the length of a specific argument.
+     *
+     * @param argNo the argument number
+     * @return the length or -1 if the argument is not found.
+     */
+    public int getArgumentLength(int argNo) {
+        if (argNo < 0 || argNo >= argumentsCount)
+            return -1;
+        return argumentsLengths[argNo];
+    }
+
+    /**
+     * Gets a copy of a specific argument.
      *
      * @param argNo the argument number
      * @return a byte array or null if the argument is not found.
      */
     public byte[] getArgument(int argNo) {
-        if (argNo < 0 || argNo >= arguments.size())
+        if (argNo < 0 || argNo >= argumentsCount)
             return null;
-        return arguments.get(argNo);
+        byte[] argument = new byte[argumentsLengths[argNo]];
+        System.arraycopy(argumentsData, argumentsOffsets[argNo], argument, 0, argument.length);
+        return argument;
     }
 
     /**
@@ -107,9 +351,9 @@ public class ShieldFrame {
      * @return a string or null if the argument is not found.
      */
     public String getArgumentAsString(int argNo) {
-        if (argNo < 0 || argNo >= arguments.size())
+        if (argNo < 0 || argNo >= argumentsCount)
             return null;
-        return new String(arguments.get(argNo));
+        return new String(argumentsData, argumentsOffsets[argNo], argumentsLengths[argNo]);
     }
 
     /**
@@ -119,11 +363,12 @@ public class ShieldFrame {
      * @return the argument as integer or 0 if the argument is not found or the arguments bytes is larger than 4.
      */
     public int getArgumentAsInteger(int argNo) {
-        if (argNo < 0 || argNo >= arguments.size() || arguments.get(argNo).length > 4)
+        if (argNo < 0 || argNo >= argumentsCount || argumentsLengths[argNo] > 4)
             return 0;
+        int offset = argumentsOffsets[argNo];
         int value = 0;
-        for (int i = 0; i < arguments.get(argNo).length; i++) {
-            value |= ((arguments.get(argNo)[i] << (8 * i)) & ((0xFF) << (8 * i)));
+        for (int i = 0; i < argumentsLengths[argNo]; i++) {
+            value |= ((argumentsData[offset + i] << (8 * i)) & ((0xFF) << (8 * i)));
         }
         return value;
     }
@@ -135,15 +380,9 @@ public class ShieldFrame {
      * @return the argument as float or 0 if the argument is not found or the arguments bytes != 4.
      */
     public float getArgumentAsFloat(int argNo) {
-        if (argNo < 0 || argNo >= arguments.size() || arguments.get(argNo).length != 4)
+        if (argNo < 0 || argNo >= argumentsCount || argumentsLengths[argNo] != 4)
             return 0;
-        byte[] b = getArgument(argNo);
-        for (int i = 0; i < b.length / 2; i++) {
-            byte temp = b[i];
-            b[i] = b[b.length - i - 1];
-            b[b.length - i - 1] = temp;
-        }
-        return ByteBuffer.wrap(b).getFloat();
+        return Float.intBitsToFloat(getArgumentAsInteger(argNo));
     }
 
     /**
@@ -155,7 +394,7 @@ public class ShieldFrame {
     public void addArgument(byte[] argument) {
         if (argument == null)
             throw new NullPointerException("The passed argument is null, have you checked its validity?");
-        arguments.add(Arrays.copyOfRange(argument, 0, (argument.length > 255) ? 255 : argument.length));
+        appendArgument(argument, 0, (argument.length > 255) ? 255 : argument.length);
     }
 
     /**
@@ -164,7 +403,7 @@ public class ShieldFrame {
      * @param data the data
      */
     public void addArgument(byte data) {
-        arguments.add(new byte[]{data});
+        appendArgument(data, (byte) 0, (byte) 0, (byte) 0, 1);
     }
 
     /**
@@ -173,7 +412,7 @@ public class ShieldFrame {
      * @param data the data
      */
     public void addArgument(char data) {
-        arguments.add(new byte[]{(byte) data});
+        appendArgument((byte) data, (byte) 0, (byte) 0, (byte) 0, 1);
     }
 
     /**
@@ -182,7 +421,7 @@ public class ShieldFrame {
      * @param data the data
      */
     public void addArgument(boolean data) {
-        arguments.add(new byte[]{(byte) (data ? 1 : 0)});
+        appendArgument((byte) (data ? 1 : 0), (byte) 0, (byte) 0, (byte) 0, 1);
     }
 
     /**
@@ -192,24 +431,8 @@ public class ShieldFrame {
      * @param data  the data
      */
     public void addArgument(int bytes, int data) {
-        switch (bytes) {
-            case 0:
-                return;
-            case 1:
-                arguments.add(new byte[]{(byte) data});
-                break;
-            case 2:
-                arguments.add(new byte[]{(byte) data, (byte) (data >> 8)});
-                break;
-            case 3:
-                arguments.add(new byte[]{(byte) data, (byte) (data >> 8),
-                        (byte) (data >> 16)});
-                break;
-            case 4:
-                arguments.add(new byte[]{(byte) data, (byte) (data >> 8),
-                        (byte) (data >> 16), (byte) (data >>> 24)});
-                break;
-        }
+        if (bytes < 1 || bytes > 4) return;
+        appendArgument((byte) data, (byte) (data >> 8), (byte) (data >> 16), (byte) (data >>> 24), bytes);
     }
 
     /**
@@ -218,9 +441,8 @@ public class ShieldFrame {
      * @param floatNumber the float number
      */
     public void addArgument(float floatNumber) {
-        byte[] data = ByteBuffer.allocate(4).putFloat(floatNumber).array();
-        arguments.add(new byte[]{data[3], data[2], data[1], data[0]});
-
+        int data = Float.floatToRawIntBits(floatNumber);
+        appendArgument((byte) data, (byte) (data >> 8), (byte) (data >> 16), (byte) (data >>> 24), 4);
     }
 
     /**
@@ -232,8 +454,25 @@ public class ShieldFrame {
     public void addArgument(String data) {
         if (data == null)
             throw new NullPointerException("The passed string is null, have you checked its validity?");
-        String temp = (data.length() > 255) ? data.substring(0, 255) : data;
-        arguments.add(temp.getBytes(Charset.forName("US-ASCII")));
+        int length = (data.length() > 255) ? 255 : data.length();
+        ensureArgumentCapacity(length);
+        int offset = argumentsDataLength;
+        int written = 0;
+        for (int i = 0; i < length; i++) {
+            char character = data.charAt(i);
+            if (character < 128) {
+                argumentsData[offset + written++] = (byte) character;
+            } else {
+                // Same as encoding with US-ASCII, a surrogate pair becomes a single '?'.
+                argumentsData[offset + written++] = (byte) '?';
+                if (Character.isHighSurrogate(character) && i + 1 < length && Character.isLowSurrogate(data.charAt(i + 1)))
+                    i++;
+            }
+        }
+        argumentsOffsets[argumentsCount] = offset;
+        argumentsLengths[argumentsCount] = written;
+        argumentsDataLength += written;
+        argumentsCount++;
     }
 
     /**
@@ -257,29 +496,85 @@ public class ShieldFrame {
      * @return a raw byte array
      */
     public byte[] getAllFrameAsBytes() {
+        byte[] data = new byte[getFrameSize()];
+        writeTo(data, 0);
+        return data;
+    }
+
+    /**
+     * Gets the number of bytes the raw frame takes.
+     *
+     * @return the size of the raw frame
+     */
+    public int getFrameSize() {
+        return 7 + argumentsCount * 2 + argumentsDataLengthInUse();
+    }
+
+    private int argumentsDataLengthInUse() {
+        if (!isView) return argumentsDataLength;
         int totalSizeOfArguments = 0;
-        for (byte[] argument : arguments) {
-            totalSizeOfArguments += argument.length;
+        for (int i = 0; i < argumentsCount; i++) {
+            totalSizeOfArguments += argumentsLengths[i];
         }
-        int frameSize = 7 + arguments.size() * 2 + totalSizeOfArguments;
-        byte[] data = new byte[frameSize];
-        data[0] = START_OF_FRAME;
-        data[1] = shieldId;
-        data[2] = verificationByte;
-        data[3] = functionId;
-        data[4] = (byte) arguments.size();
-        data[5] = (byte) (255 - arguments.size());
-
-        for (int i = 0, j = 6; i < arguments.size(); i++) {
-            data[j] = (byte) arguments.get(i).length;
-            data[j + 1] = (byte) (255 - arguments.get(i).length);
-            for (int k = 0; k < arguments.get(i).length; k++) {
-                data[j + k + 2] = arguments.get(i)[k];
-            }
-            j += arguments.get(i).length + 2;
+        return totalSizeOfArguments;
+    }
+
+    /**
+     * Writes the raw frame into a byte array.
+     *
+     * @param buffer the destination array
+     * @param offset where the frame should start in the array
+     * @return the number of bytes written
+     * @throws NullPointerException     if the passed buffer is null
+     * @throws IllegalArgumentException if the frame doesn't fit in the buffer
+     */
+    public int writeTo(byte[] buffer, int offset) {
+        if (buffer == null)
+            throw new NullPointerException("The passed buffer is null, have you checked its validity?");
+        int frameSize = getFrameSize();
+        if (offset < 0 || offset + frameSize > buffer.length)
+            throw new IllegalArgumentException("The passed buffer doesn't have enough space for the frame, have you checked its size?");
+        buffer[offset] = START_OF_FRAME;
+        buffer[offset + 1] = shieldId;
+        buffer[offset + 2] = verificationByte;
+        buffer[offset + 3] = functionId;
+        buffer[offset + 4] = (byte) argumentsCount;
+        buffer[offset + 5] = (byte) (255 - argumentsCount);
+
+        for (int i = 0, j = offset + 6; i < argumentsCount; i++) {
+            buffer[j] = (byte) argumentsLengths[i];
+            buffer[j + 1] = (byte) (255 - argumentsLengths[i]);
+            System.arraycopy(argumentsData, argumentsOffsets[i], buffer, j + 2, argumentsLengths[i]);
+            j += argumentsLengths[i] + 2;
         }
-        data[frameSize - 1] = END_OF_FRAME;
-        return data;
+        buffer[offset + frameSize - 1] = END_OF_FRAME;
+        return frameSize;
+    }
+
+    /**
+     * Writes the raw frame into a <tt>ByteBuffer</tt> at its current position.
+     *
+     * @param buffer the destination buffer
+     * @throws NullPointerException    if the passed buffer is null
+     * @throws BufferOverflowException if the frame doesn't fit in the buffer
+     */
+    public void writeTo(ByteBuffer buffer) {
+        if (buffer == null)
+            throw new NullPointerException("The passed buffer is null, have you checked its validity?");
+        if (buffer.remaining() < getFrameSize())
+            throw new BufferOverflowException();
+        buffer.put(START_OF_FRAME);
+        buffer.put(shieldId);
+        buffer.put(verificationByte);
+        buffer.put(functionId);
+        buffer.put((byte) argumentsCount);
+        buffer.put((byte) (255 - argumentsCount));
+        for (int i = 0; i < argumentsCount; i++) {
+            buffer.put((byte) argumentsLengths[i]);
+            buffer.put((byte) (255 - argumentsLengths[i]));
+            buffer.put(argumentsData, argumentsOffsets[i], argumentsLengths[i]);
+        }
+        buffer.put(END_OF_FRAME);
     }
 
 }
@@ -0,0 +1,199 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * A resumable decoder that rebuilds {@link ShieldFrame}s from the serial byte stream.
+ * <p>Bytes are pushed in whatever chunks they arrive in, the arguments are kept in a
+ * reusable buffer and every decoded frame is passed to the listener as a view over it,
+ * so decoding a frame allocates nothing once the buffers have grown to size.</p>
+ */
+class ShieldFrameDecoder {
+    private static final int WAITING_START_OF_FRAME = 0;
+    private static final int READING_LIBRARY_VERSION = 1;
+    private static final int READING_SHIELD_ID = 2;
+    private static final int READING_VERIFICATION_BYTE = 3;
+    private static final int READING_FUNCTION_ID = 4;
+    private static final int READING_ARGUMENTS_NUMBER = 5;
+    private static final int READING_ARGUMENTS_NUMBER_VERIFICATION = 6;
+    private static final int READING_ARGUMENT_LENGTH = 7;
+    private static final int READING_ARGUMENT_LENGTH_VERIFICATION = 8;
+    private static final int READING_ARGUMENT_DATA = 9;
+    private static final int READING_END_OF_FRAME = 10;
+    private static final int MAX_ARGUMENTS_NUMBER = 255;
+
+    private final Listener listener;
+    private final boolean hasLibraryVersion;
+    private final long timeOutNanoSeconds;
+    private final ShieldFrame frame;
+    private final int[] argumentsOffsets;
+    private final int[] argumentsLengths;
+    private byte[] argumentsData;
+    private int argumentsDataLength;
+    private int state;
+    private long lastChunkTime;
+    private long frameStartTime;
+    private int libraryVersion;
+    private byte shieldId;
+    private byte verificationByte;
+    private byte functionId;
+    private int argumentsNumber;
+    private int argumentsRead;
+    private int argumentLength;
+    private int argumentBytesLeft;
+
+    ShieldFrameDecoder(long timeOutMilliSeconds, Listener listener) {
+        this(timeOutMilliSeconds, true, listener);
+    }
+
+    /**
+     * @param hasLibraryVersion whether the frames carry the Arduino library version after
+     *                          their start byte, the frames the board sends do while the
+     *                          frames sent to the board don't
+     */
+    ShieldFrameDecoder(long timeOutMilliSeconds, boolean hasLibraryVersion, Listener listener) {
+        this.listener = listener;
+        this.hasLibraryVersion = hasLibraryVersion;
+        this.timeOutNanoSeconds = timeOutMilliSeconds * 1000000L;
+        this.frame = new ShieldFrame();
+        this.argumentsOffsets = new int[MAX_ARGUMENTS_NUMBER];
+        this.argumentsLengths = new int[MAX_ARGUMENTS_NUMBER];
+        this.argumentsData = new byte[256];
+        reset();
+    }
+
+    void reset() {
+        state = WAITING_START_OF_FRAME;
+        argumentsDataLength = 0;
+        argumentsRead = 0;
+    }
+
+    boolean isInTheMiddleOfFrame() {
+        return state != WAITING_START_OF_FRAME;
+    }
+
+    void decode(byte[] data, int offset, int length) {
+        long now = System.nanoTime();
+        if (state != WAITING_START_OF_FRAME && now - lastChunkTime > timeOutNanoSeconds)
+            reject(FrameRejection.TIME_OUT);
+        lastChunkTime = now;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            decode(data[i]);
+        }
+    }
+
+    private void decode(byte inputData) {
+        switch (state) {
+            case WAITING_START_OF_FRAME:
+                if (inputData == ShieldFrame.START_OF_FRAME) {
+                    frameStartTime = lastChunkTime;
+                    argumentsDataLength = 0;
+                    argumentsRead = 0;
+                    libraryVersion = 0;
+                    state = hasLibraryVersion ? READING_LIBRARY_VERSION : READING_SHIELD_ID;
+                }
+                break;
+            case READING_LIBRARY_VERSION:
+                libraryVersion = inputData;
+                state = READING_SHIELD_ID;
+                break;
+            case READING_SHIELD_ID:
+                shieldId = inputData;
+                state = READING_VERIFICATION_BYTE;
+                break;
+            case READING_VERIFICATION_BYTE:
+                verificationByte = inputData;
+                if ((((verificationByte & 0xF0) >> 4) & (verificationByte & 0x0F)) != 0)
+                    reject(FrameRejection.VERIFICATION_BYTE);
+                else
+                    state = READING_FUNCTION_ID;
+                break;
+            case READING_FUNCTION_ID:
+                functionId = inputData;
+                state = READING_ARGUMENTS_NUMBER;
+                break;
+            case READING_ARGUMENTS_NUMBER:
+                argumentsNumber = inputData & 0xFF;
+                state = READING_ARGUMENTS_NUMBER_VERIFICATION;
+                break;
+            case READING_ARGUMENTS_NUMBER_VERIFICATION:
+                if (argumentsNumber != (255 - (inputData & 0xFF)))
+                    reject(FrameRejection.ARGUMENTS_NUMBER);
+                else
+                    state = argumentsNumber > 0 ? READING_ARGUMENT_LENGTH : READING_END_OF_FRAME;
+                break;
+            case READING_ARGUMENT_LENGTH:
+                argumentLength = inputData & 0xFF;
+                state = READING_ARGUMENT_LENGTH_VERIFICATION;
+                break;
+            case READING_ARGUMENT_LENGTH_VERIFICATION:
+                if (argumentLength != (255 - (inputData & 0xFF)) || argumentLength <= 0) {
+                    reject(FrameRejection.ARGUMENT_LENGTH);
+                } else {
+                    ensureArgumentsDataCapacity(argumentLength);
+                    argumentsOffsets[argumentsRead] = argumentsDataLength;
+                    argumentsLengths[argumentsRead] = argumentLength;
+                    argumentBytesLeft = argumentLength;
+                    state = READING_ARGUMENT_DATA;
+                }
+                break;
+            case READING_ARGUMENT_DATA:
+                argumentsData[argumentsDataLength++] = inputData;
+                argumentBytesLeft--;
+                if (argumentBytesLeft == 0) {
+                    argumentsRead++;
+                    state = argumentsRead < argumentsNumber ? READING_ARGUMENT_LENGTH : READING_END_OF_FRAME;
+                }
+                break;
+            case READING_END_OF_FRAME:
+                if (inputData != ShieldFrame.END_OF_FRAME) {
+                    reject(FrameRejection.END_OF_FRAME);
+                } else {
+                    state = WAITING_START_OF_FRAME;
+                    frame.setAsView(shieldId, verificationByte, functionId, argumentsData,
+                            argumentsOffsets, argumentsLengths, argumentsRead);
+                    listener.onFrameDecode(frame, libraryVersion, frameStartTime);
+                }
+                break;
+        }
+    }
+
+    private void ensureArgumentsDataCapacity(int length) {
+        if (argumentsDataLength + length > argumentsData.length) {
+            byte[] data = new byte[Math.max(argumentsDataLength + length, argumentsData.length * 2)];
+            System.arraycopy(argumentsData, 0, data, 0, argumentsDataLength);
+            argumentsData = data;
+        }
+    }
+
+    private void reject(FrameRejection rejection) {
+        reset();
+        listener.onFrameReject(rejection);
+    }
+
+    interface Listener {
+        /**
+         * Gets called for every complete frame, the frame is a view that is only valid during the call.
+         *
+         * @param frameStartTime the {@link System#nanoTime()} at which the chunk holding the start of the frame was pushed
+         */
+        void onFrameDecode(ShieldFrame frame, int libraryVersion, long frameStartTime);
+
+        void onFrameReject(FrameRejection rejection);
+    }
+}
@@ -0,0 +1,645 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An in-process stand in for a 1Sheeld board that speaks the Firmata and shield frames protocols.
+ * <p>It is attached to a device through a {@link SimulatedConnection} so that the whole pipeline
+ * of the device, its threads, buffers, parsers and callbacks, can be driven on a plain JVM without
+ * a board or a Bluetooth stack, from unit tests, load tests and benchmarks alike.</p>
+ * <p>The board answers the queries the device sends once connected, the firmware version, the
+ * library version and the baud rate ones, counts the frames and serial data it receives and can
+ * echo the serial data back. It can also send callback entered/exited frames, is alive pings and
+ * periodic streams of sensor frames. The bytes it sends can be delayed by a fixed latency and a
+ * ratio of its messages can be dropped to mimic a lossy link.</p>
+ */
+class SimulatedBoard {
+    static final int DEFAULT_OUTPUT_BUFFER_CAPACITY = 64 * 1024;
+    private static final int MAX_PENDING_RELEASES = 1024;
+    private static final int MAX_SYSEX_DATA_LENGTH = 4096;
+    private static final long FRAME_TIME_OUT = 3000;
+    private static final int DIGITAL_MESSAGE = 0x90;
+    private static final int ANALOG_MESSAGE = 0xE0;
+    private static final int REPORT_ANALOG = 0xC0;
+    private static final int REPORT_DIGITAL = 0xD0;
+    private static final int SET_PIN_MODE = 0xF4;
+    private static final int SET_DIGITAL_PIN_VALUE = 0xF5;
+    private static final int REPORT_VERSION = 0xF9;
+    private static final int START_SYSEX = 0xF0;
+    private static final byte END_SYSEX = (byte) 0xF7;
+    private static final byte QUERY_BAUD_RATE = (byte) 0x5C;
+    private static final byte IS_ALIVE = (byte) 0x62;
+    private static final byte SERIAL_DATA = (byte) 0x66;
+    private static final byte BAUD_RATE_115200 = (byte) 0x07;
+    private static final byte CONFIGURATION_SHIELD_ID = (byte) 0x00;
+    private static final byte QUERY_LIBRARY_VERSION = (byte) 0x03;
+    private static final byte LIBRARY_VERSION_RESPONSE = (byte) 0x01;
+    private static final byte IS_CALLBACK_ENTERED = (byte) 0x03;
+    private static final byte IS_CALLBACK_EXITED = (byte) 0x04;
+    private static final byte[] EMPTY_DATA = new byte[0];
+
+    private final Object outputLock = new Object();
+    private final Object sendingLock = new Object();
+    private final Object receivingLock = new Object();
+    private final Object streamsLock = new Object();
+    private final byte[] output;
+    private final long[] releaseTimes;
+    private final long[] releasePositions;
+    private int releasesHead;
+    private int releasesCount;
+    private long writtenPosition;
+    private long releasedPosition;
+    private long readPosition;
+    private volatile boolean isAttached;
+    private final SysexEncoder encoder;
+    private final Random random;
+    private final byte[] sysexData;
+    private int sysexLength;
+    private boolean isParsingSysex;
+    private int dataBytesLeft;
+    private final ShieldFrameDecoder frameDecoder;
+    private ScheduledExecutorService streamsExecutor;
+    private volatile int majorVersion;
+    private volatile int minorVersion;
+    private volatile int libraryVersion;
+    private volatile long latencyNanoSeconds;
+    private volatile double lossRate;
+    private volatile boolean isSerialEchoEnabled;
+    private final AtomicLong receivedFramesCount = new AtomicLong();
+    private final AtomicLongArray receivedShieldFramesCounts = new AtomicLongArray(256);
+    private final AtomicLong rejectedFramesCount = new AtomicLong();
+    private final AtomicLong receivedSerialBytesCount = new AtomicLong();
+    private final AtomicLong receivedIsAliveCount = new AtomicLong();
+    private final AtomicLong sentBytesCount = new AtomicLong();
+    private final AtomicLong droppedMessagesCount = new AtomicLong();
+    private final AtomicLong interleavedMessagesCount = new AtomicLong();
+
+    SimulatedBoard() {
+        this(DEFAULT_OUTPUT_BUFFER_CAPACITY, 0);
+    }
+
+    /**
+     * @param outputBufferCapacity the number of sent bytes the board holds until they are read, it
+     *                             waits for the device to read some once they fill up
+     * @param randomSeed           the seed deciding which messages get dropped, so that lossy
+     *                             runs can be reproduced
+     */
+    SimulatedBoard(int outputBufferCapacity, long randomSeed) {
+        if (outputBufferCapacity < SysexEncoder.MAX_SYSEX_LENGTH)
+            throw new IllegalArgumentException("The output buffer capacity should be at least " + SysexEncoder.MAX_SYSEX_LENGTH + " bytes.");
+        this.output = new byte[outputBufferCapacity];
+        this.releaseTimes = new long[MAX_PENDING_RELEASES];
+        this.releasePositions = new long[MAX_PENDING_RELEASES];
+        this.encoder = new SysexEncoder(256);
+        this.random = new Random(randomSeed);
+        this.sysexData = new byte[MAX_SYSEX_DATA_LENGTH];
+        this.frameDecoder = new ShieldFrameDecoder(FRAME_TIME_OUT, false, new ShieldFrameDecoder.Listener() {
+            @Override
+            public void onFrameDecode(ShieldFrame frame, int libraryVersion, long frameStartTime) {
+                onFrameReceive(frame);
+            }
+
+            @Override
+            public void onFrameReject(FrameRejection rejection) {
+                rejectedFramesCount.incrementAndGet();
+            }
+        });
+        this.majorVersion = 1;
+        this.minorVersion = 7;
+        this.libraryVersion = 11;
+        this.latencyNanoSeconds = 0;
+        this.lossRate = 0;
+        this.isSerialEchoEnabled = false;
+    }
+
+    /**
+     * Connects the passed device to the board.
+     * <p>The connection is handed to the device the same way the manager hands it the
+     * Bluetooth ones, the connection callbacks of the device get called once it is ready.</p>
+     *
+     * @param device the device
+     * @return the connection, it is closed when the device disconnects
+     * @throws NullPointerException if the passed device is null
+     */
+    SimulatedConnection connect(OneSheeldDevice device) {
+        if (device == null)
+            throw new NullPointerException("The passed device is null, have you checked its validity?");
+        SimulatedConnection connection = new SimulatedConnection(device, this);
+        device.connect(connection);
+        return connection;
+    }
+
+    boolean attach() {
+        synchronized (outputLock) {
+            if (isAttached) return false;
+            writtenPosition = 0;
+            releasedPosition = 0;
+            readPosition = 0;
+            releasesHead = 0;
+            releasesCount = 0;
+            isAttached = true;
+            outputLock.notifyAll();
+        }
+        synchronized (receivingLock) {
+            isParsingSysex = false;
+            sysexLength = 0;
+            dataBytesLeft = 0;
+            frameDecoder.reset();
+        }
+        return true;
+    }
+
+    void detach() {
+        synchronized (outputLock) {
+            isAttached = false;
+            outputLock.notifyAll();
+        }
+    }
+
+    boolean isAttached() {
+        return isAttached;
+    }
+
+    /**
+     * Feeds the board with bytes sent by the device.
+     *
+     * @return false if the board isn't attached
+     */
+    boolean receive(byte[] data, int offset, int length) {
+        synchronized (receivingLock) {
+            if (!isAttached) return false;
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                parse(data[i]);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads the bytes the board sent once their latency has elapsed, with the same
+     * semantics as {@link OneSheeldConnection#read(byte[], int, int, long)}.
+     */
+    int read(byte[] buffer, int offset, int length, long timeOutMilliSeconds) {
+        if (length <= 0) return 0;
+        long deadline = System.nanoTime() + timeOutMilliSeconds * 1000000L;
+        synchronized (outputLock) {
+            while (isAttached) {
+                long now = System.nanoTime();
+                while (releasesCount > 0 && releaseTimes[releasesHead] - now <= 0) {
+                    releasedPosition = releasePositions[releasesHead];
+                    releasesHead = (releasesHead + 1) % MAX_PENDING_RELEASES;
+                    releasesCount--;
+                }
+                int available = (int) (releasedPosition - readPosition);
+                if (available > 0) {
+                    int count = Math.min(length, available);
+                    int readIndex = (int) (readPosition % output.length);
+                    int firstPart = Math.min(count, output.length - readIndex);
+                    System.arraycopy(output, readIndex, buffer, offset, firstPart);
+                    if (count > firstPart)
+                        System.arraycopy(output, 0, buffer, offset + firstPart, count - firstPart);
+                    readPosition += count;
+                    outputLock.notifyAll();
+                    return count;
+                }
+                long waitTime = deadline - now;
+                if (waitTime <= 0) return 0;
+                if (releasesCount > 0)
+                    waitTime = Math.min(waitTime, releaseTimes[releasesHead] - now);
+                try {
+                    outputLock.wait(waitTime / 1000000L, (int) (waitTime % 1000000L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Sets the firmware version the board replies with.
+     */
+    void setFirmwareVersion(int majorVersion, int minorVersion) {
+        this.majorVersion = majorVersion & 0x7F;
+        this.minorVersion = minorVersion & 0x7F;
+    }
+
+    /**
+     * Sets the Arduino library version carried by the frames the board sends.
+     */
+    void setLibraryVersion(int libraryVersion) {
+        this.libraryVersion = libraryVersion & 0xFF;
+    }
+
+    /**
+     * Sets the time every sent byte takes to become readable by the device.
+     */
+    void setLatency(long latencyMicroSeconds) {
+        if (latencyMicroSeconds < 0)
+            throw new IllegalArgumentException("The latency shouldn't be negative.");
+        this.latencyNanoSeconds = latencyMicroSeconds * 1000L;
+    }
+
+    /**
+     * Sets the ratio of the sent messages that get dropped, a frame spanning several
+     * serial data messages arrives broken if any of them is dropped.
+     *
+     * @param lossRate a ratio between 0 and 1
+     */
+    void setLossRate(double lossRate) {
+        if (lossRate < 0 || lossRate > 1)
+            throw new IllegalArgumentException("The loss rate should be between 0 and 1.");
+        this.lossRate = lossRate;
+    }
+
+    /**
+     * Sets whether the serial data received from the device gets sent back as it is.
+     */
+    void setSerialEchoEnabled(boolean isSerialEchoEnabled) {
+        this.isSerialEchoEnabled = isSerialEchoEnabled;
+    }
+
+    /**
+     * Sends a frame to the device.
+     *
+     * @return false if the board isn't attached
+     * @throws NullPointerException if the passed frame is null
+     */
+    boolean sendFrame(ShieldFrame frame) {
+        return sendFrames(frame, 1);
+    }
+
+    /**
+     * Sends the same frame to the device a number of times back to back, the frame is
+     * encoded once so the board costs next to nothing while flooding the device.
+     *
+     * @return false if the board got detached before all of the frames were sent
+     * @throws NullPointerException if the passed frame is null
+     */
+    boolean sendFrames(ShieldFrame frame, int count) {
+        byte[] encodedFrame = encodeFrame(frame);
+        for (int i = 0; i < count; i++) {
+            if (!sendEncoded(encodedFrame)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sends raw serial data to the device as Firmata serial data messages.
+     *
+     * @return false if the board isn't attached
+     * @throws NullPointerException if the passed data array is null
+     */
+    boolean sendSerialData(byte[] data) {
+        if (data == null)
+            throw new NullPointerException("The passed data array is null, have you checked its validity?");
+        synchronized (sendingLock) {
+            encoder.reset();
+            appendSerialData(data, 0, data.length);
+            return sendMessages(encoder.getBuffer(), encoder.size());
+        }
+    }
+
+    /**
+     * Sends the frame that tells the device the Arduino entered one of its callbacks.
+     */
+    boolean enterCallback() {
+        return sendConfigurationFrame(IS_CALLBACK_ENTERED);
+    }
+
+    /**
+     * Sends the frame that tells the device the Arduino exited its callbacks.
+     */
+    boolean exitCallback() {
+        return sendConfigurationFrame(IS_CALLBACK_EXITED);
+    }
+
+    /**
+     * Pings the device, it replies back with an is alive message of its own.
+     */
+    boolean sendIsAlive() {
+        synchronized (sendingLock) {
+            encoder.reset();
+            encoder.appendSysex(IS_ALIVE, EMPTY_DATA, 0, 0);
+            return sendMessages(encoder.getBuffer(), encoder.size());
+        }
+    }
+
+    /**
+     * Starts sending the passed frame to the device periodically, like a sensor shield would.
+     * <p>The frame is encoded once when the stream starts, later changes to it don't affect
+     * the stream. The sending stops silently while the board is detached.</p>
+     *
+     * @throws NullPointerException if the passed frame is null
+     */
+    void startFrameStream(ShieldFrame frame, long periodMicroSeconds) {
+        if (periodMicroSeconds <= 0)
+            throw new IllegalArgumentException("The stream period should be positive.");
+        final byte[] encodedFrame = encodeFrame(frame);
+        synchronized (streamsLock) {
+            if (streamsExecutor == null) {
+                streamsExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "SimulatedBoardStream: " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            streamsExecutor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    if (isAttached) sendEncoded(encodedFrame);
+                }
+            }, periodMicroSeconds, periodMicroSeconds, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    /**
+     * Stops all of the frame streams.
+     */
+    void stopFrameStreams() {
+        synchronized (streamsLock) {
+            if (streamsExecutor != null) {
+                streamsExecutor.shutdownNow();
+                streamsExecutor = null;
+            }
+        }
+    }
+
+    long getReceivedFramesCount() {
+        return receivedFramesCount.get();
+    }
+
+    long getReceivedFramesCount(byte shieldId) {
+        return receivedShieldFramesCounts.get(shieldId & 0xFF);
+    }
+
+    long getRejectedFramesCount() {
+        return rejectedFramesCount.get();
+    }
+
+    long getReceivedSerialBytesCount() {
+        return receivedSerialBytesCount.get();
+    }
+
+    long getReceivedIsAliveCount() {
+        return receivedIsAliveCount.get();
+    }
+
+    long getSentBytesCount() {
+        return sentBytesCount.get();
+    }
+
+    long getDroppedMessagesCount() {
+        return droppedMessagesCount.get();
+    }
+
+    /**
+     * Gets the number of messages the device started in the middle of a sysex, a control
+     * message written between the pieces of a bulk write for example.
+     */
+    long getInterleavedMessagesCount() {
+        return interleavedMessagesCount.get();
+    }
+
+    void resetCounters() {
+        receivedFramesCount.set(0);
+        for (int i = 0; i < receivedShieldFramesCounts.length(); i++)
+            receivedShieldFramesCounts.set(i, 0);
+        rejectedFramesCount.set(0);
+        receivedSerialBytesCount.set(0);
+        receivedIsAliveCount.set(0);
+        sentBytesCount.set(0);
+        droppedMessagesCount.set(0);
+        interleavedMessagesCount.set(0);
+    }
+
+    private void parse(byte inputData) {
+        if (isParsingSysex) {
+            if (inputData == END_SYSEX) {
+                isParsingSysex = false;
+                onSysex();
+                return;
+            } else if ((inputData & 0x80) == 0) {
+                if (sysexLength < sysexData.length)
+                    sysexData[sysexLength++] = inputData;
+                return;
+            }
+            // Sysex data bytes are 7-bit, a command byte starts another message inside of it.
+            interleavedMessagesCount.incrementAndGet();
+            isParsingSysex = false;
+        }
+        if (dataBytesLeft > 0 && (inputData & 0x80) == 0) {
+            dataBytesLeft--;
+        } else {
+            dataBytesLeft = 0;
+            int command = inputData & 0xFF;
+            if (command < 0xF0) command &= 0xF0;
+            switch (command) {
+                case START_SYSEX:
+                    isParsingSysex = true;
+                    sysexLength = 0;
+                    break;
+                case REPORT_VERSION:
+                    sendFirmwareVersion();
+                    break;
+                case DIGITAL_MESSAGE:
+                case ANALOG_MESSAGE:
+                case SET_PIN_MODE:
+                case SET_DIGITAL_PIN_VALUE:
+                    dataBytesLeft = 2;
+                    break;
+                case REPORT_ANALOG:
+                case REPORT_DIGITAL:
+                    dataBytesLeft = 1;
+                    break;
+            }
+        }
+    }
+
+    private void onSysex() {
+        if (sysexLength <= 0) return;
+        byte command = sysexData[0];
+        int encodedLength = sysexLength - 1;
+        if (encodedLength % 2 != 0) return;
+        int dataLength = encodedLength / 2;
+        for (int i = 0; i < dataLength; i++) {
+            sysexData[i + 1] = (byte) (sysexData[2 * i + 1] | (sysexData[2 * i + 2] << 7));
+        }
+        if (command == SERIAL_DATA) {
+            receivedSerialBytesCount.addAndGet(dataLength);
+            frameDecoder.decode(sysexData, 1, dataLength);
+            if (isSerialEchoEnabled) {
+                synchronized (sendingLock) {
+                    encoder.reset();
+                    appendSerialData(sysexData, 1, dataLength);
+                    sendMessages(encoder.getBuffer(), encoder.size());
+                }
+            }
+        } else if (command == IS_ALIVE) {
+            receivedIsAliveCount.incrementAndGet();
+        } else if (command == QUERY_BAUD_RATE && dataLength == 0) {
+            synchronized (sendingLock) {
+                encoder.reset();
+                sysexData[0] = BAUD_RATE_115200;
+                encoder.appendSysex(QUERY_BAUD_RATE, sysexData, 0, 1);
+                sendMessages(encoder.getBuffer(), encoder.size());
+            }
+        }
+    }
+
+    private void onFrameReceive(ShieldFrame frame) {
+        receivedFramesCount.incrementAndGet();
+        receivedShieldFramesCounts.incrementAndGet(frame.getShieldId() & 0xFF);
+        if (frame.getShieldId() == CONFIGURATION_SHIELD_ID && frame.getFunctionId() == QUERY_LIBRARY_VERSION)
+            sendConfigurationFrame(LIBRARY_VERSION_RESPONSE);
+    }
+
+    private void sendFirmwareVersion() {
+        // The device reads the two version bytes in reverse, the minor version comes first.
+        byte[] message = new byte[]{(byte) REPORT_VERSION, (byte) minorVersion, (byte) majorVersion};
+        synchronized (sendingLock) {
+            sendMessage(message, 0, message.length);
+        }
+    }
+
+    private boolean sendConfigurationFrame(byte functionId) {
+        ShieldFrame frame = ShieldFrame.obtain(CONFIGURATION_SHIELD_ID, functionId);
+        try {
+            return sendFrame(frame);
+        } finally {
+            frame.recycle();
+        }
+    }
+
+    private byte[] encodeFrame(ShieldFrame frame) {
+        if (frame == null)
+            throw new NullPointerException("The passed frame is null, have you checked its validity?");
+        // The frames the board sends carry the library version right after their start byte.
+        byte[] serialData = new byte[frame.getFrameSize() + 1];
+        frame.writeTo(serialData, 1);
+        serialData[0] = ShieldFrame.START_OF_FRAME;
+        serialData[1] = (byte) libraryVersion;
+        synchronized (sendingLock) {
+            encoder.reset();
+            appendSerialData(serialData, 0, serialData.length);
+            byte[] encodedFrame = new byte[encoder.size()];
+            System.arraycopy(encoder.getBuffer(), 0, encodedFrame, 0, encodedFrame.length);
+            return encodedFrame;
+        }
+    }
+
+    private void appendSerialData(byte[] data, int offset, int length) {
+        while (length > 0) {
+            int chunkLength = Math.min(length, SysexEncoder.MAX_SYSEX_DATA_BYTES);
+            encoder.appendSysex(SERIAL_DATA, data, offset, chunkLength);
+            offset += chunkLength;
+            length -= chunkLength;
+        }
+    }
+
+    private boolean sendEncoded(byte[] encodedMessages) {
+        synchronized (sendingLock) {
+            return sendMessages(encodedMessages, encodedMessages.length);
+        }
+    }
+
+    /**
+     * Sends back to back sysex messages one at a time so that each of them may get dropped.
+     */
+    private boolean sendMessages(byte[] messages, int length) {
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (messages[i] == END_SYSEX) {
+                if (!sendMessage(messages, start, i + 1 - start)) return false;
+                start = i + 1;
+            }
+        }
+        return start >= length || sendMessage(messages, start, length - start);
+    }
+
+    private boolean sendMessage(byte[] message, int offset, int length) {
+        double currentLossRate = lossRate;
+        if (currentLossRate > 0 && random.nextDouble() < currentLossRate) {
+            droppedMessagesCount.incrementAndGet();
+            return isAttached;
+        }
+        synchronized (outputLock) {
+            while (length > 0) {
+                if (!isAttached) return false;
+                int free = output.length - (int) (writtenPosition - readPosition);
+                if (free == 0) {
+                    try {
+                        outputLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    continue;
+                }
+                int count = Math.min(length, free);
+                int writeIndex = (int) (writtenPosition % output.length);
+                int firstPart = Math.min(count, output.length - writeIndex);
+                System.arraycopy(message, offset, output, writeIndex, firstPart);
+                if (count > firstPart)
+                    System.arraycopy(message, offset + firstPart, output, 0, count - firstPart);
+                writtenPosition += count;
+                offset += count;
+                length -= count;
+                sentBytesCount.addAndGet(count);
+                release();
+                outputLock.notifyAll();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Makes the written bytes readable once the latency elapses, the bytes written while
+     * all of the pending releases are in use join the latest one.
+     */
+    private void release() {
+        long latency = latencyNanoSeconds;
+        if (latency == 0 && releasesCount == 0) {
+            releasedPosition = writtenPosition;
+        } else if (releasesCount == MAX_PENDING_RELEASES) {
+            int last = (releasesHead + releasesCount - 1) % MAX_PENDING_RELEASES;
+            releaseTimes[last] = System.nanoTime() + latency;
+            releasePositions[last] = writtenPosition;
+        } else {
+            int next = (releasesHead + releasesCount) % MAX_PENDING_RELEASES;
+            releaseTimes[next] = System.nanoTime() + latency;
+            releasePositions[next] = writtenPosition;
+            releasesCount++;
+        }
+    }
+}
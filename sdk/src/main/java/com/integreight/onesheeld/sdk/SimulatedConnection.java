@@ -0,0 +1,55 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * A connection to a {@link SimulatedBoard} living in the same process.
+ * <p>The written bytes are parsed by the board right away on the writing thread, the
+ * read ones come from what the board sent, after its latency.</p>
+ */
+class SimulatedConnection extends OneSheeldConnection {
+    private final SimulatedBoard board;
+
+    SimulatedConnection(OneSheeldDevice device, SimulatedBoard board) {
+        super(device);
+        this.board = board;
+    }
+
+    SimulatedBoard getBoard() {
+        return board;
+    }
+
+    @Override
+    protected boolean onConnectionInitiationRequest() {
+        return board.attach();
+    }
+
+    @Override
+    boolean write(byte[] buffer, int offset, int length) {
+        return board.receive(buffer, offset, length);
+    }
+
+    @Override
+    int read(byte[] buffer, int offset, int length, long timeOutMilliSeconds) {
+        return board.read(buffer, offset, length, timeOutMilliSeconds);
+    }
+
+    @Override
+    protected void onClose() {
+        board.detach();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * Encodes Firmata sysex messages into a single reusable output buffer.
+ * <p>Every payload byte is split into its two 7 bit halves while being copied,
+ * so no intermediate arrays are created. Several messages can be appended
+ * before the buffer is written out, the buffer grows as needed and is kept
+ * for the next messages.</p>
+ */
+class SysexEncoder {
+    static final byte START_SYSEX = (byte) 0xF0;
+    static final byte END_SYSEX = (byte) 0xF7;
+    static final int MAX_SYSEX_LENGTH = 32;
+    static final int MAX_SYSEX_DATA_BYTES = (MAX_SYSEX_LENGTH - 3) / 2;
+
+    private byte[] buffer;
+    private int size;
+
+    SysexEncoder(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, MAX_SYSEX_LENGTH)];
+        this.size = 0;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    static int getEncodedLength(int dataLength) {
+        return dataLength * 2 + 3;
+    }
+
+    /**
+     * Appends one sysex message carrying the given bytes.
+     *
+     * @return false if the message exceeds the maximum sysex length and was skipped
+     */
+    boolean appendSysex(byte command, byte[] data, int offset, int length) {
+        if (length * 2 > MAX_SYSEX_LENGTH)
+            return false;
+        ensureCapacity(getEncodedLength(length));
+        buffer[size++] = START_SYSEX;
+        buffer[size++] = command;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            buffer[size++] = (byte) (data[i] & 127);
+            buffer[size++] = (byte) (((data[i] & 0xFF) >> 7) & 127);
+        }
+        buffer[size++] = END_SYSEX;
+        return true;
+    }
+
+    private void ensureCapacity(int extraLength) {
+        if (size + extraLength > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(size + extraLength, buffer.length * 2)];
+            System.arraycopy(buffer, 0, newBuffer, 0, size);
+            buffer = newBuffer;
+        }
+    }
+}
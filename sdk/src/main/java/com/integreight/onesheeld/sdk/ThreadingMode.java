@@ -0,0 +1,36 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+/**
+ * Represents how {@link OneSheeldDevice}s process the data they receive.
+ *
+ * @see OneSheeldManager#setThreadingMode(ThreadingMode)
+ */
+public enum ThreadingMode {
+    /**
+     * Implies that every connected device parses its incoming data on its own
+     * dedicated threads.
+     */
+    DEDICATED_THREADS,
+    /**
+     * Implies that the incoming data of all connected devices is parsed on a small
+     * pool of threads shared by all the devices, the data of each device is
+     * still processed in order.
+     */
+    SHARED_POOL
+}
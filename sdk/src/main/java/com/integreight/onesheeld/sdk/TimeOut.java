@@ -16,39 +16,76 @@
 
 package com.integreight.onesheeld.sdk;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-class TimeOut extends Thread {
+/**
+ * A count down timer that ticks every step and times out after the total time.
+ * <p>All the timers of the SDK share a single scheduling thread and a small pool of
+ * reusable worker threads that run the callbacks, so starting, resetting or stopping
+ * a timer never creates a thread of its own.</p>
+ */
+class TimeOut {
+    private static final Object schedulersLock = new Object();
+    private static ScheduledExecutorService scheduler;
+    private static ExecutorService worker;
 
     private final Object isTimeOutLock;
     private boolean isTimeout;
-    private long milliSecondsLeft;
+    private boolean isStopRequested;
+    private volatile long milliSecondsLeft;
     private long totalMilliSeconds;
     private long milliStep;
     private TimeOutCallback callback;
-    private AtomicBoolean isSleeping;
-    private AtomicBoolean isStopRequested;
-
+    private Future<?> pendingStep;
+    private Arming arming;
 
     TimeOut(long milliSeconds, long milliStep, TimeOutCallback callback) {
         this.isTimeout = false;
+        this.isStopRequested = false;
         this.totalMilliSeconds = milliSeconds;
         this.callback = callback;
         this.milliStep = milliStep <= milliSeconds && milliStep > 0 ? milliStep : milliSeconds;
-        this.isSleeping = new AtomicBoolean(false);
-        this.isStopRequested = new AtomicBoolean(false);
         this.isTimeOutLock = new Object();
         start();
     }
 
     TimeOut(long milliSeconds) {
-        this.isTimeout = false;
-        this.totalMilliSeconds = milliSeconds;
-        this.milliStep = milliSeconds;
-        this.isSleeping = new AtomicBoolean(false);
-        this.isStopRequested = new AtomicBoolean(false);
-        this.isTimeOutLock = new Object();
-        start();
+        this(milliSeconds, milliSeconds, null);
+    }
+
+    private void start() {
+        resetTimer();
+        synchronized (isTimeOutLock) {
+            arming = new Arming();
+            scheduleNextStep();
+        }
+    }
+
+    /**
+     * Starts counting the total time again whether the timer is running, stopped or timed out,
+     * so a timer armed over and over is created once.
+     */
+    void restart() {
+        synchronized (isTimeOutLock) {
+            if (pendingStep != null) {
+                pendingStep.cancel(false);
+                pendingStep = null;
+            }
+            isTimeout = false;
+            isStopRequested = false;
+            milliSecondsLeft = totalMilliSeconds;
+            // A step of the previous arming that is already running finds itself outdated and stops.
+            arming = new Arming();
+            scheduleNextStep();
+        }
     }
 
     void resetTimer() {
@@ -61,42 +98,90 @@ class TimeOut extends Thread {
         }
     }
 
+    /**
+     * Checks whether the timer is still counting, it replaces checking whether the old timer thread is alive.
+     *
+     * @return true if the timer neither timed out nor got stopped
+     */
+    boolean isRunning() {
+        synchronized (isTimeOutLock) {
+            return !isTimeout && !isStopRequested;
+        }
+    }
+
     void stopTimer() {
         synchronized (isTimeOutLock) {
             if (!isTimeout) {
-                if (isAlive() && isSleeping.get())
-                    this.interrupt();
-                isStopRequested.set(true);
+                isStopRequested = true;
+                if (pendingStep != null) {
+                    pendingStep.cancel(false);
+                    pendingStep = null;
+                }
             }
         }
     }
 
-    @Override
-    public synchronized void start() {
-        resetTimer();
-        super.start();
+    private void scheduleNextStep() {
+        pendingStep = getScheduler().schedule(arming, milliStep, TimeUnit.MILLISECONDS);
     }
 
-    @Override
-    public void run() {
-        do {
-            isSleeping.set(true);
-            try {
-                Thread.sleep(milliStep);
-            } catch (InterruptedException e) {
-                isSleeping.set(false);
-                Thread.currentThread().interrupt();
+    private void onStep(Arming stepArming) {
+        synchronized (isTimeOutLock) {
+            if (isStopRequested || stepArming != arming) return;
+            pendingStep = null;
+        }
+        if (callback != null && milliSecondsLeft != 0)
+            callback.onTick(milliSecondsLeft);
+        synchronized (isTimeOutLock) {
+            if (isStopRequested || stepArming != arming) return;
+            milliSecondsLeft -= milliStep;
+            if (milliSecondsLeft > 0) {
+                scheduleNextStep();
                 return;
             }
-            isSleeping.set(false);
-            if (callback != null && milliSecondsLeft != 0)
-                callback.onTick(milliSecondsLeft);
-            milliSecondsLeft -= milliStep;
-        } while (milliSecondsLeft > 0 && !isStopRequested.get());
-        synchronized (isTimeOutLock) {
             isTimeout = true;
         }
-        if (callback != null && !isStopRequested.get()) callback.onTimeOut();
+        if (callback != null) callback.onTimeOut();
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        synchronized (schedulersLock) {
+            if (scheduler == null) {
+                ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new NamedDaemonThreadFactory("TimeOutScheduler"));
+                executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                scheduler = executor;
+            }
+            return scheduler;
+        }
+    }
+
+    private static ExecutorService getWorker() {
+        synchronized (schedulersLock) {
+            if (worker == null) {
+                // Callbacks may block, on a Bluetooth write for example, so idle workers are
+                // reused but a busy pool never delays the other timers.
+                worker = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+                        new SynchronousQueue<Runnable>(), new NamedDaemonThreadFactory("TimeOutWorker"));
+            }
+            return worker;
+        }
+    }
+
+    /**
+     * Dispatches the steps of one arming of the timer to the workers.
+     */
+    private class Arming implements Runnable {
+        private final Runnable step = new Runnable() {
+            @Override
+            public void run() {
+                onStep(Arming.this);
+            }
+        };
+
+        @Override
+        public void run() {
+            getWorker().execute(step);
+        }
     }
 
     interface TimeOutCallback {
@@ -104,4 +189,20 @@ class TimeOut extends Thread {
 
         void onTick(long milliSecondsLeft);
     }
+
+    private static class NamedDaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        NamedDaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + ": " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
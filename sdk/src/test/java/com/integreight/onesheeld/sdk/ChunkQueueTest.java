@@ -0,0 +1,79 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkQueueTest {
+    private static final long TAKE_TIME_OUT = TimeUnit.SECONDS.toNanos(10);
+
+    @Test(timeout = 5000)
+    public void takeReturnsTheChunksInOrder() {
+        ChunkQueue queue = new ChunkQueue(64);
+        assertTrue(queue.offer(new byte[]{1, 2}));
+        assertTrue(queue.offer(new byte[]{3}));
+        assertEquals(3, queue.size());
+        assertArrayEquals(new byte[]{1, 2}, queue.take(TAKE_TIME_OUT));
+        assertArrayEquals(new byte[]{3}, queue.take(TAKE_TIME_OUT));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void closeWakesAWaitingConsumer() throws InterruptedException {
+        final ChunkQueue queue = new ChunkQueue(64);
+        Thread closingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                queue.close();
+            }
+        });
+        closingThread.start();
+        assertNull(queue.take(TAKE_TIME_OUT));
+        closingThread.join();
+    }
+
+    @Test(timeout = 5000)
+    public void closedQueueDropsTheChunksAndDoesntWait() {
+        ChunkQueue queue = new ChunkQueue(64);
+        queue.offer(new byte[]{1});
+        queue.close();
+        queue.offer(new byte[]{2});
+        assertEquals(0, queue.overwrite(new byte[]{3}));
+        assertTrue(queue.isEmpty());
+        assertNull(queue.take(TAKE_TIME_OUT));
+    }
+
+    @Test(timeout = 5000)
+    public void openedQueueTakesChunksAgain() {
+        ChunkQueue queue = new ChunkQueue(64);
+        queue.close();
+        queue.open();
+        queue.offer(new byte[]{4});
+        assertArrayEquals(new byte[]{4}, queue.take(TAKE_TIME_OUT));
+    }
+}
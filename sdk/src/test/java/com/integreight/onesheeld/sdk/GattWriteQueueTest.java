@@ -0,0 +1,276 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GattWriteQueueTest {
+    /**
+     * Stands in for the characteristic, accepting writes until the stack limit of
+     * writes waiting for an acknowledgement is reached.
+     */
+    private static class RecordingWriter implements GattWriteQueue.CharacteristicWriter {
+        final List<byte[]> writtenValues = new ArrayList<>();
+        int stackLimit = Integer.MAX_VALUE;
+        int unacknowledgedWrites;
+        int maximumUnacknowledgedWrites;
+        int rejectedWrites;
+
+        @Override
+        public synchronized boolean write(byte[] value) {
+            if (unacknowledgedWrites >= stackLimit) {
+                rejectedWrites++;
+                return false;
+            }
+            writtenValues.add(value);
+            unacknowledgedWrites++;
+            maximumUnacknowledgedWrites = Math.max(maximumUnacknowledgedWrites, unacknowledgedWrites);
+            return true;
+        }
+
+        synchronized boolean acknowledge() {
+            if (unacknowledgedWrites == 0) return false;
+            unacknowledgedWrites--;
+            return true;
+        }
+
+        synchronized byte[] getWrittenBytes() {
+            int length = 0;
+            for (byte[] value : writtenValues)
+                length += value.length;
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            for (byte[] value : writtenValues) {
+                System.arraycopy(value, 0, bytes, offset, value.length);
+                offset += value.length;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Acknowledges the writes of the writer one at a time, like the GATT callback does.
+     */
+    private static class Acknowledger extends Thread {
+        private final RecordingWriter writer;
+        private final GattWriteQueue queue;
+
+        Acknowledger(RecordingWriter writer, GattWriteQueue queue) {
+            this.writer = writer;
+            this.queue = queue;
+            setDaemon(true);
+            start();
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                if (writer.acknowledge()) queue.onWriteComplete();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static byte[] newData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++)
+            data[i] = (byte) i;
+        return data;
+    }
+
+    @Test(timeout = 5000)
+    public void flushSplitsTheDataIntoChunksOfTheChunkSize() {
+        RecordingWriter writer = new RecordingWriter();
+        GattWriteQueue queue = new GattWriteQueue(writer, 8);
+        byte[] data = newData(50);
+        queue.enqueue(data, 0, data.length);
+        assertTrue(queue.flush());
+        assertEquals(3, writer.writtenValues.size());
+        assertEquals(20, writer.writtenValues.get(0).length);
+        assertEquals(20, writer.writtenValues.get(1).length);
+        assertEquals(10, writer.writtenValues.get(2).length);
+        assertArrayEquals(data, writer.getWrittenBytes());
+    }
+
+    @Test(timeout = 5000)
+    public void negotiatedMtuMakesTheChunksBigger() {
+        RecordingWriter writer = new RecordingWriter();
+        GattWriteQueue queue = new GattWriteQueue(writer, 8);
+        queue.setChunkSize(244);
+        byte[] data = newData(500);
+        queue.enqueue(data, 0, data.length);
+        assertTrue(queue.flush());
+        assertEquals(3, writer.writtenValues.size());
+        assertEquals(244, writer.writtenValues.get(0).length);
+        assertEquals(12, writer.writtenValues.get(2).length);
+        assertArrayEquals(data, writer.getWrittenBytes());
+    }
+
+    @Test
+    public void chunkSizeBelowTheDefaultIsIgnored() {
+        GattWriteQueue queue = new GattWriteQueue(new RecordingWriter(), 1);
+        queue.setChunkSize(GattWriteQueue.DEFAULT_CHUNK_SIZE - 1);
+        assertEquals(GattWriteQueue.DEFAULT_CHUNK_SIZE, queue.getChunkSize());
+    }
+
+    @Test(timeout = 5000)
+    public void flushKeepsTheWindowOfWritesInFlight() {
+        RecordingWriter writer = new RecordingWriter();
+        GattWriteQueue queue = new GattWriteQueue(writer, 4);
+        Acknowledger acknowledger = new Acknowledger(writer, queue);
+        byte[] data = newData(20 * 100);
+        queue.enqueue(data, 0, data.length);
+        assertTrue(queue.flush());
+        acknowledger.interrupt();
+        assertEquals(100, writer.writtenValues.size());
+        assertEquals(4, writer.maximumUnacknowledgedWrites);
+        assertArrayEquals(data, writer.getWrittenBytes());
+    }
+
+    @Test(timeout = 5000)
+    public void flushRetriesTheWritesRejectedByTheStack() {
+        RecordingWriter writer = new RecordingWriter();
+        writer.stackLimit = 2;
+        GattWriteQueue queue = new GattWriteQueue(writer, 4);
+        Acknowledger acknowledger = new Acknowledger(writer, queue);
+        byte[] data = newData(20 * 50);
+        queue.enqueue(data, 0, data.length);
+        assertTrue(queue.flush());
+        acknowledger.interrupt();
+        assertTrue(writer.rejectedWrites > 0);
+        assertEquals(2, writer.maximumUnacknowledgedWrites);
+        assertArrayEquals(data, writer.getWrittenBytes());
+    }
+
+    @Test(timeout = 5000)
+    public void flushFailsWhenTheStackRejectsWithNothingInFlight() {
+        RecordingWriter writer = new RecordingWriter();
+        writer.stackLimit = 0;
+        GattWriteQueue queue = new GattWriteQueue(writer, 4);
+        queue.enqueue(newData(10), 0, 10);
+        assertFalse(queue.flush());
+        // The failed write is dropped instead of going out with the next one.
+        assertTrue(queue.isIdle());
+        writer.stackLimit = Integer.MAX_VALUE;
+        byte[] data = newData(30);
+        queue.enqueue(data, 0, data.length);
+        assertTrue(queue.flush());
+        assertArrayEquals(data, writer.getWrittenBytes());
+    }
+
+    @Test(timeout = 5000)
+    public void flushGivesUpWhenTheAcknowledgementsStop() {
+        RecordingWriter writer = new RecordingWriter();
+        GattWriteQueue queue = new GattWriteQueue(writer, 2, 100);
+        byte[] data = newData(20 * 5);
+        queue.enqueue(data, 0, data.length);
+        long startTime = System.nanoTime();
+        assertFalse(queue.flush());
+        assertTrue(System.nanoTime() - startTime >= 100 * 1000000L);
+        assertEquals(2, writer.writtenValues.size());
+        // The chunks that weren't written belong to the failed write, so they are dropped.
+        Acknowledger acknowledger = new Acknowledger(writer, queue);
+        assertTrue(queue.flush());
+        byte[] nextData = newData(30);
+        queue.enqueue(nextData, 0, nextData.length);
+        assertTrue(queue.flush());
+        acknowledger.interrupt();
+        byte[] expectedBytes = new byte[40 + nextData.length];
+        System.arraycopy(data, 0, expectedBytes, 0, 40);
+        System.arraycopy(nextData, 0, expectedBytes, 40, nextData.length);
+        assertArrayEquals(expectedBytes, writer.getWrittenBytes());
+    }
+
+    @Test(timeout = 5000)
+    public void lateAcknowledgementsOfLostWritesDontWidenTheWindow() throws InterruptedException {
+        final RecordingWriter writer = new RecordingWriter();
+        final GattWriteQueue queue = new GattWriteQueue(writer, 1, 100);
+        queue.enqueue(newData(40), 0, 40);
+        assertFalse(queue.flush());
+        assertFalse(queue.isIdle());
+        // The acknowledgement of the lost write comes back late, while the next flush is going on.
+        Thread acknowledgingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {
+                }
+                new Acknowledger(writer, queue);
+            }
+        });
+        acknowledgingThread.start();
+        byte[] data = newData(20 * 10);
+        queue.enqueue(data, 0, data.length);
+        assertTrue(queue.flush());
+        acknowledgingThread.join();
+        assertEquals(1, writer.maximumUnacknowledgedWrites);
+        assertEquals(11, writer.writtenValues.size());
+    }
+
+    @Test(timeout = 5000)
+    public void lostWritesAreGivenUpOnAfterTheirTimeOut() {
+        RecordingWriter writer = new RecordingWriter();
+        GattWriteQueue queue = new GattWriteQueue(writer, 1, 100);
+        queue.enqueue(newData(40), 0, 40);
+        long startTime = System.nanoTime();
+        assertFalse(queue.flush());
+        // The acknowledgement of the lost write never reaches the queue.
+        writer.acknowledge();
+        Acknowledger acknowledger = new Acknowledger(writer, queue);
+        queue.enqueue(newData(20), 0, 20);
+        // The next flush waits for the lost write for another time out only.
+        assertTrue(queue.flush());
+        acknowledger.interrupt();
+        assertTrue(System.nanoTime() - startTime >= 200 * 1000000L);
+        assertEquals(2, writer.writtenValues.size());
+    }
+
+    @Test(timeout = 5000)
+    public void clearWakesAWaitingFlush() throws InterruptedException {
+        RecordingWriter writer = new RecordingWriter();
+        final GattWriteQueue queue = new GattWriteQueue(writer, 1);
+        queue.enqueue(newData(100), 0, 100);
+        Thread clearingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                queue.clear();
+            }
+        });
+        clearingThread.start();
+        queue.flush();
+        clearingThread.join();
+        assertTrue(queue.isIdle());
+        assertEquals(1, writer.writtenValues.size());
+    }
+}
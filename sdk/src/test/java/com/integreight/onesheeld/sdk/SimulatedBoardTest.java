@@ -0,0 +1,98 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SimulatedBoardTest {
+    private static final long TIME_OUT_MILLI_SECONDS = 10000;
+    private static final byte SHIELD_ID = (byte) 0x30;
+    private static final byte FUNCTION_ID = (byte) 0x01;
+
+    @Test(timeout = 30000)
+    public void deviceExchangesShieldFramesWithTheBoard() throws InterruptedException {
+        SimulatedBoard board = new SimulatedBoard();
+        OneSheeldDevice device = new OneSheeldDevice("00:00:00:00:00:01");
+        final CountDownLatch connectLatch = new CountDownLatch(1);
+        final CountDownLatch disconnectLatch = new CountDownLatch(1);
+        device.addConnectionCallback(new OneSheeldConnectionCallback() {
+            @Override
+            public void onConnect(OneSheeldDevice device) {
+                connectLatch.countDown();
+            }
+
+            @Override
+            public void onDisconnect(OneSheeldDevice device) {
+                disconnectLatch.countDown();
+            }
+        });
+        final CountDownLatch frameLatch = new CountDownLatch(1);
+        final AtomicReference<byte[]> receivedArgument = new AtomicReference<>();
+        device.addDataCallback(new OneSheeldDataCallback() {
+            @Override
+            public void onShieldFrameReceive(OneSheeldDevice device, ShieldFrame frame) {
+                if (frame.getShieldId() != SHIELD_ID || frame.getFunctionId() != FUNCTION_ID) return;
+                receivedArgument.set(frame.getArgument(0).clone());
+                frameLatch.countDown();
+            }
+        });
+
+        board.connect(device);
+        assertTrue(connectLatch.await(TIME_OUT_MILLI_SECONDS, TimeUnit.MILLISECONDS));
+        assertTrue(board.isAttached());
+
+        ShieldFrame boardFrame = new ShieldFrame(SHIELD_ID, FUNCTION_ID);
+        boardFrame.addArgument(new byte[]{0x01, 0x02, 0x03});
+        assertTrue(board.sendFrame(boardFrame));
+        assertTrue(frameLatch.await(TIME_OUT_MILLI_SECONDS, TimeUnit.MILLISECONDS));
+        assertArrayEquals(new byte[]{0x01, 0x02, 0x03}, receivedArgument.get());
+
+        ShieldFrame deviceFrame = new ShieldFrame(SHIELD_ID, FUNCTION_ID);
+        deviceFrame.addArgument((byte) 0x7F);
+        device.sendShieldFrame(deviceFrame);
+        long start = System.currentTimeMillis();
+        while (board.getReceivedFramesCount(SHIELD_ID) == 0) {
+            assertTrue(System.currentTimeMillis() - start < TIME_OUT_MILLI_SECONDS);
+            Thread.sleep(1);
+        }
+        assertEquals(1, board.getReceivedFramesCount(SHIELD_ID));
+        assertEquals(0, board.getRejectedFramesCount());
+
+        device.disconnect();
+        assertTrue(disconnectLatch.await(TIME_OUT_MILLI_SECONDS, TimeUnit.MILLISECONDS));
+        assertFalse(board.isAttached());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void connectingANullDeviceThrows() {
+        new SimulatedBoard().connect(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outputBufferSmallerThanASysexThrows() {
+        new SimulatedBoard(SysexEncoder.MAX_SYSEX_LENGTH - 1, 0);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimeOutTest {
+    private static class CountingCallback implements TimeOut.TimeOutCallback {
+        final AtomicInteger ticksCount = new AtomicInteger();
+        final AtomicInteger timeOutsCount = new AtomicInteger();
+        final CountDownLatch timeOutLatch = new CountDownLatch(1);
+
+        @Override
+        public void onTimeOut() {
+            timeOutsCount.incrementAndGet();
+            timeOutLatch.countDown();
+        }
+
+        @Override
+        public void onTick(long milliSecondsLeft) {
+            ticksCount.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void startedTimeOutTicksEveryStepThenTimesOutOnce() throws InterruptedException {
+        CountingCallback callback = new CountingCallback();
+        TimeOut timeOut = new TimeOut(100, 20, callback);
+        assertTrue(timeOut.isRunning());
+        assertFalse(timeOut.isTimeout());
+        assertTrue(callback.timeOutLatch.await(2, TimeUnit.SECONDS));
+        assertTrue(timeOut.isTimeout());
+        assertFalse(timeOut.isRunning());
+        assertEquals(5, callback.ticksCount.get());
+        Thread.sleep(100);
+        assertEquals(1, callback.timeOutsCount.get());
+    }
+
+    @Test
+    public void timeOutWithoutStepTimesOutAfterTheTotalTime() throws InterruptedException {
+        CountingCallback callback = new CountingCallback();
+        long startTime = System.nanoTime();
+        new TimeOut(150, 0, callback);
+        assertTrue(callback.timeOutLatch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertEquals(1, callback.ticksCount.get());
+    }
+
+    @Test
+    public void resetTimerPostponesTheTimeOut() throws InterruptedException {
+        CountingCallback callback = new CountingCallback();
+        TimeOut timeOut = new TimeOut(300, 50, callback);
+        Thread.sleep(200);
+        timeOut.resetTimer();
+        assertFalse(callback.timeOutLatch.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(timeOut.isRunning());
+        assertTrue(callback.timeOutLatch.await(2, TimeUnit.SECONDS));
+        assertTrue(timeOut.isTimeout());
+    }
+
+    @Test
+    public void stopTimerPreventsTheTimeOut() throws InterruptedException {
+        CountingCallback callback = new CountingCallback();
+        TimeOut timeOut = new TimeOut(100, 20, callback);
+        Thread.sleep(30);
+        timeOut.stopTimer();
+        assertFalse(callback.timeOutLatch.await(300, TimeUnit.MILLISECONDS));
+        assertEquals(0, callback.timeOutsCount.get());
+        assertFalse(timeOut.isRunning());
+        assertFalse(timeOut.isTimeout());
+        int ticksCount = callback.ticksCount.get();
+        Thread.sleep(100);
+        assertEquals(ticksCount, callback.ticksCount.get());
+    }
+
+    @Test
+    public void stopTimerAfterTheTimeOutKeepsItTimedOut() throws InterruptedException {
+        CountingCallback callback = new CountingCallback();
+        TimeOut timeOut = new TimeOut(50, 50, callback);
+        assertTrue(callback.timeOutLatch.await(2, TimeUnit.SECONDS));
+        timeOut.stopTimer();
+        assertTrue(timeOut.isTimeout());
+        assertFalse(timeOut.isRunning());
+    }
+
+    @Test
+    public void restartRearmsAStoppedTimer() throws InterruptedException {
+        CountingCallback callback = new CountingCallback();
+        TimeOut timeOut = new TimeOut(100, 100, callback);
+        timeOut.stopTimer();
+        timeOut.restart();
+        assertTrue(timeOut.isRunning());
+        assertTrue(callback.timeOutLatch.await(2, TimeUnit.SECONDS));
+        assertTrue(timeOut.isTimeout());
+        Thread.sleep(150);
+        assertEquals(1, callback.timeOutsCount.get());
+    }
+
+    @Test
+    public void restartAfterTheTimeOutTimesOutAgain() throws InterruptedException {
+        CountingCallback callback = new CountingCallback();
+        TimeOut timeOut = new TimeOut(50, 50, callback);
+        assertTrue(callback.timeOutLatch.await(2, TimeUnit.SECONDS));
+        timeOut.restart();
+        assertFalse(timeOut.isTimeout());
+        Thread.sleep(300);
+        assertEquals(2, callback.timeOutsCount.get());
+        assertTrue(timeOut.isTimeout());
+    }
+
+    @Test
+    public void restartOfARunningTimerCountsTheWholeTimeAgain() throws InterruptedException {
+        CountingCallback callback = new CountingCallback();
+        long startTime = System.nanoTime();
+        TimeOut timeOut = new TimeOut(200, 200, callback);
+        Thread.sleep(150);
+        timeOut.restart();
+        assertTrue(callback.timeOutLatch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(350));
+        Thread.sleep(300);
+        assertEquals(1, callback.timeOutsCount.get());
+    }
+
+    @Test
+    public void timeOutsDontCreateAThreadEach() throws InterruptedException {
+        CountingCallback callback = new CountingCallback();
+        new TimeOut(20, 20, callback);
+        assertTrue(callback.timeOutLatch.await(2, TimeUnit.SECONDS));
+        int threadsCount = Thread.activeCount();
+        TimeOut[] timeOuts = new TimeOut[200];
+        for (int i = 0; i < timeOuts.length; i++)
+            timeOuts[i] = new TimeOut(10000, 1000, null);
+        assertTrue(Thread.activeCount() <= threadsCount + 1);
+        for (TimeOut timeOut : timeOuts)
+            timeOut.stopTimer();
+    }
+}
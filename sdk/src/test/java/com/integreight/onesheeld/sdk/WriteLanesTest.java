@@ -0,0 +1,162 @@
+/*
+* This code is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License version 3 only, as
+* published by the Free Software Foundation.
+*
+* This code is distributed in the hope that it will be useful, but WITHOUT
+* ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+* FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+* version 3 for more details (a copy is included in the LICENSE file that
+* accompanied this code).
+*
+* Please contact Integreight, Inc. at info@integreight.com or post on our
+* support forums www.1sheeld.com/forum if you need additional information
+* or have any questions.
+*/
+
+package com.integreight.onesheeld.sdk;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WriteLanesTest {
+    private static final long TIME_OUT_MILLI_SECONDS = 10000;
+    private static final byte CONFIGURATION_SHIELD_ID = (byte) 0x00;
+
+    /**
+     * A connection to a simulated board that refuses the written bytes on demand.
+     */
+    private static class RefusingConnection extends SimulatedConnection {
+        volatile boolean isRefusingWrites;
+
+        RefusingConnection(OneSheeldDevice device, SimulatedBoard board) {
+            super(device, board);
+        }
+
+        @Override
+        boolean write(byte[] buffer, int offset, int length) {
+            return !isRefusingWrites && super.write(buffer, offset, length);
+        }
+    }
+
+    /**
+     * Waits until the device is initialized and the board got the frame notifying it with
+     * the connection, so the counters of the board only change with what the test sends.
+     */
+    private static void awaitConnection(OneSheeldDevice device, SimulatedBoard board) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (!device.isConnected() || !device.hasRespondedToFirmwareVersionQuery() || !device.hasRespondedToLibraryVersionQuery()
+                || board.getReceivedFramesCount(CONFIGURATION_SHIELD_ID) == 0) {
+            assertTrue("The device didn't connect to the simulated board.", System.currentTimeMillis() - start < TIME_OUT_MILLI_SECONDS);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitReceivedSerialBytes(SimulatedBoard board, long target) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (board.getReceivedSerialBytesCount() < target) {
+            assertTrue("Timed out with " + board.getReceivedSerialBytesCount() + " out of " + target + ".", System.currentTimeMillis() - start < TIME_OUT_MILLI_SECONDS);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void assertWriteResult(final OneSheeldDevice device, byte[] data, boolean isWritten) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicBoolean isCompleted = new AtomicBoolean();
+        device.sendSerialData(data, new OneSheeldWriteCallback() {
+            @Override
+            public void onWriteComplete(OneSheeldDevice device) {
+                isCompleted.set(true);
+                latch.countDown();
+            }
+
+            @Override
+            public void onWriteFailure(OneSheeldDevice device) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIME_OUT_MILLI_SECONDS, TimeUnit.MILLISECONDS));
+        assertEquals(isWritten, isCompleted.get());
+    }
+
+    @Test(timeout = 30000)
+    public void controlMessagesNeverLandInTheMiddleOfBulkWrites() throws InterruptedException {
+        SimulatedBoard board = new SimulatedBoard();
+        final OneSheeldDevice device = new OneSheeldDevice("00:00:00:00:00:01");
+        device.setAsynchronousWriting(true);
+        // Writes longer than the queue are made available to the writer a part at a time.
+        device.setWriteQueueCapacity(1024);
+        device.setMaximumWriteSize(4096);
+        board.connect(device);
+        try {
+            awaitConnection(device, board);
+            board.resetCounters();
+            final byte[] data = new byte[3000];
+            final int sendsCount = 200;
+            final AtomicBoolean isSending = new AtomicBoolean(true);
+            Thread controlThread = new Thread() {
+                @Override
+                public void run() {
+                    boolean value = false;
+                    while (isSending.get()) {
+                        device.digitalWrite(13, value = !value);
+                    }
+                }
+            };
+            controlThread.start();
+            for (int i = 0; i < sendsCount; i++) {
+                device.sendSerialData(data);
+            }
+            awaitReceivedSerialBytes(board, (long) sendsCount * data.length);
+            isSending.set(false);
+            controlThread.join();
+            assertEquals(0, board.getInterleavedMessagesCount());
+            assertEquals(0, board.getRejectedFramesCount());
+            assertEquals((long) sendsCount * data.length, board.getReceivedSerialBytesCount());
+        } finally {
+            device.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void asynchronousWriteCallbackCompletesOnceWritten() throws InterruptedException {
+        SimulatedBoard board = new SimulatedBoard();
+        OneSheeldDevice device = new OneSheeldDevice("00:00:00:00:00:02");
+        device.setAsynchronousWriting(true);
+        board.connect(device);
+        try {
+            awaitConnection(device, board);
+            board.resetCounters();
+            assertWriteResult(device, new byte[100], true);
+            assertEquals(100, board.getReceivedSerialBytesCount());
+        } finally {
+            device.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void synchronousWriteCallbackReportsTheWriteResult() throws InterruptedException {
+        SimulatedBoard board = new SimulatedBoard();
+        OneSheeldDevice device = new OneSheeldDevice("00:00:00:00:00:03");
+        RefusingConnection connection = new RefusingConnection(device, board);
+        device.connect(connection);
+        try {
+            awaitConnection(device, board);
+            board.resetCounters();
+            assertWriteResult(device, new byte[100], true);
+            connection.isRefusingWrites = true;
+            assertWriteResult(device, new byte[100], false);
+            connection.isRefusingWrites = false;
+            assertWriteResult(device, new byte[100], true);
+        } finally {
+            device.disconnect();
+        }
+    }
+}